@@ -0,0 +1,119 @@
+package com.pluto.chat.pluto_app_backend.benchmark;
+
+import com.pluto.chat.pluto_app_backend.archive.LocalArchiveStore;
+import com.pluto.chat.pluto_app_backend.archive.MessageArchive;
+import com.pluto.chat.pluto_app_backend.cache.RecentMessageCache;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.persistence.InFlightMessages;
+import com.pluto.chat.pluto_app_backend.repository.RoomRepository;
+import com.pluto.chat.pluto_app_backend.search.SearchIndex;
+import com.pluto.chat.pluto_app_backend.service.RoomService;
+import com.pluto.chat.pluto_app_backend.service.impl.MessageServiceImpl;
+import com.pluto.chat.pluto_app_backend.service.impl.RoomServiceImpl;
+import com.pluto.chat.pluto_app_backend.service.impl.RoomSummaryServiceImpl;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// RoomServiceImpl.addMessage (seq $inc, bucket $push, summary update) against a real
+// mongod started by flapdoodle. Spread over `rooms` rooms so contention on the room
+// counter can be compared with the uncontended case.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class AddMessageBenchmark {
+
+    @Param({"1", "64"})
+    public int rooms;
+
+    private TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private ConfigurableApplicationContext context;
+    private RoomService roomService;
+
+    @Configuration
+    @ImportAutoConfiguration({MongoAutoConfiguration.class, MongoDataAutoConfiguration.class})
+    @EnableMongoRepositories(basePackageClasses = RoomRepository.class)
+    @Import({RoomServiceImpl.class, MessageServiceImpl.class, RoomSummaryServiceImpl.class,
+            InFlightMessages.class, RecentMessageCache.class, SearchIndex.class, MessageArchive.class,
+            LocalArchiveStore.class, SimpleMeterRegistry.class})
+    static class MongoContext {
+    }
+
+    @Setup
+    public void setUp() {
+        mongod = Mongod.instance().start(Version.Main.V7_0);
+        Path searchDir;
+        try {
+            searchDir = Files.createTempDirectory("pluto-bench-search");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ServerAddress address = mongod.current().getServerAddress();
+        context = new SpringApplicationBuilder(MongoContext.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.data.mongodb.uri=mongodb://" + address.getHost() + ":"
+                                + address.getPort() + "/pluto-bench",
+                        "spring.data.mongodb.auto-index-creation=true",
+                        "pluto.search.dir=" + searchDir,
+                        "pluto.search.rebuild-if-missing=false")
+                .run();
+        roomService = context.getBean(RoomService.class);
+        for (int i = 0; i < rooms; i++) {
+            roomService.createOrJoinRoom("bench-" + i, "alice");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        mongod.close();
+    }
+
+    @Benchmark
+    public Message addMessage() {
+        String roomId = "bench-" + ThreadLocalRandom.current().nextInt(rooms);
+        Message message = Message.builder()
+                .sender("alice")
+                .content("benchmark message")
+                .timestamp(LocalDateTime.now())
+                .build();
+        return roomService.addMessage(roomId, message);
+    }
+}
@@ -0,0 +1,90 @@
+package com.pluto.chat.pluto_app_backend.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// One /topic/room broadcast through the simple broker to N subscribers. The outbound
+// channel is synchronous and only counts, so this measures subscription lookup and the
+// per-subscriber message copy, not socket I/O.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BrokerFanoutBenchmark {
+
+    private static final String DESTINATION = "/topic/room/general";
+
+    @Param({"10", "100", "1000"})
+    public int subscribers;
+
+    private final LongAdder delivered = new LongAdder();
+    private SimpleBrokerMessageHandler broker;
+    private Message<byte[]> broadcast;
+
+    @Setup
+    public void setUp() {
+        ExecutorSubscribableChannel inbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel outbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        outbound.subscribe(message -> delivered.increment());
+
+        broker = new SimpleBrokerMessageHandler(inbound, outbound, brokerChannel, List.of("/topic"));
+        broker.start();
+
+        for (int i = 0; i < subscribers; i++) {
+            broker.handleMessage(frame(SimpMessageType.CONNECT, "session-" + i, null, null));
+            broker.handleMessage(frame(SimpMessageType.SUBSCRIBE, "session-" + i, "sub-" + i, DESTINATION));
+        }
+
+        broadcast = frame(SimpMessageType.MESSAGE, null, null, DESTINATION);
+    }
+
+    @Benchmark
+    public long fanout() {
+        broker.handleMessage(broadcast);
+        return delivered.sum();
+    }
+
+    @TearDown
+    public void tearDown() {
+        broker.stop();
+    }
+
+    private static Message<byte[]> frame(SimpMessageType type, String sessionId, String subscriptionId,
+                                         String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        accessor.setNativeHeader("seq", "1");
+        // No heart-beats, like a client that did not ask for them
+        accessor.setHeader(SimpMessageHeaderAccessor.HEART_BEAT_HEADER, new long[] {0, 0});
+        byte[] payload = type == SimpMessageType.MESSAGE
+                ? "{\"sender\":\"alice\",\"content\":\"hello\",\"seq\":1}".getBytes(StandardCharsets.UTF_8)
+                : new byte[0];
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,55 @@
+package com.pluto.chat.pluto_app_backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Jackson round trip of a chat message, LocalDateTime included, with the same
+// ObjectMapper setup Spring Boot gives the STOMP and REST converters.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageJsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Message message;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        message = Message.builder()
+                .sender("alice")
+                .content("hey, is anyone around for the standup in five minutes?")
+                .timestamp(LocalDateTime.of(2025, 3, 14, 9, 26, 53, 589_000_000))
+                .seq(123_456L)
+                .build();
+        json = objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public Message deserialize() throws Exception {
+        return objectMapper.readValue(json, Message.class);
+    }
+}
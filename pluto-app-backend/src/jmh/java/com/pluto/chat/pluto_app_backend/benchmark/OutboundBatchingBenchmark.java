@@ -0,0 +1,133 @@
+package com.pluto.chat.pluto_app_backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.messaging.OutboundBatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// A burst of room messages to one subscriber, through OutboundBatcher and STOMP encoding.
+// batch=1 is a session that did not negotiate batching (one frame per message); larger
+// values coalesce that many messages per frame. The primary score is messages delivered,
+// and the "frames" and "bytes" counters show what reaches the socket per second.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutboundBatchingBenchmark {
+
+    private static final int BURST = 100;
+    private static final String SESSION = "session-0";
+
+    @Param({"1", "10", "50"})
+    public int batch;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Socket {
+        public long frames;
+        public long bytes;
+    }
+
+    private final StompEncoder encoder = new StompEncoder();
+    private OutboundBatcher batcher;
+    private org.springframework.messaging.Message<?>[] burst;
+    private Socket socket;
+
+    @Setup
+    public void setUp() throws Exception {
+        // Stands in for the outbound channel: encode the frame the way it would be written
+        MessageChannel outbound = (frame, timeout) -> {
+            write(frame);
+            return true;
+        };
+        // A long window, so only batch-max triggers a flush
+        batcher = new OutboundBatcher(outbound, new SimpleMeterRegistry(), true, Duration.ofMinutes(1), batch);
+        batcher.start();
+        if (batch > 1) {
+            StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+            connect.setSessionId(SESSION);
+            connect.setNativeHeader(OutboundBatcher.WINDOW_HEADER, "60000");
+            connect.setNativeHeader(OutboundBatcher.MAX_HEADER, String.valueOf(batch));
+            batcher.onConnect(new SessionConnectEvent(this,
+                    MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders())));
+        }
+
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        burst = new org.springframework.messaging.Message<?>[BURST];
+        for (int i = 0; i < BURST; i++) {
+            Message message = Message.builder()
+                    .sender("alice")
+                    .content("hey, is anyone around for the standup in five minutes? #" + i)
+                    .timestamp(LocalDateTime.now())
+                    .seq(123_456L + i)
+                    .build();
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setSessionId(SESSION);
+            accessor.setSubscriptionId("sub-0");
+            accessor.setDestination("/topic/room/general");
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            accessor.setNativeHeader("seq", String.valueOf(message.getSeq()));
+            burst[i] = MessageBuilder.createMessage(objectMapper.writeValueAsBytes(message), accessor.getMessageHeaders());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        batcher.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void deliverBurst(Socket socket) {
+        this.socket = socket;
+        for (org.springframework.messaging.Message<?> message : burst) {
+            org.springframework.messaging.Message<?> passed = batcher.preSend(message, null);
+            if (passed != null) {
+                write(passed);
+            }
+        }
+    }
+
+    private void write(org.springframework.messaging.Message<?> message) {
+        SimpMessageHeaderAccessor simp = SimpMessageHeaderAccessor.wrap(message);
+        StompHeaderAccessor stomp = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        simp.toNativeHeaderMap().forEach(stomp::setNativeHeaderValues);
+        stomp.setSubscriptionId(simp.getSubscriptionId());
+        stomp.setDestination(simp.getDestination());
+        stomp.setMessageId(SESSION + "-" + socket.frames);
+        stomp.setContentType(simp.getContentType());
+        byte[] frame = encoder.encode(MessageBuilder.createMessage((byte[]) message.getPayload(), stomp.getMessageHeaders()));
+        socket.frames++;
+        socket.bytes += frame.length;
+    }
+}
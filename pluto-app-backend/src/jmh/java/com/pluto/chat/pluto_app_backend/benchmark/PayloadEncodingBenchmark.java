@@ -0,0 +1,122 @@
+package com.pluto.chat.pluto_app_backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pluto.chat.pluto_app_backend.entities.MediaStatus;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.MessageType;
+import com.pluto.chat.pluto_app_backend.messaging.PayloadEncoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+// Bytes on the wire and CPU per room broadcast for each payload mode a session can
+// negotiate: JSON or CBOR bodies, with or without permessage-deflate. CBOR is produced the
+// way PayloadEncoder does it, from the JSON the broker already has. Deflate keeps one
+// compressor per session across messages (context takeover) and sync-flushes each one,
+// as RFC 7692 frames do. The "bytes" counter divided by the primary score is the payload
+// size per message.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadEncodingBenchmark {
+
+    // RFC 7692: the sync flush trailer 00 00 ff ff is stripped from every message
+    private static final int DEFLATE_TRAILER = 4;
+
+    @Param({"JSON", "JSON_DEFLATE", "CBOR", "CBOR_DEFLATE"})
+    public String mode;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Wire {
+        public long bytes;
+    }
+
+    @State(Scope.Thread)
+    public static class Session {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final byte[] buffer = new byte[16 * 1024];
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            deflater.end();
+        }
+    }
+
+    private final PayloadEncoder encoder = new PayloadEncoder(new SimpleMeterRegistry(), true);
+    private ObjectMapper objectMapper;
+    private Message[] messages;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        // A mix of what rooms actually carry: mostly text, some media
+        messages = new Message[16];
+        for (int i = 0; i < messages.length; i++) {
+            Message.MessageBuilder builder = Message.builder()
+                    .seq(123_456L + i)
+                    .sender(i % 3 == 0 ? "alice" : "bob")
+                    .timestamp(LocalDateTime.now().plusSeconds(i));
+            if (i % 4 == 3) {
+                builder.type(MessageType.IMAGE)
+                        .content("📷 photo-" + i + ".jpg")
+                        .mediaUrl("/api/v1/media/3f9a2c7e" + i + "b1d04e5a9c8f7b6a5d4c3b2a1908f7e6d5c4b3a2918f7e6d5c4")
+                        .fileName("photo-" + i + ".jpg")
+                        .fileSize(2_483_712L + i)
+                        .mimeType("image/jpeg")
+                        .mediaStatus(MediaStatus.READY)
+                        .width(4032)
+                        .height(3024)
+                        .thumbnailUrl("/api/v1/media/9c8b7a6f" + i + "e5d4c3b2a1908f7e6d5c4b3a2918f7e6d5c4b3a2918f7e6d5")
+                        .previewUrl("/api/v1/media/1a2b3c4d" + i + "5e6f708192a3b4c5d6e7f8091a2b3c4d5e6f708192a3b4c5d");
+            } else {
+                builder.content("message " + i + ": hey, is anyone around for the standup in five minutes?");
+            }
+            messages[i] = builder.build();
+        }
+    }
+
+    @Benchmark
+    public int encode(Session session, Wire wire) throws Exception {
+        Message message = messages[next++ & (messages.length - 1)];
+        byte[] payload = objectMapper.writeValueAsBytes(message);
+        if (mode.startsWith("CBOR")) {
+            payload = encoder.transcode(payload);
+        }
+        int size = mode.endsWith("DEFLATE") ? deflate(session, payload) : payload.length;
+        wire.bytes += size;
+        return size;
+    }
+
+    private static int deflate(Session session, byte[] payload) {
+        session.deflater.setInput(payload);
+        int total = 0;
+        int written;
+        do {
+            written = session.deflater.deflate(session.buffer, 0, session.buffer.length, Deflater.SYNC_FLUSH);
+            total += written;
+        } while (written == session.buffer.length);
+        return total - DEFLATE_TRAILER;
+    }
+}
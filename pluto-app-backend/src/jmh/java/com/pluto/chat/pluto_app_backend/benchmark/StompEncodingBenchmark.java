@@ -0,0 +1,72 @@
+package com.pluto.chat.pluto_app_backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Encoding one room broadcast into a STOMP MESSAGE frame, as done once per subscriber
+// on the outbound channel. `encode` covers the frame only; `serializeAndEncode` adds the
+// JSON body, which is what a broadcast costs end to end.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StompEncodingBenchmark {
+
+    private final StompEncoder encoder = new StompEncoder();
+    private ObjectMapper objectMapper;
+    private Message message;
+    private org.springframework.messaging.Message<byte[]> frame;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        message = Message.builder()
+                .sender("alice")
+                .content("hey, is anyone around for the standup in five minutes?")
+                .timestamp(LocalDateTime.now())
+                .seq(123_456L)
+                .build();
+        frame = toFrame(objectMapper.writeValueAsBytes(message));
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return encoder.encode(frame);
+    }
+
+    @Benchmark
+    public byte[] serializeAndEncode() throws Exception {
+        return encoder.encode(toFrame(objectMapper.writeValueAsBytes(message)));
+    }
+
+    private static org.springframework.messaging.Message<byte[]> toFrame(byte[] payload) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setDestination("/topic/room/general");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setMessageId("4f1c2a3b-1");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setNativeHeader("seq", "123456");
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,235 @@
+package com.pluto.chat.pluto_app_backend.archive;
+
+import com.pluto.chat.pluto_app_backend.entities.ArchiveSegment;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.MessageBucket;
+import com.pluto.chat.pluto_app_backend.entities.RetentionPolicy;
+import com.pluto.chat.pluto_app_backend.entities.Room;
+import com.pluto.chat.pluto_app_backend.repository.MessageBucketRepository;
+import com.pluto.chat.pluto_app_backend.repository.RoomRepository;
+import com.pluto.chat.pluto_app_backend.search.SearchIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Moves cold history out of message_buckets into the archive, per each room's
+// RetentionPolicy. Works in whole buckets from the oldest up: a full bucket is cold when all
+// of it is older than maxAgeDays or behind the newest maxMessages. Up to segment-buckets
+// consecutive cold buckets become one segment, in this order:
+//   1. the segment is written to the ArchiveStore and recorded (same id on a retry)
+//   2. its buckets are deleted; until then reads keep using them
+//   3. the search index forgets the range, matching what a rebuild would now see
+// A crash anywhere in between repeats the step on the next pass. Segments start after the
+// last archived seq: buckets a crash left behind that a segment already holds are only
+// deleted, never archived a second time into an overlapping segment.
+//
+// It runs on one low-priority thread and sleeps after each segment to stay under
+// max-messages-per-second, so archiving a large backlog is spread out instead of competing
+// with live traffic for Mongo. In a cluster enable it on one node only.
+@Component
+public class ArchiveCompactor implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveCompactor.class);
+
+    private static final int ROOM_PAGE_SIZE = 100;
+
+    private final RoomRepository roomRepository;
+    private final MessageBucketRepository bucketRepository;
+    private final MessageArchive archive;
+    private final SearchIndex searchIndex;
+    private final boolean enabled;
+    private final Duration interval;
+    private final int segmentBuckets;
+    private final int maxMessagesPerSecond;
+    private final int defaultMaxAgeDays;
+    private final long defaultMaxMessages;
+
+    private final Counter archivedMessages;
+    private final Counter archivedSegments;
+    private final Counter failures;
+    private final Timer passTime;
+
+    private ScheduledExecutorService scheduler;
+
+    public ArchiveCompactor(RoomRepository roomRepository,
+                            MessageBucketRepository bucketRepository,
+                            MessageArchive archive,
+                            SearchIndex searchIndex,
+                            MeterRegistry meterRegistry,
+                            @Value("${pluto.archive.enabled:true}") boolean enabled,
+                            @Value("${pluto.archive.interval:10m}") Duration interval,
+                            @Value("${pluto.archive.segment-buckets:10}") int segmentBuckets,
+                            @Value("${pluto.archive.max-messages-per-second:2000}") int maxMessagesPerSecond,
+                            @Value("${pluto.retention.max-age-days:0}") int defaultMaxAgeDays,
+                            @Value("${pluto.retention.max-messages:0}") long defaultMaxMessages) {
+        this.roomRepository = roomRepository;
+        this.bucketRepository = bucketRepository;
+        this.archive = archive;
+        this.searchIndex = searchIndex;
+        this.enabled = enabled;
+        this.interval = interval;
+        this.segmentBuckets = segmentBuckets;
+        this.maxMessagesPerSecond = maxMessagesPerSecond;
+        this.defaultMaxAgeDays = defaultMaxAgeDays;
+        this.defaultMaxMessages = defaultMaxMessages;
+
+        this.archivedMessages = Counter.builder("pluto.archive.messages")
+                .description("Messages moved from message_buckets to the archive")
+                .register(meterRegistry);
+        this.archivedSegments = Counter.builder("pluto.archive.segments")
+                .description("Archive segments written")
+                .register(meterRegistry);
+        this.failures = Counter.builder("pluto.archive.failures")
+                .description("Rooms whose compaction failed and will be retried")
+                .register(meterRegistry);
+        this.passTime = Timer.builder("pluto.archive.pass")
+                .description("Time for one compaction pass over all rooms")
+                .register(meterRegistry);
+    }
+
+    void compactAll() {
+        long started = System.nanoTime();
+        try {
+            Page<Room> rooms;
+            int page = 0;
+            do {
+                rooms = roomRepository.findAll(PageRequest.of(page++, ROOM_PAGE_SIZE, Sort.by("roomId")));
+                for (Room room : rooms) {
+                    compactRoom(room);
+                }
+            } while (rooms.hasNext());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Archive pass failed", e);
+        } finally {
+            passTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void compactRoom(Room room) throws InterruptedException {
+        RetentionPolicy policy = room.getRetention();
+        int maxAgeDays = policy != null && policy.getMaxAgeDays() != null ? policy.getMaxAgeDays() : defaultMaxAgeDays;
+        long maxMessages = policy != null && policy.getMaxMessages() != null ? policy.getMaxMessages() : defaultMaxMessages;
+        if (maxAgeDays <= 0 && maxMessages <= 0) {
+            return;
+        }
+        LocalDateTime ageCutoff = maxAgeDays > 0 ? LocalDateTime.now().minusDays(maxAgeDays) : null;
+        long countCutoff = maxMessages > 0 ? room.getMessageCount() - maxMessages : 0;
+        long archivedUpTo = archive.archivedUpTo(room.getRoomId());
+
+        while (!Thread.currentThread().isInterrupted()) {
+            List<MessageBucket> oldest = bucketRepository.findByRoomIdAndBucketGreaterThanEqualOrderByBucketAsc(
+                    room.getRoomId(), 0, PageRequest.of(0, segmentBuckets));
+            if (!oldest.isEmpty() && lastSeqOf(oldest.get(0)) <= archivedUpTo) {
+                // Steps 2 and 3 of a segment that was written before a crash
+                try {
+                    bucketRepository.deleteByRoomIdAndBucketLessThanEqual(
+                            room.getRoomId(), archivedUpTo / MessageBucket.SIZE - 1);
+                    searchIndex.removeBefore(room.getRoomId(), archivedUpTo + 1);
+                    log.debug("Deleted buckets of room {} already archived up to {}", room.getRoomId(), archivedUpTo);
+                } catch (RuntimeException e) {
+                    failures.increment();
+                    log.warn("Could not delete archived buckets of room {}", room.getRoomId(), e);
+                    return;
+                }
+                continue;
+            }
+            List<MessageBucket> cold = new ArrayList<>();
+            for (MessageBucket bucket : oldest) {
+                boolean contiguous = cold.isEmpty() || bucket.getBucket() == cold.get(cold.size() - 1).getBucket() + 1;
+                if (!contiguous || !isCold(bucket, room.getMessageCount(), ageCutoff, countCutoff)) {
+                    break;
+                }
+                cold.add(bucket);
+            }
+            if (cold.isEmpty()) {
+                return;
+            }
+
+            List<Message> messages = cold.stream().flatMap(bucket -> bucket.ordered().stream()).toList();
+            try {
+                ArchiveSegment segment = archive.write(room.getRoomId(), messages);
+                archivedUpTo = segment.getLastSeq();
+                bucketRepository.deleteByRoomIdAndBucketLessThanEqual(
+                        room.getRoomId(), cold.get(cold.size() - 1).getBucket());
+                searchIndex.removeBefore(room.getRoomId(), segment.getLastSeq() + 1);
+                archivedSegments.increment();
+                archivedMessages.increment(messages.size());
+                log.debug("Archived messages {}-{} of room {}", segment.getFirstSeq(), segment.getLastSeq(), room.getRoomId());
+            } catch (IOException | RuntimeException e) {
+                failures.increment();
+                log.warn("Could not archive history of room {}", room.getRoomId(), e);
+                return;
+            }
+
+            if (maxMessagesPerSecond > 0) {
+                Thread.sleep(messages.size() * 1000L / maxMessagesPerSecond);
+            }
+            if (cold.size() < oldest.size()) {
+                // The next bucket is still hot
+                return;
+            }
+        }
+    }
+
+    private static long lastSeqOf(MessageBucket bucket) {
+        return (bucket.getBucket() + 1) * MessageBucket.SIZE;
+    }
+
+    // Only full buckets behind the newest message, so nothing still being appended moves
+    private static boolean isCold(MessageBucket bucket, long messageCount, LocalDateTime ageCutoff, long countCutoff) {
+        long lastSeq = lastSeqOf(bucket);
+        if (bucket.getCount() < MessageBucket.SIZE || lastSeq >= messageCount) {
+            return false;
+        }
+        boolean tooOld = ageCutoff != null && bucket.getLastTimestamp() != null
+                && bucket.getLastTimestamp().isBefore(ageCutoff);
+        boolean tooFarBack = countCutoff > 0 && lastSeq <= countCutoff;
+        return tooOld || tooFarBack;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "archive-compactor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::compactAll, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+}
@@ -0,0 +1,15 @@
+package com.pluto.chat.pluto_app_backend.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+// Where archive segments are kept, by key. Segments are written once (a retry writes the
+// same bytes again) and read back whole; the store never looks inside them.
+public interface ArchiveStore {
+
+    // Takes a copy of `file`; once this returns the segment must survive a crash
+    void write(String key, Path file) throws IOException;
+
+    InputStream open(String key) throws IOException;
+}
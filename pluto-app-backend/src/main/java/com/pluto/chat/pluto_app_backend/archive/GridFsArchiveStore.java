@@ -0,0 +1,50 @@
+package com.pluto.chat.pluto_app_backend.archive;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsCriteria;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Segments in Mongo GridFS, named by key, so every node reads the same archive
+@Component
+@ConditionalOnProperty(name = "pluto.archive.store", havingValue = "gridfs")
+public class GridFsArchiveStore implements ArchiveStore {
+
+    private static final String CONTENT_TYPE = "application/gzip";
+
+    private final GridFsTemplate gridFsTemplate;
+
+    public GridFsArchiveStore(GridFsTemplate gridFsTemplate) {
+        this.gridFsTemplate = gridFsTemplate;
+    }
+
+    @Override
+    public void write(String key, Path file) throws IOException {
+        // A retry replaces the earlier copy; its bytes are the same
+        gridFsTemplate.delete(byKey(key));
+        try (InputStream in = Files.newInputStream(file)) {
+            gridFsTemplate.store(in, key, CONTENT_TYPE);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        GridFSFile file = gridFsTemplate.findOne(byKey(key));
+        if (file == null) {
+            throw new FileNotFoundException("No archive segment " + key);
+        }
+        return gridFsTemplate.getResource(file).getInputStream();
+    }
+
+    private static Query byKey(String key) {
+        return Query.query(GridFsCriteria.whereFilename().is(key));
+    }
+}
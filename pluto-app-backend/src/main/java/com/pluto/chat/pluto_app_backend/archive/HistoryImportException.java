@@ -0,0 +1,17 @@
+package com.pluto.chat.pluto_app_backend.archive;
+
+import lombok.Getter;
+
+// An import stopped at a line that is not a message. Everything before it is already stored.
+@Getter
+public class HistoryImportException extends RuntimeException {
+
+    private final int line;
+    private final long imported;
+
+    public HistoryImportException(int line, long imported, Throwable cause) {
+        super("Line " + line + " is not a valid message; " + imported + " messages were imported before it", cause);
+        this.line = line;
+        this.imported = imported;
+    }
+}
@@ -0,0 +1,52 @@
+package com.pluto.chat.pluto_app_backend.archive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Segments as files under pluto.archive.local.dir. Only the node that wrote them can read
+// them, so a cluster should use the GridFS store instead.
+@Component
+@ConditionalOnProperty(name = "pluto.archive.store", havingValue = "local", matchIfMissing = true)
+public class LocalArchiveStore implements ArchiveStore {
+
+    private final Path root;
+
+    public LocalArchiveStore(@Value("${pluto.archive.local.dir:data/archive}") Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void write(String key, Path file) throws IOException {
+        Path target = pathFor(key);
+        Files.createDirectories(target.getParent());
+        // Synced copy then rename, so a reader never sees a half-written segment
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        Files.copy(file, partial, StandardCopyOption.REPLACE_EXISTING);
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(pathFor(key));
+    }
+
+    private Path pathFor(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Bad archive key: " + key);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,229 @@
+package com.pluto.chat.pluto_app_backend.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pluto.chat.pluto_app_backend.entities.ArchiveSegment;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.repository.ArchiveSegmentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// History that ArchiveCompactor moved out of message_buckets. Each segment is gzipped
+// NDJSON, one Message per line in seq order, described by an ArchiveSegment document so a
+// page only opens the segments it needs. Decoded segments are cached, since paging back
+// through old history reads the same segment several times in a row.
+//
+// Segments should not overlap, but one written before a crash can overlap a later one, so
+// every read returns each seq once.
+@Service
+public class MessageArchive {
+
+    private static final int STREAM_BUFFER_BYTES = 64 * 1024;
+    private static final int SEGMENTS_PER_QUERY = 4;
+
+    private final ArchiveStore store;
+    private final ArchiveSegmentRepository segmentRepository;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final Cache<String, List<Message>> segments;
+    private final Timer readTime;
+
+    public MessageArchive(ArchiveStore store,
+                          ArchiveSegmentRepository segmentRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${pluto.archive.cache-segments:32}") int cacheSegments) {
+        this.store = store;
+        this.segmentRepository = segmentRepository;
+        this.segments = Caffeine.newBuilder().maximumSize(cacheSegments).build();
+        this.readTime = Timer.builder("pluto.archive.read")
+                .description("Time to load and decode one archive segment")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    // `messages` are in seq order; writes the segment and then records it
+    public ArchiveSegment write(String roomId, List<Message> messages) throws IOException {
+        Message first = messages.get(0);
+        Message last = messages.get(messages.size() - 1);
+        String key = roomKey(roomId) + "/" + first.getSeq() + ".ndjson.gz";
+
+        Path file = Files.createTempFile("archive-", ".ndjson.gz");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file), STREAM_BUFFER_BYTES)) {
+                for (Message message : messages) {
+                    out.write(objectMapper.writeValueAsBytes(message));
+                    out.write('\n');
+                }
+            }
+            store.write(key, file);
+
+            ArchiveSegment segment = ArchiveSegment.builder()
+                    .id(roomId + ":" + first.getSeq())
+                    .roomId(roomId)
+                    .firstSeq(first.getSeq())
+                    .lastSeq(last.getSeq())
+                    .count(messages.size())
+                    .firstTimestamp(first.getTimestamp())
+                    .lastTimestamp(last.getTimestamp())
+                    .key(key)
+                    .compressedSize(Files.size(file))
+                    .archivedAt(LocalDateTime.now())
+                    .build();
+            segments.invalidate(segment.getId());
+            return segmentRepository.save(segment);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // The last seq archived for the room, 0 if nothing is
+    public long archivedUpTo(String roomId) {
+        return segmentRepository.findFirstByRoomIdOrderByLastSeqDesc(roomId)
+                .map(ArchiveSegment::getLastSeq)
+                .orElse(0L);
+    }
+
+    // The newest `limit` archived messages below `before`, oldest first
+    public List<Message> readBefore(String roomId, long before, int limit) {
+        List<Message> newestFirst = new ArrayList<>(limit);
+        // Walking down, so anything not below the last message taken is a repeat
+        long below = before;
+        for (int page = 0; newestFirst.size() < limit; page++) {
+            List<ArchiveSegment> found = segmentRepository.findByRoomIdAndFirstSeqLessThanOrderByFirstSeqDesc(
+                    roomId, before, PageRequest.of(page, SEGMENTS_PER_QUERY));
+            for (ArchiveSegment segment : found) {
+                List<Message> messages = read(segment);
+                for (int i = messages.size() - 1; i >= 0 && newestFirst.size() < limit; i--) {
+                    if (messages.get(i).getSeq() < below) {
+                        newestFirst.add(messages.get(i));
+                        below = messages.get(i).getSeq();
+                    }
+                }
+            }
+            if (found.size() < SEGMENTS_PER_QUERY) {
+                break;
+            }
+        }
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    // The oldest `limit` archived messages above `after`
+    public List<Message> readAfter(String roomId, long after, int limit) {
+        List<Message> page = new ArrayList<>(limit);
+        long above = after;
+        for (int index = 0; page.size() < limit; index++) {
+            List<ArchiveSegment> found = segmentRepository.findByRoomIdAndLastSeqGreaterThanOrderByFirstSeqAsc(
+                    roomId, after, PageRequest.of(index, SEGMENTS_PER_QUERY));
+            for (ArchiveSegment segment : found) {
+                for (Message message : read(segment)) {
+                    if (page.size() == limit) {
+                        break;
+                    }
+                    if (message.getSeq() > above) {
+                        page.add(message);
+                        above = message.getSeq();
+                    }
+                }
+            }
+            if (found.size() < SEGMENTS_PER_QUERY) {
+                break;
+            }
+        }
+        return page;
+    }
+
+    public List<Message> readAll(String roomId) {
+        List<Message> all = new ArrayList<>();
+        long above = 0;
+        for (ArchiveSegment segment : segmentRepository.findByRoomIdOrderByFirstSeqAsc(roomId)) {
+            for (Message message : read(segment)) {
+                if (message.getSeq() > above) {
+                    all.add(message);
+                    above = message.getSeq();
+                }
+            }
+        }
+        return all;
+    }
+
+    // Writes every archived line of the room to `out` as stored, without decoding anything
+    // unless a segment overlaps the one before it; returns the last seq written, 0 if none
+    public long copyTo(String roomId, OutputStream out) throws IOException {
+        long lastSeq = 0;
+        for (ArchiveSegment segment : segmentRepository.findByRoomIdOrderByFirstSeqAsc(roomId)) {
+            if (segment.getLastSeq() <= lastSeq) {
+                continue;
+            }
+            if (segment.getFirstSeq() > lastSeq) {
+                try (InputStream in = new GZIPInputStream(store.open(segment.getKey()), STREAM_BUFFER_BYTES)) {
+                    in.transferTo(out);
+                }
+            } else {
+                for (Message message : read(segment)) {
+                    if (message.getSeq() > lastSeq) {
+                        out.write(objectMapper.writeValueAsBytes(message));
+                        out.write('\n');
+                    }
+                }
+            }
+            lastSeq = segment.getLastSeq();
+        }
+        return lastSeq;
+    }
+
+    private List<Message> read(ArchiveSegment segment) {
+        return segments.get(segment.getId(), id -> {
+            long started = System.nanoTime();
+            List<Message> messages = new ArrayList<>(segment.getCount());
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(store.open(segment.getKey()), STREAM_BUFFER_BYTES), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        messages.add(objectMapper.readValue(line, Message.class));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read archive segment " + segment.getKey(), e);
+            } finally {
+                readTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+            return Collections.unmodifiableList(messages);
+        });
+    }
+
+    // Room ids are user input; hashing keeps them out of file and object names
+    private static String roomKey(String roomId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(roomId.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
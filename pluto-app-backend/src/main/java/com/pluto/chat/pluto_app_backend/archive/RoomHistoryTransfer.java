@@ -0,0 +1,176 @@
+package com.pluto.chat.pluto_app_backend.archive;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pluto.chat.pluto_app_backend.dto.ImportResult;
+import com.pluto.chat.pluto_app_backend.entities.MediaStatus;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.MessageBucket;
+import com.pluto.chat.pluto_app_backend.entities.MessageType;
+import com.pluto.chat.pluto_app_backend.media.MediaStore;
+import com.pluto.chat.pluto_app_backend.repository.MessageBucketRepository;
+import com.pluto.chat.pluto_app_backend.service.RoomService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Whole-room history as NDJSON, one Message per line in seq order: the same lines the
+// archive stores, so archived segments are copied out without being decoded. Export walks
+// the archive and then the hot buckets over one Mongo cursor, and import parses one line at
+// a time and stores them in batches, so neither holds more than a batch of a room in memory.
+@Service
+public class RoomHistoryTransfer {
+
+    private static final int STREAM_BUFFER_BYTES = 64 * 1024;
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private final MessageArchive archive;
+    private final MessageBucketRepository bucketRepository;
+    private final RoomService roomService;
+    private final MediaStore mediaStore;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final int importBatchSize;
+
+    public RoomHistoryTransfer(MessageArchive archive,
+                               MessageBucketRepository bucketRepository,
+                               RoomService roomService,
+                               MediaStore mediaStore,
+                               @Value("${pluto.export.import-batch-size:1000}") int importBatchSize) {
+        this.archive = archive;
+        this.bucketRepository = bucketRepository;
+        this.roomService = roomService;
+        this.mediaStore = mediaStore;
+        this.importBatchSize = importBatchSize;
+    }
+
+    // Does not close `out`. Messages still waiting for the write-behind flush are not included.
+    public void export(String roomId, OutputStream out, boolean gzip) throws IOException {
+        String normalized = roomId.toLowerCase().trim();
+        OutputStream target = gzip
+                ? new GZIPOutputStream(out, STREAM_BUFFER_BYTES)
+                : new BufferedOutputStream(out, STREAM_BUFFER_BYTES);
+
+        long archivedUpTo = archive.copyTo(normalized, target);
+        // A bucket the compactor archived but has not deleted yet would otherwise repeat
+        try (Stream<MessageBucket> buckets = bucketRepository.streamByRoomId(normalized)) {
+            for (MessageBucket bucket : (Iterable<MessageBucket>) buckets::iterator) {
+                for (Message message : bucket.ordered()) {
+                    if (message.getSeq() > archivedUpTo) {
+                        target.write(objectMapper.writeValueAsBytes(message));
+                        target.write('\n');
+                    }
+                }
+            }
+        }
+
+        if (target instanceof GZIPOutputStream compressed) {
+            compressed.finish();
+        }
+        target.flush();
+    }
+
+    // Appends the messages in `in` (NDJSON, gzipped or not) to the room with new seqs after
+    // its current history; blank lines are skipped. Restoring an export into a new room
+    // therefore reproduces the original seqs. Every message records `importer`, and keeps its
+    // media only if this store holds it (see adopt).
+    public ImportResult importHistory(String roomId, InputStream in, String importer) throws IOException {
+        List<Message> batch = new ArrayList<>(importBatchSize);
+        List<String> acquired = new ArrayList<>();
+        long imported = 0;
+        Long firstSeq = null;
+        Long lastSeq = null;
+        try (MappingIterator<Message> messages = objectMapper.readerFor(Message.class).readValues(decompressed(in))) {
+            while (true) {
+                Message message;
+                try {
+                    if (!messages.hasNextValue()) {
+                        break;
+                    }
+                    message = messages.nextValue();
+                } catch (IOException | RuntimeException e) {
+                    JsonParser parser = messages.getParser();
+                    throw new HistoryImportException(parser.currentLocation().getLineNr(), imported, e);
+                }
+                batch.add(adopt(message, importer, acquired));
+                if (batch.size() == importBatchSize) {
+                    roomService.importMessages(roomId, batch);
+                    firstSeq = firstSeq != null ? firstSeq : batch.get(0).getSeq();
+                    lastSeq = batch.get(batch.size() - 1).getSeq();
+                    imported += batch.size();
+                    batch = new ArrayList<>(importBatchSize);
+                    acquired.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                roomService.importMessages(roomId, batch);
+                firstSeq = firstSeq != null ? firstSeq : batch.get(0).getSeq();
+                lastSeq = batch.get(batch.size() - 1).getSeq();
+                imported += batch.size();
+                acquired.clear();
+            }
+        } catch (IOException | RuntimeException e) {
+            // The batch that was never stored gives its media references back
+            acquired.forEach(mediaStore::release);
+            throw e;
+        }
+        return ImportResult.builder()
+                .imported(imported)
+                .firstSeq(firstSeq)
+                .lastSeq(lastSeq)
+                .build();
+    }
+
+    // An imported media URL is only kept if it is media this store holds, with a reference
+    // taken for the new message as for a forward; anything else (another deployment's URLs,
+    // media deleted since, made-up URLs) is dropped and the message imported as failed media.
+    private Message adopt(Message message, String importer, List<String> acquired) {
+        message.setImportedBy(importer);
+        if (message.getType() == null) {
+            message.setType(MessageType.TEXT);
+        }
+        String mediaUrl = message.getType() == MessageType.TEXT ? null : referenced(message.getMediaUrl(), acquired);
+        if (mediaUrl == null) {
+            message.setMediaUrl(null);
+            message.setThumbnailUrl(null);
+            message.setPreviewUrl(null);
+            message.setMediaStatus(message.getType() == MessageType.TEXT ? null : MediaStatus.FAILED);
+        } else {
+            message.setThumbnailUrl(referenced(message.getThumbnailUrl(), acquired));
+            message.setPreviewUrl(referenced(message.getPreviewUrl(), acquired));
+            message.setMediaStatus(MediaStatus.READY);
+        }
+        return message;
+    }
+
+    private String referenced(String url, List<String> acquired) {
+        if (url == null || mediaStore.referenceUrl(url).isEmpty()) {
+            return null;
+        }
+        acquired.add(url);
+        return url;
+    }
+
+    // Either form is accepted whatever the request says, by looking at the first two bytes
+    private static InputStream decompressed(InputStream in) throws IOException {
+        PushbackInputStream peek = new PushbackInputStream(in, 2);
+        byte[] magic = peek.readNBytes(2);
+        peek.unread(magic);
+        if (magic.length == 2 && ((magic[0] & 0xff) | (magic[1] & 0xff) << 8) == GZIP_MAGIC) {
+            return new GZIPInputStream(peek, STREAM_BUFFER_BYTES);
+        }
+        return new BufferedInputStream(peek, STREAM_BUFFER_BYTES);
+    }
+}
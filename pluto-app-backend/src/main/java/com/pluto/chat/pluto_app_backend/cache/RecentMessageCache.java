@@ -0,0 +1,142 @@
+package com.pluto.chat.pluto_app_backend.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+// Last N messages of active rooms, filled as messages are accepted. Caffeine's
+// frequency/recency (W-TinyLFU) policy picks which rooms stay under a global byte budget.
+// Reads only count as hits when the whole requested range is held, otherwise the caller
+// goes to Mongo as before.
+//
+// A cache is only as current as the messages that reach it. In a cluster a node only
+// receives another node's messages for rooms it has subscribers for, so ClusterFanout
+// restricts the cache to those rooms; everything else is read from Mongo.
+@Component
+public class RecentMessageCache {
+
+    private final Cache<String, RoomBuffer> buffers;
+    private final int messagesPerRoom;
+    private final Counter hits;
+    private final Counter misses;
+
+    private volatile Predicate<String> cacheable = roomId -> true;
+
+    public RecentMessageCache(MeterRegistry meterRegistry,
+                              @Value("${pluto.cache.recent.messages-per-room:200}") int messagesPerRoom,
+                              @Value("${pluto.cache.recent.max-size:64MB}") DataSize maxSize) {
+        this.messagesPerRoom = messagesPerRoom;
+        this.buffers = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String roomId, RoomBuffer buffer) -> buffer.weight())
+                .recordStats()
+                .build();
+
+        // Evictions, size and weight come from Caffeine's own stats
+        CaffeineCacheMetrics.monitor(meterRegistry, buffers, "room.recent.messages");
+        this.hits = Counter.builder("pluto.cache.recent.reads")
+                .tag("result", "hit")
+                .description("History reads served from the recent-message cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("pluto.cache.recent.reads")
+                .tag("result", "miss")
+                .description("History reads that had to go to Mongo")
+                .register(meterRegistry);
+    }
+
+    // Rooms outside `cacheable` are neither filled nor served, and are dropped when added to
+    public void restrictTo(Predicate<String> cacheable) {
+        this.cacheable = cacheable;
+    }
+
+    // Going through compute() makes Caffeine re-weigh the buffer after it grows
+    public void add(String roomId, Message message) {
+        if (!cacheable.test(roomId)) {
+            buffers.invalidate(roomId);
+            return;
+        }
+        buffers.asMap().compute(roomId, (id, buffer) -> {
+            RoomBuffer target = buffer != null ? buffer : new RoomBuffer(messagesPerRoom);
+            target.add(message);
+            return target;
+        });
+    }
+
+    // Warms a room from a page that was just read from Mongo
+    public void seed(String roomId, List<Message> messages) {
+        if (messages.isEmpty() || !cacheable.test(roomId)) {
+            return;
+        }
+        buffers.asMap().compute(roomId, (id, buffer) -> {
+            RoomBuffer target = buffer != null ? buffer : new RoomBuffer(messagesPerRoom);
+            messages.forEach(target::add);
+            return target;
+        });
+    }
+
+    // A message changed after it was sent (e.g. an upload finished); only cached rooms care
+    public void update(String roomId, Message message) {
+        buffers.asMap().computeIfPresent(roomId, (id, buffer) -> {
+            buffer.replace(message);
+            return buffer;
+        });
+    }
+
+    // Used when this node may stop seeing a room's messages, e.g. no local subscribers in a cluster
+    public void invalidate(String roomId) {
+        buffers.invalidate(roomId);
+    }
+
+    // Newest `limit` messages older than `before` (or the newest overall when before is null)
+    public Optional<List<Message>> latest(String roomId, Long before, int limit) {
+        RoomBuffer buffer = cacheable.test(roomId) ? buffers.getIfPresent(roomId) : null;
+        if (buffer == null) {
+            return miss();
+        }
+        long maxSeq = buffer.maxSeq();
+        // A cursor past what we've seen means the client knows newer messages than we do
+        if (before != null && before - 1 > maxSeq) {
+            return miss();
+        }
+        long to = before == null ? maxSeq : before - 1;
+        long from = Math.max(1, to - limit + 1);
+        return result(buffer.range(from, to));
+    }
+
+    // Up to `limit` messages after `after`, oldest first
+    public Optional<List<Message>> after(String roomId, long after, int limit) {
+        RoomBuffer buffer = cacheable.test(roomId) ? buffers.getIfPresent(roomId) : null;
+        if (buffer == null) {
+            return miss();
+        }
+        // Same as in latest(): the client has seen more than we have, so "nothing new" is unknown
+        if (after > buffer.maxSeq()) {
+            return miss();
+        }
+        long to = Math.min(buffer.maxSeq(), after + limit);
+        return result(buffer.range(after + 1, to));
+    }
+
+    private Optional<List<Message>> result(List<Message> messages) {
+        if (messages == null) {
+            return miss();
+        }
+        hits.increment();
+        return Optional.of(messages);
+    }
+
+    private Optional<List<Message>> miss() {
+        misses.increment();
+        return Optional.empty();
+    }
+}
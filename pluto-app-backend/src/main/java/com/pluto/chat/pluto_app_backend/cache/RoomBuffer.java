@@ -0,0 +1,87 @@
+package com.pluto.chat.pluto_app_backend.cache;
+
+import com.pluto.chat.pluto_app_backend.entities.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Ring buffer of a room's newest messages, indexed by seq % capacity. Slots can be filled
+// out of order, so reads check that every seq in the requested range is actually present.
+final class RoomBuffer {
+
+    private static final int MESSAGE_OVERHEAD_BYTES = 160;
+    private static final int BUFFER_OVERHEAD_BYTES = 128;
+
+    private final Message[] slots;
+    private long maxSeq;
+    private long bytes = BUFFER_OVERHEAD_BYTES;
+
+    RoomBuffer(int capacity) {
+        this.slots = new Message[capacity];
+    }
+
+    synchronized void add(Message message) {
+        long seq = message.getSeq();
+        int slot = (int) (seq % slots.length);
+        Message current = slots[slot];
+        if (current != null && current.getSeq() >= seq) {
+            return;
+        }
+        bytes += estimateBytes(message) - (current != null ? estimateBytes(current) : 0);
+        slots[slot] = message;
+        maxSeq = Math.max(maxSeq, seq);
+    }
+
+    // Swaps in a newer version of a message that is already held; anything else is ignored
+    synchronized void replace(Message message) {
+        long seq = message.getSeq();
+        int slot = (int) (seq % slots.length);
+        Message current = slots[slot];
+        if (current == null || current.getSeq() != seq) {
+            return;
+        }
+        bytes += estimateBytes(message) - estimateBytes(current);
+        slots[slot] = message;
+    }
+
+    synchronized long maxSeq() {
+        return maxSeq;
+    }
+
+    // Messages from..to inclusive, or null if any of them isn't held
+    synchronized List<Message> range(long from, long to) {
+        if (to < from) {
+            return List.of();
+        }
+        if (to - from + 1 > slots.length) {
+            return null;
+        }
+        List<Message> messages = new ArrayList<>((int) (to - from + 1));
+        for (long seq = from; seq <= to; seq++) {
+            Message message = slots[(int) (seq % slots.length)];
+            if (message == null || message.getSeq() != seq) {
+                return null;
+            }
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    synchronized int weight() {
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    // Rough heap footprint: object headers plus two bytes per char of each string field
+    private static long estimateBytes(Message message) {
+        return MESSAGE_OVERHEAD_BYTES
+                + 2L * (length(message.getSender())
+                + length(message.getContent())
+                + length(message.getMediaUrl())
+                + length(message.getFileName())
+                + length(message.getMimeType()));
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
@@ -0,0 +1,378 @@
+package com.pluto.chat.pluto_app_backend.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pluto.chat.pluto_app_backend.cache.RecentMessageCache;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Relays /topic/room/** broadcasts between backend nodes so clients connected to different
+// instances see the same room. Registered as an interceptor on the broker channel:
+//   - local broadcasts are forwarded only to peers that announced subscribers for the room
+//   - remote broadcasts are deduplicated by (origin, epoch, id) and delivered to the local broker
+//     in seq order, holding early arrivals for up to reorder-window while a gap fills
+@Component
+@ConditionalOnProperty(name = "pluto.cluster.enabled", havingValue = "true")
+public class ClusterFanout implements ChannelInterceptor, SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterFanout.class);
+
+    private static final String ROOM_PREFIX = "/topic/room/";
+    // Presence diffs are per node (PresenceTracker); another node's "went offline" only
+    // means offline there, so they stay local
+    private static final String PRESENCE_SUFFIX = "/presence";
+    private static final String RELAYED_HEADER = "plutoClusterRelayed";
+    private static final String SEQ_HEADER = "seq";
+
+    private final ClusterTransport transport;
+    private final MessageChannel brokerChannel;
+    private final RecentMessageCache recentMessageCache;
+    private final ObjectMapper objectMapper;
+    private final Duration syncInterval;
+    private final Duration reorderWindow;
+
+    // Frame ids start over on every boot while origin (the node's URL) stays the same, so a
+    // per-boot epoch keeps a restarted node's frames from looking like ones peers already saw
+    private final String epoch = UUID.randomUUID().toString();
+    private final AtomicLong nextFrameId = new AtomicLong();
+    private final Cache<String, Boolean> seenFrames = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMinutes(5))
+            .build();
+
+    // sessionId -> subscriptionId -> roomId, and how many local subscriptions each room has
+    private final Map<String, Map<String, String>> sessionSubscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Integer> localRoomSubscribers = new ConcurrentHashMap<>();
+
+    private final Map<String, PeerInterest> peerInterest = new ConcurrentHashMap<>();
+    private final Map<String, RoomOrdering> ordering = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    public ClusterFanout(ClusterTransport transport,
+                         @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel,
+                         RecentMessageCache recentMessageCache,
+                         ObjectMapper objectMapper,
+                         @Value("${pluto.cluster.sync-interval:2s}") Duration syncInterval,
+                         @Value("${pluto.cluster.reorder-window:200ms}") Duration reorderWindow) {
+        this.transport = transport;
+        this.brokerChannel = brokerChannel;
+        this.recentMessageCache = recentMessageCache;
+        this.objectMapper = objectMapper;
+        this.syncInterval = syncInterval;
+        this.reorderWindow = reorderWindow;
+        // Rooms without local subscribers aren't relayed to us, so their cached history would go stale
+        recentMessageCache.restrictTo(localRoomSubscribers::containsKey);
+    }
+
+    // ---- outbound: local broadcasts ----
+
+    @Override
+    public org.springframework.messaging.Message<?> preSend(org.springframework.messaging.Message<?> message,
+                                                             MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        String roomId = roomOf(accessor.getDestination());
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE || roomId == null
+                || accessor.getHeader(RELAYED_HEADER) != null
+                || accessor.getDestination().endsWith(PRESENCE_SUFFIX)) {
+            return message;
+        }
+
+        Long seq = seqOf(accessor);
+        if (seq != null) {
+            ordering.computeIfAbsent(roomId, id -> new RoomOrdering()).observeLocal(seq);
+        }
+
+        List<String> interested = peerInterest.entrySet().stream()
+                .filter(entry -> entry.getValue().rooms.contains(roomId))
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!interested.isEmpty()) {
+            ClusterFrame frame = ClusterFrame.broadcast(transport.localNode(), epoch, nextFrameId.incrementAndGet(),
+                    accessor.getDestination(), relayHeaders(accessor), payloadOf(message));
+            interested.forEach(peer -> transport.send(peer, frame));
+        }
+        return message;
+    }
+
+    // ---- inbound: frames from peers ----
+
+    void onFrame(ClusterFrame frame) {
+        switch (frame.type()) {
+            case INTEREST -> peerInterest.put(frame.origin(), new PeerInterest(frame.rooms() != null
+                    ? frame.rooms().stream().filter(Objects::nonNull).collect(Collectors.toUnmodifiableSet())
+                    : Set.of(), System.nanoTime()));
+            case BROADCAST -> onBroadcast(frame);
+        }
+    }
+
+    private void onBroadcast(ClusterFrame frame) {
+        if (seenFrames.asMap().putIfAbsent(frame.origin() + ":" + frame.epoch() + ":" + frame.id(), Boolean.TRUE) != null) {
+            return;
+        }
+        String roomId = roomOf(frame.destination());
+        if (roomId == null) {
+            return;
+        }
+
+        String seqHeader = frame.headers().get(SEQ_HEADER);
+        if (seqHeader == null) {
+            deliver(frame);
+            return;
+        }
+
+        long seq = Long.parseLong(seqHeader);
+        // Remote messages never pass through RoomService here, so feed them to the cache
+        rememberInCache(roomId, frame);
+        ordering.computeIfAbsent(roomId, id -> new RoomOrdering()).offerRemote(seq, frame);
+    }
+
+    private void deliver(ClusterFrame frame) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(frame.destination());
+        frame.headers().forEach((name, value) -> {
+            if (name.equals(SimpMessageHeaderAccessor.CONTENT_TYPE)) {
+                accessor.setContentType(MimeType.valueOf(value));
+            } else {
+                accessor.setNativeHeader(name, value);
+            }
+        });
+        accessor.setHeader(RELAYED_HEADER, frame.origin());
+        brokerChannel.send(MessageBuilder.createMessage(frame.payload(), accessor.getMessageHeaders()));
+    }
+
+    private void rememberInCache(String roomId, ClusterFrame frame) {
+        try {
+            recentMessageCache.add(roomId, objectMapper.readValue(frame.payload(), Message.class));
+        } catch (Exception e) {
+            log.debug("Relayed frame for room {} is not a chat message", roomId);
+        }
+    }
+
+    // ---- local subscription tracking ----
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String roomId = roomOf(accessor.getDestination());
+        if (roomId == null || accessor.getSessionId() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        sessionSubscriptions.computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>())
+                .put(accessor.getSubscriptionId(), roomId);
+        if (localRoomSubscribers.merge(roomId, 1, Integer::sum) == 1) {
+            // Whatever was cached before we received this room's relays can't be trusted
+            recentMessageCache.invalidate(roomId);
+            announceInterest();
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = sessionSubscriptions.get(accessor.getSessionId());
+        if (subscriptions != null && accessor.getSubscriptionId() != null) {
+            String roomId = subscriptions.remove(accessor.getSubscriptionId());
+            if (roomId != null) {
+                releaseRoom(roomId);
+            }
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessionSubscriptions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::releaseRoom);
+        }
+    }
+
+    private void releaseRoom(String roomId) {
+        Integer remaining = localRoomSubscribers.computeIfPresent(roomId, (id, count) -> count > 1 ? count - 1 : null);
+        if (remaining == null) {
+            // Without local subscribers we stop receiving this room, so cached history would go stale
+            recentMessageCache.invalidate(roomId);
+            ordering.remove(roomId);
+            announceInterest();
+        }
+    }
+
+    private void announceInterest() {
+        ClusterFrame frame = ClusterFrame.interest(transport.localNode(), Set.copyOf(localRoomSubscribers.keySet()));
+        transport.peers().forEach(peer -> transport.send(peer, frame));
+    }
+
+    // ---- lifecycle and timers ----
+
+    @Override
+    public void start() {
+        transport.onReceive(this::onFrame);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-fanout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Periodic full sync doubles as a heartbeat; peers that go quiet lose their interest
+        scheduler.scheduleAtFixedRate(this::syncInterest, 0, syncInterval.toMillis(), TimeUnit.MILLISECONDS);
+        long tick = Math.max(10, reorderWindow.toMillis() / 4);
+        scheduler.scheduleAtFixedRate(this::releaseExpiredHolds, tick, tick, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    void syncInterest() {
+        try {
+            announceInterest();
+            long expiry = System.nanoTime() - syncInterval.toNanos() * 3;
+            peerInterest.entrySet().removeIf(entry -> entry.getValue().lastSeen < expiry);
+        } catch (RuntimeException e) {
+            log.warn("Cluster interest sync failed", e);
+        }
+    }
+
+    void releaseExpiredHolds() {
+        long deadline = System.nanoTime() - reorderWindow.toNanos();
+        ordering.values().forEach(room -> room.releaseIfOlderThan(deadline));
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // ---- helpers ----
+
+    // Normalized like RoomService does, so interest, ordering and the cache agree on ids
+    private static String roomOf(String destination) {
+        if (destination == null || !destination.startsWith(ROOM_PREFIX)) {
+            return null;
+        }
+        String rest = destination.substring(ROOM_PREFIX.length());
+        int slash = rest.indexOf('/');
+        String roomId = (slash >= 0 ? rest.substring(0, slash) : rest).toLowerCase().trim();
+        return roomId.isEmpty() ? null : roomId;
+    }
+
+    private static Long seqOf(SimpMessageHeaderAccessor accessor) {
+        String seq = accessor.getFirstNativeHeader(SEQ_HEADER);
+        return seq != null ? Long.valueOf(seq) : null;
+    }
+
+    private static Map<String, String> relayHeaders(SimpMessageHeaderAccessor accessor) {
+        Map<String, String> headers = new HashMap<>();
+        Map<String, List<String>> nativeHeaders = accessor.toNativeHeaderMap();
+        nativeHeaders.forEach((name, values) -> {
+            if (!values.isEmpty()) {
+                headers.put(name, values.get(0));
+            }
+        });
+        if (accessor.getContentType() != null) {
+            headers.put(SimpMessageHeaderAccessor.CONTENT_TYPE, accessor.getContentType().toString());
+        }
+        return headers;
+    }
+
+    private static byte[] payloadOf(org.springframework.messaging.Message<?> message) {
+        Object payload = message.getPayload();
+        if (payload instanceof byte[] bytes) {
+            return bytes;
+        }
+        return payload.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record PeerInterest(Set<String> rooms, long lastSeen) {}
+
+    // Per-room delivery order for relayed messages. Local broadcasts only move lastSeq
+    // forward; remote ones wait here until every earlier seq has been seen or they time out.
+    private final class RoomOrdering {
+        private long lastSeq;
+        private final TreeMap<Long, ClusterFrame> held = new TreeMap<>();
+        private long oldestHeldAt;
+
+        synchronized void observeLocal(long seq) {
+            lastSeq = Math.max(lastSeq, seq);
+            releaseContiguous();
+        }
+
+        synchronized void offerRemote(long seq, ClusterFrame frame) {
+            if (lastSeq == 0 || seq <= lastSeq + 1) {
+                // First message we see for the room, the next one in line, or a late one
+                deliver(frame);
+                lastSeq = Math.max(lastSeq, seq);
+                releaseContiguous();
+                return;
+            }
+            if (held.isEmpty()) {
+                oldestHeldAt = System.nanoTime();
+            }
+            held.put(seq, frame);
+        }
+
+        synchronized void releaseIfOlderThan(long deadline) {
+            if (held.isEmpty() || oldestHeldAt > deadline) {
+                return;
+            }
+            // Give up on the gap: whatever filled it will arrive late and still be delivered
+            List<Map.Entry<Long, ClusterFrame>> all = new ArrayList<>(held.entrySet());
+            held.clear();
+            all.forEach(entry -> {
+                deliver(entry.getValue());
+                lastSeq = Math.max(lastSeq, entry.getKey());
+            });
+        }
+
+        private void releaseContiguous() {
+            while (!held.isEmpty() && held.firstKey() <= lastSeq + 1) {
+                Map.Entry<Long, ClusterFrame> next = held.pollFirstEntry();
+                deliver(next.getValue());
+                lastSeq = Math.max(lastSeq, next.getKey());
+            }
+            if (!held.isEmpty()) {
+                oldestHeldAt = System.nanoTime();
+            }
+        }
+    }
+}
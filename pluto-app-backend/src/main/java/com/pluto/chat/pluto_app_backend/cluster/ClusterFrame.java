@@ -0,0 +1,32 @@
+package com.pluto.chat.pluto_app_backend.cluster;
+
+import java.util.Map;
+import java.util.Set;
+
+// What nodes exchange. INTEREST carries the full set of rooms the origin has local
+// subscribers for; BROADCAST carries one already-serialized broker message. A BROADCAST is
+// identified by (origin, epoch, id): ids restart with every boot, the epoch does not repeat.
+public record ClusterFrame(
+        Type type,
+        String origin,
+        String epoch,
+        long id,
+        String destination,
+        Map<String, String> headers,
+        byte[] payload,
+        Set<String> rooms) {
+
+    public enum Type {
+        INTEREST,
+        BROADCAST
+    }
+
+    public static ClusterFrame interest(String origin, Set<String> rooms) {
+        return new ClusterFrame(Type.INTEREST, origin, null, 0, null, null, null, rooms);
+    }
+
+    public static ClusterFrame broadcast(String origin, String epoch, long id, String destination,
+                                         Map<String, String> headers, byte[] payload) {
+        return new ClusterFrame(Type.BROADCAST, origin, epoch, id, destination, headers, payload, null);
+    }
+}
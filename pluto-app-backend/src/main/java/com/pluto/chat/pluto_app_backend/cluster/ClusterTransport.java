@@ -0,0 +1,13 @@
+package com.pluto.chat.pluto_app_backend.cluster;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+// How frames travel between backend nodes. Implementations must deliver frames to a given
+// peer in the order they were sent; ClusterFanout takes care of dedup, interest and ordering.
+public interface ClusterTransport {
+    String localNode();
+    Collection<String> peers();
+    void send(String peer, ClusterFrame frame);
+    void onReceive(Consumer<ClusterFrame> handler);
+}
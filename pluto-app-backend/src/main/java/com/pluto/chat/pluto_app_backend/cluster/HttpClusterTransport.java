@@ -0,0 +1,159 @@
+package com.pluto.chat.pluto_app_backend.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Built-in transport: each node POSTs JSON batches of frames to its peers' /internal/cluster/frames.
+// One sender thread per peer keeps frames to that peer in order; peers are listed statically,
+// e.g. three nodes on localhost:8080/8081/8082 each listing the other two. Set
+// pluto.cluster.transport to something else to plug in a different ClusterTransport bean.
+@Component
+@ConditionalOnExpression("${pluto.cluster.enabled:false} and '${pluto.cluster.transport:http}' == 'http'")
+public class HttpClusterTransport implements ClusterTransport, DisposableBean {
+
+    public static final String FRAMES_PATH = "/internal/cluster/frames";
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    private static final Logger log = LoggerFactory.getLogger(HttpClusterTransport.class);
+    private static final int MAX_FRAMES_PER_REQUEST = 256;
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    private final String selfUrl;
+    private final List<String> peers;
+    private final String secret;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+    private final Map<String, PeerSender> senders = new ConcurrentHashMap<>();
+
+    private volatile Consumer<ClusterFrame> handler = frame -> { };
+
+    public HttpClusterTransport(@Value("${pluto.cluster.self-url}") String selfUrl,
+                                @Value("${pluto.cluster.peers:}") List<String> peers,
+                                @Value("${pluto.cluster.secret:}") String secret,
+                                ObjectMapper objectMapper) {
+        // /internal/cluster/** is open to the network; the secret is all that keeps others out
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("pluto.cluster.secret must be set when clustering is enabled");
+        }
+        this.selfUrl = selfUrl;
+        this.peers = peers.stream().filter(peer -> !peer.isBlank() && !peer.equals(selfUrl)).toList();
+        this.secret = secret;
+        this.objectMapper = objectMapper;
+        this.peers.forEach(peer -> senders.put(peer, new PeerSender(peer)));
+    }
+
+    @Override
+    public String localNode() {
+        return selfUrl;
+    }
+
+    @Override
+    public Collection<String> peers() {
+        return peers;
+    }
+
+    @Override
+    public void send(String peer, ClusterFrame frame) {
+        PeerSender sender = senders.get(peer);
+        if (sender != null && !sender.queue.offer(frame)) {
+            log.warn("Cluster queue for {} is full, dropping {} frame", peer, frame.type());
+        }
+    }
+
+    @Override
+    public void onReceive(Consumer<ClusterFrame> handler) {
+        this.handler = handler;
+    }
+
+    // Called by ClusterController for every inbound request
+    public boolean accept(String presentedSecret, List<ClusterFrame> frames) {
+        if (presentedSecret == null || !MessageDigest.isEqual(
+                secret.getBytes(StandardCharsets.UTF_8), presentedSecret.getBytes(StandardCharsets.UTF_8))) {
+            return false;
+        }
+        frames.forEach(handler);
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        senders.values().forEach(sender -> sender.thread.interrupt());
+    }
+
+    private final class PeerSender {
+        private final String peer;
+        private final BlockingQueue<ClusterFrame> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+        private final Thread thread;
+
+        PeerSender(String peer) {
+            this.peer = peer;
+            this.thread = new Thread(this::run, "cluster-sender-" + peer);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void run() {
+            List<ClusterFrame> batch = new ArrayList<>(MAX_FRAMES_PER_REQUEST);
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, MAX_FRAMES_PER_REQUEST - 1);
+                    post(batch);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    // Peer down or slow: drop this batch, it will pick up with fresh interest
+                    log.warn("Failed to send {} cluster frames to {}: {}", batch.size(), peer, e.getMessage());
+                    sleepQuietly();
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        private void post(List<ClusterFrame> batch) throws Exception {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(peer + FRAMES_PATH))
+                    .timeout(Duration.ofSeconds(5))
+                    .header("Content-Type", "application/json")
+                    .header(SECRET_HEADER, secret)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(batch)))
+                    .build();
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 300) {
+                throw new IllegalStateException("HTTP " + response.statusCode());
+            }
+        }
+
+        private void sleepQuietly() {
+            try {
+                TimeUnit.MILLISECONDS.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
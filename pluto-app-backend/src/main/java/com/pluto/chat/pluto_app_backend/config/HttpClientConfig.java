@@ -0,0 +1,22 @@
+package com.pluto.chat.pluto_app_backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+public class HttpClientConfig {
+
+    // One client for outbound calls to media hosts; it pools and reuses connections
+    // internally, which a client built per request never gets to do.
+    @Bean
+    public HttpClient httpClient(@Value("${pluto.http.connect-timeout:5s}") Duration connectTimeout) {
+        return HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+}
@@ -1,5 +1,9 @@
 package com.pluto.chat.pluto_app_backend.config;
+import com.pluto.chat.pluto_app_backend.security.JwtAuthenticationFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,6 +13,8 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -20,25 +26,41 @@ import java.util.List;
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // Raising the strength upgrades existing hashes on each user's next login
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+    public PasswordEncoder passwordEncoder(@Value("${pluto.security.bcrypt-strength:12}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 
+    // The filter only belongs in the security chain, not in the servlet filter chain as well
     @Bean
-public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public FilterRegistrationBean<JwtAuthenticationFilter> jwtFilterRegistration(JwtAuthenticationFilter filter) {
+        FilterRegistrationBean<JwtAuthenticationFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    @Bean
+public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtAuthenticationFilter jwtFilter) throws Exception {
     http
         .csrf(csrf -> csrf.disable())
         .cors(cors -> cors.configurationSource(corsConfigurationSource()))
         .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+        .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class)
+        .exceptionHandling(ex -> ex.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
         .authorizeHttpRequests(auth -> auth
             .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
             .requestMatchers("/api/v1/auth/**").permitAll()
+            // The WebSocket handshake is open; STOMP CONNECT carries the token
             .requestMatchers("/chat/**").permitAll()
             .requestMatchers("/ws/**").permitAll()
-            .requestMatchers("/api/v1/users/**").permitAll()
-            .requestMatchers("/api/v1/profile/**").permitAll()
-            .requestMatchers("/api/v1/rooms/**").permitAll()
+            // <img> tags can't send the bearer token; a key is the SHA-256 of the content, so only
+            // someone with the URL or the file can fetch it, and only safe types render inline
+            .requestMatchers(HttpMethod.GET, "/api/v1/media/**").permitAll()
+            // Only health is public; metrics need a login like the rest of the API
+            .requestMatchers("/actuator/health").permitAll()
+            // Node-to-node traffic authenticates with the shared cluster secret instead
+            .requestMatchers("/internal/cluster/**").permitAll()
             .anyRequest().authenticated()
         );
 
@@ -0,0 +1,54 @@
+package com.pluto.chat.pluto_app_backend.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+
+// Tomcat accepts permessage-deflate on /chat whenever the client offers it, which browsers
+// always do. Compression costs CPU per session and per frame, so it can be turned off with
+// pluto.websocket.compression.enabled=false; this filter then hides the client's offer
+// from the handshake and frames go out uncompressed.
+@Component
+@ConditionalOnProperty(name = "pluto.websocket.compression.enabled", havingValue = "false")
+public class WebSocketCompressionFilter extends OncePerRequestFilter {
+
+    private static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/chat")
+                || request.getHeader(EXTENSIONS_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        filterChain.doFilter(new HttpServletRequestWrapper(request) {
+            @Override
+            public String getHeader(String name) {
+                return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? null : super.getHeader(name);
+            }
+
+            @Override
+            public Enumeration<String> getHeaders(String name) {
+                return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+            }
+
+            @Override
+            public Enumeration<String> getHeaderNames() {
+                return Collections.enumeration(Collections.list(super.getHeaderNames()).stream()
+                        .filter(name -> !EXTENSIONS_HEADER.equalsIgnoreCase(name))
+                        .toList());
+            }
+        }, response);
+    }
+}
@@ -1,6 +1,16 @@
 package com.pluto.chat.pluto_app_backend.config;
 
+import com.pluto.chat.pluto_app_backend.cluster.ClusterFanout;
+import com.pluto.chat.pluto_app_backend.messaging.OutboundBatcher;
+import com.pluto.chat.pluto_app_backend.messaging.PayloadEncoder;
+import com.pluto.chat.pluto_app_backend.messaging.RoomStripedExecutor;
+import com.pluto.chat.pluto_app_backend.security.StompAuthChannelInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
@@ -11,12 +21,79 @@ import org.springframework.web.socket.config.annotation.WebSocketTransportRegist
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final ObjectProvider<ClusterFanout> clusterFanout;
+    private final MeterRegistry meterRegistry;
+    private final StompAuthChannelInterceptor stompAuthInterceptor;
+    private final OutboundBatcher outboundBatcher;
+    private final PayloadEncoder payloadEncoder;
+
+    @Value("${pluto.stomp.executor.mode:platform}")
+    private RoomStripedExecutor.Mode executorMode;
+
+    // 0 picks a default for the mode: 2x cores for platform threads, 256 for virtual ones
+    @Value("${pluto.stomp.executor.stripes:0}")
+    private int stripes;
+
+    @Value("${pluto.stomp.executor.queue-capacity:1000}")
+    private int queueCapacity;
+
+    public WebSocketConfig(ObjectProvider<ClusterFanout> clusterFanout,
+                           MeterRegistry meterRegistry,
+                           StompAuthChannelInterceptor stompAuthInterceptor,
+                           OutboundBatcher outboundBatcher,
+                           PayloadEncoder payloadEncoder) {
+        this.clusterFanout = clusterFanout;
+        this.meterRegistry = meterRegistry;
+        this.stompAuthInterceptor = stompAuthInterceptor;
+        this.outboundBatcher = outboundBatcher;
+        this.payloadEncoder = payloadEncoder;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic");
         config.setApplicationDestinationPrefixes("/app");
     }
 
+    // Room-striped so one room's messages stay in order while other rooms run in parallel
+    @Bean(destroyMethod = "shutdown")
+    public RoomStripedExecutor stompInboundExecutor() {
+        return stripedExecutor("inbound", RoomStripedExecutor.Affinity.ROOM);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public RoomStripedExecutor stompOutboundExecutor() {
+        // Per session, so one client's frames never overtake each other across rooms
+        return stripedExecutor("outbound", RoomStripedExecutor.Affinity.SESSION);
+    }
+
+    private RoomStripedExecutor stripedExecutor(String channel, RoomStripedExecutor.Affinity affinity) {
+        int count = stripes > 0 ? stripes
+                : executorMode == RoomStripedExecutor.Mode.VIRTUAL ? 256
+                : Runtime.getRuntime().availableProcessors() * 2;
+        return new RoomStripedExecutor(channel, executorMode, affinity, count, queueCapacity, meterRegistry);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthInterceptor)
+                .executor(stompInboundExecutor());
+    }
+
+    // Sessions that negotiated batching at CONNECT get room messages coalesced per subscription,
+    // and those that asked for CBOR get the result transcoded; the order matters
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(outboundBatcher, payloadEncoder)
+                .executor(stompOutboundExecutor());
+    }
+
+    // Only present when pluto.cluster.enabled=true
+    @Override
+    public void configureBrokerChannel(ChannelRegistration registration) {
+        clusterFanout.ifAvailable(registration::interceptors);
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/chat")
@@ -3,7 +3,11 @@ package com.pluto.chat.pluto_app_backend.controller;
 import com.pluto.chat.pluto_app_backend.dto.AuthResponse;
 import com.pluto.chat.pluto_app_backend.dto.LoginRequest;
 import com.pluto.chat.pluto_app_backend.dto.RegisterRequest;
+import com.pluto.chat.pluto_app_backend.security.PasswordHashingBusyException;
 import com.pluto.chat.pluto_app_backend.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -13,6 +17,8 @@ import org.springframework.web.bind.annotation.*;
 @CrossOrigin(origins = "*")
 public class AuthController {
 
+    private static final Logger log = LoggerFactory.getLogger(AuthController.class);
+
     private final UserService userService;
 
     public AuthController(UserService userService) {
@@ -22,12 +28,16 @@ public class AuthController {
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody RegisterRequest request) {
         try {
-            System.out.println("📝 Registration attempt: " + request.getUsername());
             AuthResponse response = userService.register(request);
-            System.out.println("✅ User registered: " + request.getUsername());
+            log.info("User registered: {}", request.getUsername());
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(new ErrorResponse(e.getMessage()));
         } catch (RuntimeException e) {
-            System.err.println("❌ Registration failed: " + e.getMessage());
+            log.debug("Registration for {} failed: {}", request.getUsername(), e.getMessage());
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
                     .body(new ErrorResponse(e.getMessage()));
@@ -37,12 +47,16 @@ public class AuthController {
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody LoginRequest request) {
         try {
-            System.out.println("🔐 Login attempt: " + request.getUsername());
             AuthResponse response = userService.login(request);
-            System.out.println("✅ User logged in: " + request.getUsername());
+            log.debug("User logged in: {}", request.getUsername());
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(new ErrorResponse(e.getMessage()));
         } catch (RuntimeException e) {
-            System.err.println("❌ Login failed: " + e.getMessage());
+            log.debug("Login for {} failed: {}", request.getUsername(), e.getMessage());
             return ResponseEntity
                     .status(HttpStatus.UNAUTHORIZED)
                     .body(new ErrorResponse(e.getMessage()));
@@ -1,24 +1,25 @@
 package com.pluto.chat.pluto_app_backend.controller;
 
-import java.io.IOException;
 import com.pluto.chat.pluto_app_backend.entities.Message;
 import com.pluto.chat.pluto_app_backend.entities.MessageType;
-import com.pluto.chat.pluto_app_backend.entities.Room;
+import com.pluto.chat.pluto_app_backend.media.MediaUploadBusyException;
+import com.pluto.chat.pluto_app_backend.media.MediaUploadService;
+import com.pluto.chat.pluto_app_backend.observability.MessageMetrics;
+import com.pluto.chat.pluto_app_backend.persistence.MessagePersistencePipeline;
+import com.pluto.chat.pluto_app_backend.readmarker.ReadMarkers;
 import com.pluto.chat.pluto_app_backend.service.RoomService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.*;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.core.io.ByteArrayResource;
 
+import java.security.Principal;
 import java.time.LocalDateTime;
 import java.util.Map;
 
@@ -26,128 +27,119 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class ChatController {
 
+    private static final Logger log = LoggerFactory.getLogger(ChatController.class);
+
     private final RoomService roomService;
     private final SimpMessagingTemplate messagingTemplate;
-
-    public ChatController(RoomService roomService, SimpMessagingTemplate messagingTemplate) {
+    private final MessagePersistencePipeline persistencePipeline;
+    private final MessageMetrics messageMetrics;
+    private final MediaUploadService mediaUploadService;
+    private final ReadMarkers readMarkers;
+
+    public ChatController(RoomService roomService,
+                          SimpMessagingTemplate messagingTemplate,
+                          MessagePersistencePipeline persistencePipeline,
+                          MessageMetrics messageMetrics,
+                          MediaUploadService mediaUploadService,
+                          ReadMarkers readMarkers) {
         this.roomService = roomService;
         this.messagingTemplate = messagingTemplate;
+        this.persistencePipeline = persistencePipeline;
+        this.messageMetrics = messageMetrics;
+        this.mediaUploadService = mediaUploadService;
+        this.readMarkers = readMarkers;
     }
 
-    // Real-time text message via WebSocket
+    // Real-time text message via WebSocket: broadcast first, persist behind
     @MessageMapping("/chat/{roomId}")
-    @SendTo("/topic/room/{roomId}")
-    public Message sendMessage(
-            @DestinationVariable String roomId,
-            @Payload Message message) {
+    public void sendMessage(
+            @DestinationVariable("roomId") String rawRoomId,
+            @Payload Message message,
+            Principal principal) {
 
-        System.out.println("📩 Received message in room " + roomId + ": " + message.getContent());
+        // Metrics, in-flight history and read markers use the id RoomService keys rooms by.
+        // The broadcast keeps the destination clients subscribed to.
+        String roomId = rawRoomId.toLowerCase().trim();
+        long receivedAt = messageMetrics.received(roomId);
+
+        // The session was authenticated on CONNECT; don't trust the sender in the body
+        message.setSender(principal.getName());
 
         if (message.getTimestamp() == null) {
             message.setTimestamp(LocalDateTime.now());
         }
 
-        roomService.addMessage(roomId, message);
-        return message;
+        // The sequence number goes out in the body and as a "seq" frame header
+        roomService.assignSequence(roomId, message);
+        messageMetrics.stage(MessageMetrics.SEQUENCED, receivedAt);
+        messagingTemplate.convertAndSend("/topic/room/" + rawRoomId, message,
+                Map.of("seq", String.valueOf(message.getSeq())));
+        messageMetrics.stage(MessageMetrics.BROADCAST, receivedAt);
+        persistencePipeline.submit(roomId, message, receivedAt);
+        // Your own messages are never unread
+        readMarkers.markRead(message.getSender(), roomId, message.getSeq());
+
+        log.debug("Message {} in room {} from {}", message.getSeq(), roomId, message.getSender());
     }
 
-    // Upload photo using Freeimage.host (anonymous API)
+    // Photo upload: broadcast as pending right away, the media store finishes in the background.
+    // With sha256 and no file, the photo is posted from media already stored (404 if there is none).
     @PostMapping("/api/v1/rooms/{roomId}/photos")
     @ResponseBody
     public ResponseEntity<?> uploadPhoto(
             @PathVariable String roomId,
-            @RequestParam("file") MultipartFile file,
-            @RequestParam("sender") String sender) {
-
-        System.out.println("📷 Photo upload attempt for roomId: " + roomId);
-        System.out.println("📷 Sender: " + sender);
-        System.out.println("📷 File name: " + file.getOriginalFilename());
-        System.out.println("📷 File size: " + file.getSize() + " bytes");
-
-        // Unwrap Optional safely
-        Room room = roomService.getRoomByRoomId(roomId)
-                .orElseThrow(() -> {
-                    System.out.println("❌ Room not found: " + roomId);
-                    return new RuntimeException("Room not found: " + roomId);
-                });
+            @RequestParam(value = "file", required = false) MultipartFile file,
+            @RequestParam(value = "sha256", required = false) String sha256,
+            @RequestParam(value = "fileName", required = false) String fileName,
+            @RequestParam(value = "contentType", required = false) String contentType,
+            @RequestParam(value = "fileSize", required = false) Long fileSize,
+            Principal principal) {
+
+        // Posted as the authenticated caller; a "sender" parameter is ignored
+        String sender = principal.getName();
+
+        if (file == null && sha256 != null) {
+            long receivedAt = messageMetrics.received(roomId);
+            return mediaUploadService.reference(roomId, sender, sha256.toLowerCase(), fileName,
+                            contentType, fileSize != null ? fileSize : 0, MessageType.IMAGE)
+                    .<ResponseEntity<?>>map(message -> {
+                        messageMetrics.stage(MessageMetrics.BROADCAST, receivedAt);
+                        return ResponseEntity.ok(Map.of(
+                            "success", true,
+                            "seq", message.getSeq(),
+                            "status", message.getMediaStatus(),
+                            "message", "Photo posted"
+                        ));
+                    })
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                            .body(Map.of("success", false, "error", "Unknown media, upload the file")));
+        }
 
         if (file == null || file.isEmpty()) {
-            System.out.println("❌ No file uploaded");
             return ResponseEntity.badRequest().body("No file uploaded");
         }
 
-        String imageUrl = null;
+        log.debug("Photo upload for room {} by {}: {} ({} bytes)",
+                roomId, sender, file.getOriginalFilename(), file.getSize());
 
         try {
-            System.out.println("📤 Uploading to Freeimage.host...");
-            
-            // Upload to Freeimage.host (public anonymous API)
-            RestTemplate restTemplate = new RestTemplate();
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-
-            // Use ByteArrayResource to avoid file system issues
-            MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-            body.add("source", new ByteArrayResource(file.getBytes()) {
-                @Override
-                public String getFilename() {
-                    return file.getOriginalFilename();
-                }
-            });
-            body.add("action", "upload");
-            body.add("key", "6d207e02198a847aa98d0a2a901485a5"); // Free API key
-
-            HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
-
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    "https://freeimage.host/api/1/upload",
-                    HttpMethod.POST,
-                    requestEntity,
-                    Map.class
-            );
-
-            System.out.println("📥 Response from Freeimage.host: " + response.getBody());
-
-            // Extract URL safely
-            Map<String, Object> responseBody = response.getBody();
-            if (responseBody == null || !responseBody.containsKey("image")) {
-                throw new IOException("Invalid response from Freeimage.host");
-            }
-
-            Map<String, Object> imageData = (Map<String, Object>) responseBody.get("image");
-            if (imageData == null || !imageData.containsKey("url")) {
-                throw new IOException("No image URL in response from Freeimage.host");
-            }
-
-            imageUrl = (String) imageData.get("url");
-            System.out.println("✅ Image uploaded successfully: " + imageUrl);
-
-            // Create message with photo
-            Message message = Message.builder()
-                    .sender(sender)
-                    .content("📷 Photo")
-                    .type(MessageType.IMAGE)
-                    .mediaUrl(imageUrl)
-                    .fileName(file.getOriginalFilename())
-                    .fileSize(file.getSize())
-                    .timestamp(LocalDateTime.now())
-                    .build();
-
-            // Save to room and broadcast
-            roomService.addMessage(roomId, message);
-            messagingTemplate.convertAndSend("/topic/room/" + roomId, message);
-
-            System.out.println("✅ Photo message broadcasted to room");
-
-            return ResponseEntity.ok(Map.of(
+            long receivedAt = messageMetrics.received(roomId);
+            Message message = mediaUploadService.upload(roomId, sender, file, MessageType.IMAGE);
+            messageMetrics.stage(MessageMetrics.BROADCAST, receivedAt);
+
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
                 "success", true,
-                "imageUrl", imageUrl,
-                "message", "Photo uploaded successfully"
+                "seq", message.getSeq(),
+                "status", message.getMediaStatus(),
+                "message", "Photo upload started"
             ));
 
+        } catch (MediaUploadBusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "2")
+                    .body(Map.of("success", false, "error", e.getMessage()));
         } catch (Exception e) {
-            System.err.println("❌ Upload failed: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("Photo upload for room {} failed", roomId, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of(
                         "success", false,
@@ -155,4 +147,4 @@ public class ChatController {
                     ));
         }
     }
-}
\ No newline at end of file
+}
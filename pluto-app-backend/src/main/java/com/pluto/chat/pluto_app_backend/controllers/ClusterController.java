@@ -0,0 +1,32 @@
+package com.pluto.chat.pluto_app_backend.controllers;
+
+import com.pluto.chat.pluto_app_backend.cluster.ClusterFrame;
+import com.pluto.chat.pluto_app_backend.cluster.HttpClusterTransport;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+// Node-to-node endpoint for the built-in HTTP cluster transport
+@RestController
+@ConditionalOnExpression("${pluto.cluster.enabled:false} and '${pluto.cluster.transport:http}' == 'http'")
+public class ClusterController {
+
+    private final HttpClusterTransport transport;
+
+    public ClusterController(HttpClusterTransport transport) {
+        this.transport = transport;
+    }
+
+    @PostMapping(HttpClusterTransport.FRAMES_PATH)
+    public ResponseEntity<Void> receiveFrames(
+            @RequestHeader(value = HttpClusterTransport.SECRET_HEADER, required = false) String secret,
+            @RequestBody List<ClusterFrame> frames) {
+        if (!transport.accept(secret != null ? secret : "", frames)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+}
@@ -0,0 +1,167 @@
+package com.pluto.chat.pluto_app_backend.controllers;
+
+import com.pluto.chat.pluto_app_backend.media.LocalMediaStore;
+import com.pluto.chat.pluto_app_backend.media.MediaTypes;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+// Serves blobs kept by LocalMediaStore. The key is the SHA-256 of the content, so a URL
+// never changes meaning: responses carry a strong ETag and may be cached forever.
+// Bodies go out through Tomcat's sendfile when the connector supports it, otherwise
+// through FileChannel.transferTo; the file is never read through the heap.
+// Only image/audio/video types from MediaTypes are served inline; anything else (including
+// blobs stored before types were checked) is an attachment, and browsers never sniff.
+@RestController
+@RequestMapping("/api/v1/media")
+@CrossOrigin(origins = "*")
+@ConditionalOnProperty(name = "pluto.media.store", havingValue = "local", matchIfMissing = true)
+public class MediaController {
+
+    private static final String CACHE_FOREVER = "public, max-age=31536000, immutable";
+
+    // Request attributes understood by Tomcat's NIO/NIO2 connectors
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private record ByteRange(long start, long end) {
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    private final LocalMediaStore mediaStore;
+
+    public MediaController(LocalMediaStore mediaStore) {
+        this.mediaStore = mediaStore;
+    }
+
+    @GetMapping("/{key}")
+    public void getMedia(@PathVariable String key,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        Optional<LocalMediaStore.Blob> found = mediaStore.open(key);
+        if (found.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        LocalMediaStore.Blob blob = found.get();
+        String etag = "\"" + blob.sha256() + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_FOREVER);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        ByteRange range = new ByteRange(0, blob.size() - 1);
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // A stale If-Range means "send me the whole thing"
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+            Optional<ByteRange> requested = parseRange(rangeHeader, blob.size());
+            if (requested.isEmpty()) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + blob.size());
+                return;
+            }
+            range = requested.get();
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + range.start() + "-" + range.end() + "/" + blob.size());
+        }
+
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        if (MediaTypes.isInline(blob.contentType())) {
+            response.setContentType(blob.contentType());
+        } else {
+            response.setContentType(MediaTypes.OCTET_STREAM);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment");
+        }
+        response.setContentLengthLong(range.length());
+        if ("HEAD".equals(request.getMethod()) || range.length() == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat writes the file after we return; the end offset is exclusive
+            request.setAttribute(SENDFILE_FILENAME, blob.file().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(blob.file(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = range.start();
+            long remaining = range.length();
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // A single range only (bytes=a-b, bytes=a-, bytes=-n); players and browsers don't
+    // ask for multipart ranges on media
+    private static Optional<ByteRange> parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0 || size == 0) {
+            return Optional.empty();
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return Optional.empty();
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return Optional.empty();
+                }
+                return Optional.of(new ByteRange(Math.max(0, size - suffix), size - 1));
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start < 0 || start >= size || end < start) {
+                return Optional.empty();
+            }
+            return Optional.of(new ByteRange(start, end));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.pluto.chat.pluto_app_backend.controllers;
+
+import com.pluto.chat.pluto_app_backend.dto.PresenceUpdate;
+import com.pluto.chat.pluto_app_backend.dto.TypingRequest;
+import com.pluto.chat.pluto_app_backend.presence.PresenceTracker;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+
+// Clients subscribe to /topic/room/{roomId}/presence for diffs and to
+// /app/room/{roomId}/presence once for the current state, then apply diffs on top.
+@Controller
+public class PresenceController {
+
+    private final PresenceTracker presenceTracker;
+
+    public PresenceController(PresenceTracker presenceTracker) {
+        this.presenceTracker = presenceTracker;
+    }
+
+    @SubscribeMapping("/room/{roomId}/presence")
+    public PresenceUpdate snapshot(@DestinationVariable String roomId) {
+        return presenceTracker.snapshot(roomId);
+    }
+
+    // Sent while the user types (every couple of seconds) and with typing=false on send
+    @MessageMapping("/typing/{roomId}")
+    public void typing(@DestinationVariable String roomId,
+                       @Payload TypingRequest request,
+                       Principal principal) {
+        presenceTracker.typing(roomId, principal.getName(), request.isTyping());
+    }
+}
@@ -3,11 +3,16 @@ package com.pluto.chat.pluto_app_backend.controllers;
 import com.pluto.chat.pluto_app_backend.dto.ChangePasswordRequest;
 import com.pluto.chat.pluto_app_backend.dto.ProfileResponse;
 import com.pluto.chat.pluto_app_backend.dto.UpdateProfileRequest;
+import com.pluto.chat.pluto_app_backend.security.PasswordHashingBusyException;
 import com.pluto.chat.pluto_app_backend.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
 import java.util.Map;
 
 @RestController
@@ -15,6 +20,8 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class ProfileController {
 
+    private static final Logger log = LoggerFactory.getLogger(ProfileController.class);
+
     private final UserService userService;
 
     public ProfileController(UserService userService) {
@@ -25,11 +32,11 @@ public class ProfileController {
     @GetMapping("/{username}")
     public ResponseEntity<?> getProfile(@PathVariable String username) {
         try {
-            System.out.println("👤 Fetching profile for: " + username);
+            log.debug("Fetching profile for: {}", username);
             ProfileResponse profile = userService.getProfile(username);
             return ResponseEntity.ok(profile);
         } catch (RuntimeException e) {
-            System.err.println("❌ Profile fetch failed: " + e.getMessage());
+            log.debug("Profile fetch for {} failed: {}", username, e.getMessage());
             return ResponseEntity
                     .status(HttpStatus.NOT_FOUND)
                     .body(Map.of("error", e.getMessage()));
@@ -40,14 +47,17 @@ public class ProfileController {
     @PutMapping("/{username}")
     public ResponseEntity<?> updateProfile(
             @PathVariable String username,
-            @RequestBody UpdateProfileRequest request) {
+            @RequestBody UpdateProfileRequest request,
+            Principal principal) {
+        if (!isSelf(username, principal)) {
+            return forbidden();
+        }
         try {
-            System.out.println("✏️ Updating profile for: " + username);
             ProfileResponse updatedProfile = userService.updateProfile(username, request);
-            System.out.println("✅ Profile updated successfully");
+            log.info("Profile updated for: {}", username);
             return ResponseEntity.ok(updatedProfile);
         } catch (RuntimeException e) {
-            System.err.println("❌ Profile update failed: " + e.getMessage());
+            log.warn("Profile update for {} failed: {}", username, e.getMessage());
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", e.getMessage()));
@@ -58,17 +68,25 @@ public class ProfileController {
     @PutMapping("/{username}/password")
     public ResponseEntity<?> changePassword(
             @PathVariable String username,
-            @RequestBody ChangePasswordRequest request) {
+            @RequestBody ChangePasswordRequest request,
+            Principal principal) {
+        if (!isSelf(username, principal)) {
+            return forbidden();
+        }
         try {
-            System.out.println("🔐 Password change attempt for: " + username);
             userService.changePassword(username, request);
-            System.out.println("✅ Password changed successfully");
+            log.info("Password changed for: {}", username);
             return ResponseEntity.ok(Map.of(
                     "success", true,
                     "message", "Password changed successfully"
             ));
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
-            System.err.println("❌ Password change failed: " + e.getMessage());
+            log.warn("Password change for {} failed: {}", username, e.getMessage());
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", e.getMessage()));
@@ -79,21 +97,40 @@ public class ProfileController {
     @DeleteMapping("/{username}")
     public ResponseEntity<?> deleteAccount(
             @PathVariable String username,
-            @RequestBody Map<String, String> request) {
+            @RequestBody Map<String, String> request,
+            Principal principal) {
+        if (!isSelf(username, principal)) {
+            return forbidden();
+        }
         try {
             String password = request.get("password");
-            System.out.println("🗑️ Account deletion attempt for: " + username);
             userService.deleteAccount(username, password);
-            System.out.println("✅ Account deleted successfully");
+            log.info("Account deleted: {}", username);
             return ResponseEntity.ok(Map.of(
                     "success", true,
                     "message", "Account deleted successfully"
             ));
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
-            System.err.println("❌ Account deletion failed: " + e.getMessage());
+            log.warn("Account deletion for {} failed: {}", username, e.getMessage());
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    // Changes to an account may only come from the account itself
+    private static boolean isSelf(String username, Principal principal) {
+        return principal != null && principal.getName().equals(username.trim());
+    }
+
+    private static ResponseEntity<?> forbidden() {
+        return ResponseEntity
+                .status(HttpStatus.FORBIDDEN)
+                .body(Map.of("error", "You can only change your own account"));
+    }
+}
@@ -0,0 +1,43 @@
+package com.pluto.chat.pluto_app_backend.controllers;
+
+import com.pluto.chat.pluto_app_backend.dto.ReadRequest;
+import com.pluto.chat.pluto_app_backend.entities.Room;
+import com.pluto.chat.pluto_app_backend.readmarker.ReadMarkers;
+import com.pluto.chat.pluto_app_backend.service.RoomService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+
+// Clients send to /app/read/{roomId} as messages scroll into view; PUT
+// /api/v1/rooms/{roomId}/read does the same over REST. Reports for rooms the caller isn't
+// a member of are dropped, and a seq past the room's last message is clamped to it.
+@Controller
+public class ReadMarkerController {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadMarkerController.class);
+
+    private final ReadMarkers readMarkers;
+    private final RoomService roomService;
+
+    public ReadMarkerController(ReadMarkers readMarkers, RoomService roomService) {
+        this.readMarkers = readMarkers;
+        this.roomService = roomService;
+    }
+
+    @MessageMapping("/read/{roomId}")
+    public void read(@DestinationVariable String roomId,
+                     @Payload ReadRequest request,
+                     Principal principal) {
+        Room room = roomService.getRoomByRoomId(roomId).orElse(null);
+        if (room == null || !room.getMembers().contains(principal.getName())) {
+            log.debug("Dropping read report for room {} from non-member {}", roomId, principal.getName());
+            return;
+        }
+        readMarkers.markRead(principal.getName(), room.getRoomId(), Math.min(request.getSeq(), room.getMessageCount()));
+    }
+}
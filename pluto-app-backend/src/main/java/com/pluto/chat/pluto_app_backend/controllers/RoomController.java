@@ -1,15 +1,36 @@
 package com.pluto.chat.pluto_app_backend.controller;
 
+import com.pluto.chat.pluto_app_backend.archive.HistoryImportException;
+import com.pluto.chat.pluto_app_backend.archive.RoomHistoryTransfer;
+import com.pluto.chat.pluto_app_backend.config.AsyncTimeoutConfig;
 import com.pluto.chat.pluto_app_backend.dto.CreateRoomRequest;
+import com.pluto.chat.pluto_app_backend.dto.MessagePage;
 import com.pluto.chat.pluto_app_backend.dto.MessageRequest;
+import com.pluto.chat.pluto_app_backend.dto.ReadRequest;
 import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.RetentionPolicy;
 import com.pluto.chat.pluto_app_backend.entities.Room;
+import com.pluto.chat.pluto_app_backend.entities.RoomSummary;
+import com.pluto.chat.pluto_app_backend.readmarker.ReadMarkers;
 import com.pluto.chat.pluto_app_backend.service.RoomService;
+import com.pluto.chat.pluto_app_backend.service.RoomSummaryService;
 import com.pluto.chat.pluto_app_backend.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Principal;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -17,50 +38,68 @@ import java.util.Map;
 @RequestMapping("/api/v1/rooms")
 @CrossOrigin(origins = "*")
 public class RoomController {
-    
+
+    private static final Logger log = LoggerFactory.getLogger(RoomController.class);
+
     private final RoomService roomService;
     private final UserService userService;
+    private final RoomSummaryService roomSummaryService;
+    private final RoomHistoryTransfer historyTransfer;
+    private final ReadMarkers readMarkers;
+    private final Duration exportTimeout;
 
-    public RoomController(RoomService roomService, UserService userService) {
+    public RoomController(RoomService roomService,
+                          UserService userService,
+                          RoomSummaryService roomSummaryService,
+                          RoomHistoryTransfer historyTransfer,
+                          ReadMarkers readMarkers,
+                          @Value("${pluto.export.timeout:30m}") Duration exportTimeout) {
         this.roomService = roomService;
         this.userService = userService;
+        this.roomSummaryService = roomSummaryService;
+        this.historyTransfer = historyTransfer;
+        this.readMarkers = readMarkers;
+        this.exportTimeout = exportTimeout;
     }
 
-    // Existing endpoint - Create or Join (for backward compatibility)
+    // Existing endpoint - Create or Join (for backward compatibility).
+    // The member is always the caller; a username in the body is ignored.
     @PostMapping
-    public ResponseEntity<Room> createOrJoinRoom(@RequestBody CreateRoomRequest request) {
+    public ResponseEntity<Room> createOrJoinRoom(@RequestBody CreateRoomRequest request, Principal principal) {
+        String username = principal.getName();
         // Create or join the room
-        Room room = roomService.createOrJoinRoom(request.getRoomId(), request.getUsername());
+        Room room = roomService.createOrJoinRoom(request.getRoomId(), username);
         
         // Add room to user's joined rooms
-        userService.addRoomToUser(request.getUsername(), request.getRoomId());
+        userService.addRoomToUser(username, request.getRoomId());
+        readMarkers.markRead(username, room.getRoomId(), room.getMessageCount());
         
         return ResponseEntity.ok(room);
     }
 
     // NEW: Create Room Only (fails if exists)
     @PostMapping("/create")
-    public ResponseEntity<?> createRoom(@RequestBody CreateRoomRequest request) {
+    public ResponseEntity<?> createRoom(@RequestBody CreateRoomRequest request, Principal principal) {
+        String username = principal.getName();
         try {
-            System.out.println("🆕 Create room request: " + request.getRoomId() + " by " + request.getUsername());
+            log.debug("Create room request: {} by {}", request.getRoomId(), username);
             
             // Check if room already exists
             if (roomService.getRoomByRoomId(request.getRoomId()).isPresent()) {
-                System.out.println("❌ Room already exists: " + request.getRoomId());
                 return ResponseEntity
                         .status(HttpStatus.CONFLICT)
                         .body(Map.of("error", "Room name already exists. Please choose a different name."));
             }
             
             // Create new room
-            Room room = roomService.createOrJoinRoom(request.getRoomId(), request.getUsername());
-            userService.addRoomToUser(request.getUsername(), request.getRoomId());
+            Room room = roomService.createOrJoinRoom(request.getRoomId(), username);
+            userService.addRoomToUser(username, request.getRoomId());
             
-            System.out.println("✅ Room created successfully: " + request.getRoomId());
+            log.info("Room created: {} by {}", request.getRoomId(), username);
             return ResponseEntity.ok(room);
             
         } catch (RuntimeException e) {
-            System.err.println("❌ Create room failed: " + e.getMessage());
+            log.warn("Create room {} failed: {}", request.getRoomId(), e.getMessage());
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", e.getMessage()));
@@ -69,65 +108,252 @@ public class RoomController {
 
     // NEW: Join Room Only (fails if doesn't exist)
     @PostMapping("/join")
-    public ResponseEntity<?> joinRoom(@RequestBody CreateRoomRequest request) {
+    public ResponseEntity<?> joinRoom(@RequestBody CreateRoomRequest request, Principal principal) {
+        String username = principal.getName();
         try {
-            System.out.println("🚪 Join room request: " + request.getRoomId() + " by " + request.getUsername());
+            log.debug("Join room request: {} by {}", request.getRoomId(), username);
             
-            // Check if room exists
-            Room room = roomService.getRoomByRoomId(request.getRoomId())
+            // Add user to the room if it exists ($addToSet keeps members unique)
+            Room room = roomService.joinRoom(request.getRoomId(), username)
                     .orElseThrow(() -> new RuntimeException("Room not found. Please check the room code."));
             
-            // Add user to room if not already a member
-            if (!room.getMembers().contains(request.getUsername())) {
-                room.getMembers().add(request.getUsername());
-                roomService.saveRoom(room);
-                System.out.println("✅ User added to room: " + request.getUsername());
-            } else {
-                System.out.println("ℹ️ User already in room: " + request.getUsername());
-            }
-            
-            // Add room to user's joined rooms
-            userService.addRoomToUser(request.getUsername(), request.getRoomId());
+            // Add room to user's joined rooms; history from before joining isn't unread
+            userService.addRoomToUser(username, request.getRoomId());
+            readMarkers.markRead(username, room.getRoomId(), room.getMessageCount());
             
-            System.out.println("✅ User joined room successfully: " + request.getRoomId());
             return ResponseEntity.ok(room);
             
         } catch (RuntimeException e) {
-            System.err.println("❌ Join room failed: " + e.getMessage());
+            log.debug("Join room {} failed: {}", request.getRoomId(), e.getMessage());
             return ResponseEntity
                     .status(HttpStatus.NOT_FOUND)
                     .body(Map.of("error", e.getMessage()));
         }
     }
 
+    // includeMessages=false returns room metadata only; use /messages to page through history.
+    // Members only.
     @GetMapping("/{roomId}")
-    public ResponseEntity<Room> getRoom(@PathVariable String roomId) {
-        return roomService.getRoomByRoomId(roomId)
-                .map(ResponseEntity::ok)
+    public ResponseEntity<?> getRoom(
+            @PathVariable String roomId,
+            @RequestParam(defaultValue = "true") boolean includeMessages,
+            Principal principal) {
+        Room room = roomService.getRoomByRoomId(roomId).orElse(null);
+        if (room == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!isMember(room, principal)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Only room members can view this room"));
+        }
+        if (includeMessages) {
+            room.setMessages(roomService.getMessages(room.getRoomId()));
+        }
+        return ResponseEntity.ok(room);
+    }
+
+    // ?before=<seq> pages back through history; ?after=<seq> replays what a client missed
+    // while disconnected. With neither, returns the latest page. Members only.
+    @GetMapping("/{roomId}/messages")
+    public ResponseEntity<?> getMessages(
+            @PathVariable String roomId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "50") int limit,
+            Principal principal) {
+        Room room = roomService.getRoomByRoomId(roomId).orElse(null);
+        if (room == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!isMember(room, principal)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Only room members can read history"));
+        }
+        try {
+            MessagePage page = after != null
+                    ? roomService.getMessagesAfter(roomId, after, limit)
+                    : roomService.getMessagePage(roomId, before, limit);
+            return ResponseEntity.ok(page);
+        } catch (RuntimeException e) {
+            return ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Full-text search over the room's history, best match first; page with ?offset=.
+    // Members only.
+    @GetMapping("/{roomId}/search")
+    public ResponseEntity<?> search(
+            @PathVariable String roomId,
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "20") int limit,
+            Principal principal) {
+        Room room = roomService.getRoomByRoomId(roomId).orElse(null);
+        if (room == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!isMember(room, principal)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Only room members can search history"));
+        }
+        try {
+            return ResponseEntity.ok(roomService.search(roomId, query, offset, limit));
+        } catch (RuntimeException e) {
+            return ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Re-reads the room's stored history into its search index in the background
+    @PostMapping("/{roomId}/search/rebuild")
+    public ResponseEntity<?> rebuildSearchIndex(@PathVariable String roomId, Principal principal) {
+        Room room = roomService.getRoomByRoomId(roomId).orElse(null);
+        if (room == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!isMember(room, principal)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Only room members can rebuild the search index"));
+        }
+        roomService.rebuildSearchIndex(roomId);
+        return ResponseEntity.accepted().build();
+    }
+
+    // How much history stays hot; older messages move to the archive and remain readable
+    // through /messages. Only members may change it.
+    @PutMapping("/{roomId}/retention")
+    public ResponseEntity<?> updateRetention(
+            @PathVariable String roomId,
+            @RequestBody RetentionPolicy retention,
+            Principal principal) {
+        if ((retention.getMaxAgeDays() != null && retention.getMaxAgeDays() < 0)
+                || (retention.getMaxMessages() != null && retention.getMaxMessages() < 0)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Retention limits cannot be negative"));
+        }
+        Room room = roomService.getRoomByRoomId(roomId).orElse(null);
+        if (room == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!isMember(room, principal)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Only room members can change retention"));
+        }
+        return roomService.updateRetention(roomId, retention)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // The room's whole history, archived and hot, as NDJSON (?gzip=true to compress it).
+    // Streamed from a cursor as it is written, so any size of room is fine, for up to
+    // pluto.export.timeout.
+    @GetMapping("/{roomId}/export")
+    public ResponseEntity<?> exportHistory(
+            @PathVariable String roomId,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            Principal principal,
+            HttpServletRequest request) {
+        Room room = roomService.getRoomByRoomId(roomId).orElse(null);
+        if (room == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!isMember(room, principal)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Only room members can export history"));
+        }
+        String fileName = room.getRoomId() + (gzip ? ".ndjson.gz" : ".ndjson");
+        StreamingResponseBody body = out -> historyTransfer.export(room.getRoomId(), out, gzip);
+        request.setAttribute(AsyncTimeoutConfig.TIMEOUT_ATTRIBUTE, exportTimeout);
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.APPLICATION_OCTET_STREAM : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
+    // Appends an export (NDJSON, gzipped or not) to the room's history, after what it has.
+    // Imported messages record the caller as importedBy.
+    @PostMapping("/{roomId}/import")
+    public ResponseEntity<?> importHistory(
+            @PathVariable String roomId,
+            InputStream body,
+            Principal principal) {
+        Room room = roomService.getRoomByRoomId(roomId).orElse(null);
+        if (room == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!isMember(room, principal)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Only room members can import history"));
+        }
+        try {
+            return ResponseEntity.ok(historyTransfer.importHistory(room.getRoomId(), body, principal.getName()));
+        } catch (HistoryImportException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage(), "line", e.getLine(), "imported", e.getImported()));
+        } catch (IOException e) {
+            log.debug("Import into room {} failed", roomId, e);
+            return ResponseEntity.badRequest().body(Map.of("error", "Could not read the upload"));
+        }
+    }
+
+    // Marks the room read up to seq for the caller (the STOMP route is /app/read/{roomId})
+    @PutMapping("/{roomId}/read")
+    public ResponseEntity<?> markRead(
+            @PathVariable String roomId,
+            @RequestBody ReadRequest request,
+            Principal principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Room room = roomService.getRoomByRoomId(roomId).orElse(null);
+        if (room == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!isMember(room, principal)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Only room members can mark it read"));
+        }
+        // Never past the last message, or later messages would never count as unread
+        readMarkers.markRead(principal.getName(), room.getRoomId(), Math.min(request.getSeq(), room.getMessageCount()));
+        return ResponseEntity.noContent().build();
+    }
+
+    // Chat list: one summary per joined room, most recently active first. Unread counts
+    // are the caller's own, so only the caller's list is served.
     @GetMapping("/user/{username}")
-    public ResponseEntity<List<Room>> getUserRooms(@PathVariable String username) {
+    public ResponseEntity<List<RoomSummary>> getUserRooms(@PathVariable String username, Principal principal) {
+        if (principal == null || !principal.getName().equals(username.trim())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
         return userService.getUserByUsername(username)
                 .map(user -> {
-                    List<Room> rooms = roomService.getRoomsByIds(user.getJoinedRooms());
+                    List<RoomSummary> rooms = roomSummaryService.getSummaries(user.getJoinedRooms());
+                    readMarkers.fillUnread(user.getUsername(), rooms);
                     return ResponseEntity.ok(rooms);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // The sender is the caller, whatever the body says
     @PostMapping("/{roomId}/messages")
-    public ResponseEntity<Room> addMessage(
+    public ResponseEntity<Message> addMessage(
             @PathVariable String roomId,
-            @RequestBody MessageRequest request) {
+            @RequestBody MessageRequest request,
+            Principal principal) {
         
         Message message = Message.builder()
-                .sender(request.getSender())
+                .sender(principal.getName())
                 .content(request.getContent())
                 .build();
         
-        Room updatedRoom = roomService.addMessage(roomId, message);
-        return ResponseEntity.ok(updatedRoom);
+        Message savedMessage = roomService.addMessage(roomId, message);
+        return ResponseEntity.ok(savedMessage);
+    }
+
+    private static boolean isMember(Room room, Principal principal) {
+        return principal != null && room.getMembers().contains(principal.getName());
     }
-}
\ No newline at end of file
+}
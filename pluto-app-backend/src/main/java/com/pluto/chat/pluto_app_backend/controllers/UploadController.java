@@ -0,0 +1,84 @@
+package com.pluto.chat.pluto_app_backend.controllers;
+
+import com.pluto.chat.pluto_app_backend.dto.StartUploadRequest;
+import com.pluto.chat.pluto_app_backend.media.ChunkedUploadException;
+import com.pluto.chat.pluto_app_backend.media.ChunkedUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Map;
+
+// Chunked, resumable uploads (voice notes and other large media):
+//   POST /api/v1/rooms/{roomId}/uploads           start, returns uploadId and chunk layout
+//   PUT  /api/v1/uploads/{id}/chunks/{index}      raw chunk body, X-Chunk-SHA256 header
+//   GET  /api/v1/uploads/{id}                     what is still missing, for resuming
+// The message is published to the room when the last chunk arrives.
+@RestController
+@RequestMapping("/api/v1")
+@CrossOrigin(origins = "*")
+public class UploadController {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadController.class);
+
+    public static final String CHUNK_CHECKSUM_HEADER = "X-Chunk-SHA256";
+
+    private final ChunkedUploadService uploadService;
+
+    public UploadController(ChunkedUploadService uploadService) {
+        this.uploadService = uploadService;
+    }
+
+    @PostMapping("/rooms/{roomId}/uploads")
+    public ResponseEntity<?> startUpload(@PathVariable String roomId,
+                                         @RequestBody StartUploadRequest request,
+                                         Principal principal) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(uploadService.start(roomId, principal.getName(), request));
+        } catch (ChunkedUploadException e) {
+            return error(e);
+        } catch (IOException e) {
+            log.warn("Could not start upload in room {}", roomId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Could not start upload"));
+        }
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> getUpload(@PathVariable String uploadId, Principal principal) {
+        try {
+            return ResponseEntity.ok(uploadService.status(uploadId, principal.getName()));
+        } catch (ChunkedUploadException e) {
+            return error(e);
+        }
+    }
+
+    // The body is read straight from the request stream, never bound or buffered
+    @PutMapping(value = "/uploads/{uploadId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> putChunk(@PathVariable String uploadId,
+                                      @PathVariable int index,
+                                      @RequestHeader(value = CHUNK_CHECKSUM_HEADER, required = false) String sha256,
+                                      HttpServletRequest request,
+                                      Principal principal) {
+        try {
+            return ResponseEntity.ok(uploadService.writeChunk(
+                    uploadId, principal.getName(), index, sha256, request.getInputStream()));
+        } catch (ChunkedUploadException e) {
+            return error(e);
+        } catch (IOException e) {
+            // Usually the client going away mid-chunk; it resends the chunk on resume
+            log.debug("Chunk {} of upload {} failed", index, uploadId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Chunk not stored"));
+        }
+    }
+
+    private static ResponseEntity<?> error(ChunkedUploadException e) {
+        return ResponseEntity.status(e.getStatus()).body(Map.of("error", e.getMessage()));
+    }
+}
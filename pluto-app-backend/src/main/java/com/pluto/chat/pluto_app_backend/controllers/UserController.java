@@ -1,12 +1,17 @@
 package com.pluto.chat.pluto_app_backend.controller;
 
-import com.pluto.chat.pluto_app_backend.entities.Room;
+import com.pluto.chat.pluto_app_backend.entities.RoomSummary;
 import com.pluto.chat.pluto_app_backend.entities.User;
-import com.pluto.chat.pluto_app_backend.service.RoomService;
+import com.pluto.chat.pluto_app_backend.readmarker.ReadMarkers;
+import com.pluto.chat.pluto_app_backend.service.RoomSummaryService;
 import com.pluto.chat.pluto_app_backend.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -16,38 +21,44 @@ import java.util.Optional;
 @CrossOrigin(origins = "*")  // Change to specific origins in production
 public class UserController {
 
+    private static final Logger log = LoggerFactory.getLogger(UserController.class);
+
     private final UserService userService;
-    private final RoomService roomService;  // Inject RoomService for joined rooms
+    private final RoomSummaryService roomSummaryService;  // Chat list summaries for joined rooms
+    private final ReadMarkers readMarkers;  // Unread counts per room
 
-    public UserController(UserService userService, RoomService roomService) {
+    public UserController(UserService userService, RoomSummaryService roomSummaryService, ReadMarkers readMarkers) {
         this.userService = userService;
-        this.roomService = roomService;
+        this.roomSummaryService = roomSummaryService;
+        this.readMarkers = readMarkers;
     }
 
     // Get single user (profile/info)
     @GetMapping("/{username}")
     public ResponseEntity<User> getUser(@PathVariable String username) {
         String normalized = username.trim().toLowerCase();
-        System.out.println("Fetching user profile: " + normalized);
+        log.debug("Fetching user profile: {}", normalized);
 
         return userService.getUserByUsername(normalized)
                 .map(ResponseEntity::ok)
-                .orElseGet(() -> {
-                    System.out.println("User not found: " + normalized);
-                    return ResponseEntity.notFound().build();
-                });
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     // IMPORTANT: This is the MISSING endpoint your ChatList needs!
     @GetMapping("/{username}/rooms")
-    public ResponseEntity<List<Room>> getJoinedRooms(@PathVariable String username) {
-        String normalized = username.trim().toLowerCase();
-        System.out.println("Fetching joined rooms for user: " + normalized);
+    public ResponseEntity<List<RoomSummary>> getJoinedRooms(@PathVariable String username, Principal principal) {
+        // Usernames are case-sensitive; only trimmed, as UserService stores them
+        String normalized = username.trim();
+        log.debug("Fetching joined rooms for user: {}", normalized);
+
+        // Unread counts are the caller's own
+        if (principal == null || !principal.getName().equals(normalized)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
 
         Optional<User> userOpt = userService.getUserByUsername(normalized);
 
         if (userOpt.isEmpty()) {
-            System.out.println("User not found: " + normalized);
             return ResponseEntity.notFound().build();
         }
 
@@ -58,9 +69,10 @@ public class UserController {
             ? user.getJoinedRooms() 
             : new ArrayList<>();
 
-        System.out.println("User has " + joinedRoomIds.size() + " joined rooms");
-
-        List<Room> rooms = roomService.getRoomsByIds(joinedRoomIds);
+        // Summaries sorted by last activity, independent of how much history each room has
+        List<RoomSummary> rooms = roomSummaryService.getSummaries(joinedRoomIds);
+        // Unread = the room's message counter minus the user's read marker, no message scan
+        readMarkers.fillUnread(normalized, rooms);
 
         return ResponseEntity.ok(rooms);
     }
@@ -0,0 +1,17 @@
+package com.pluto.chat.pluto_app_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportResult {
+    private long imported;
+    // The seqs the imported messages were given, null when nothing was imported
+    private Long firstSeq;
+    private Long lastSeq;
+}
@@ -0,0 +1,35 @@
+package com.pluto.chat.pluto_app_backend.dto;
+
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePage {
+    // Oldest first
+    private List<Message> messages;
+    // For ?before= pages, the seq to pass as the next `before`; for ?after= pages, the
+    // seq to pass as the next `after`. Null when there is nothing further in that direction.
+    private Long nextCursor;
+    private boolean hasMore;
+
+    // Paging backwards: more exists while the oldest message returned isn't seq 1
+    public static MessagePage before(List<Message> messages) {
+        Long oldest = messages.isEmpty() ? null : messages.get(0).getSeq();
+        boolean hasMore = oldest != null && oldest > 1;
+        return new MessagePage(messages, hasMore ? oldest : null, hasMore);
+    }
+
+    // Paging forwards: a full page means there may be more
+    public static MessagePage after(List<Message> messages, int limit) {
+        boolean hasMore = messages.size() >= limit;
+        Long newest = messages.isEmpty() ? null : messages.get(messages.size() - 1).getSeq();
+        return new MessagePage(messages, hasMore ? newest : null, hasMore);
+    }
+}
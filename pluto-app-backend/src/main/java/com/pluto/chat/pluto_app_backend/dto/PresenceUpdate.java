@@ -0,0 +1,24 @@
+package com.pluto.chat.pluto_app_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+// Sent on /topic/room/{roomId}/presence once per tick with what changed since the last
+// one; the snapshot reply to /app/room/{roomId}/presence carries everything.
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceUpdate {
+    private String roomId;
+    private boolean snapshot;
+    // Came online (snapshot: everyone online)
+    private List<String> online;
+    // Went offline; empty in a snapshot
+    private List<String> offline;
+    // Everyone typing right now; null when unchanged since the last update
+    private List<String> typing;
+}
@@ -0,0 +1,9 @@
+package com.pluto.chat.pluto_app_backend.dto;
+
+import lombok.Data;
+
+@Data
+public class ReadRequest {
+    // The newest message the user has seen
+    private long seq;
+}
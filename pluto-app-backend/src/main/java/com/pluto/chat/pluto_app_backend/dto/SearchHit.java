@@ -0,0 +1,14 @@
+package com.pluto.chat.pluto_app_backend.dto;
+
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchHit {
+    private Message message;
+    private double score;
+}
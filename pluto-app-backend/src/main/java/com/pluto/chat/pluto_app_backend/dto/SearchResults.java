@@ -0,0 +1,21 @@
+package com.pluto.chat.pluto_app_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchResults {
+    private String query;
+    // Best match first
+    private List<SearchHit> hits;
+    // Messages matching the query in total
+    private int total;
+    // The offset to pass for the next page, null on the last one
+    private Integer nextOffset;
+}
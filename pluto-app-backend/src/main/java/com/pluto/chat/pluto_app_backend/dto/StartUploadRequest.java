@@ -0,0 +1,13 @@
+package com.pluto.chat.pluto_app_backend.dto;
+
+import com.pluto.chat.pluto_app_backend.entities.MessageType;
+import lombok.Data;
+
+@Data
+public class StartUploadRequest {
+    private String fileName;
+    private String contentType;
+    private long size;
+    // Defaults to AUDIO
+    private MessageType type;
+}
@@ -0,0 +1,9 @@
+package com.pluto.chat.pluto_app_backend.dto;
+
+import lombok.Data;
+
+@Data
+public class TypingRequest {
+    // false when the user cleared or sent their draft
+    private boolean typing;
+}
@@ -0,0 +1,23 @@
+package com.pluto.chat.pluto_app_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadStatus {
+    private String uploadId;
+    private long size;
+    private int chunkSize;
+    private int chunkCount;
+    // Indexes still to send; a resuming client sends exactly these
+    private List<Integer> missingChunks;
+    private boolean complete;
+    // The published message's seq once complete
+    private Long seq;
+}
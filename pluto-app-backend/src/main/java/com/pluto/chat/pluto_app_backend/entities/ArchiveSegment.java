@@ -0,0 +1,37 @@
+package com.pluto.chat.pluto_app_backend.entities;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+
+// A run of whole buckets moved out of message_buckets: messages firstSeq..lastSeq of a room,
+// one JSON document per line, gzipped, stored under `key` in the ArchiveStore. The id is
+// roomId:firstSeq, so archiving the same range again overwrites rather than duplicates.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "archive_segments")
+@CompoundIndexes({
+        @CompoundIndex(name = "room_first_seq_idx", def = "{'roomId': 1, 'firstSeq': 1}"),
+        @CompoundIndex(name = "room_last_seq_idx", def = "{'roomId': 1, 'lastSeq': 1}")
+})
+public class ArchiveSegment {
+    @Id
+    private String id;
+
+    private String roomId;
+    private long firstSeq;
+    private long lastSeq;
+    private int count;
+
+    private LocalDateTime firstTimestamp;
+    private LocalDateTime lastTimestamp;
+
+    private String key;
+    private long compressedSize;
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,30 @@
+package com.pluto.chat.pluto_app_backend.entities;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+
+// One stored file, keyed by the SHA-256 of its bytes. refCount counts the store/reference
+// calls that haven't been released: one per message pointing at it, since a reference is
+// given back when its message can't be recorded. The file is removed when it drops to zero.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "media_blobs")
+public class MediaBlob {
+    @Id
+    private String sha256;
+
+    private long size;
+    private String contentType;
+    private long refCount;
+    private LocalDateTime createdAt;
+
+    // For images, once variants have been generated; a forward reuses them
+    private Integer width;
+    private Integer height;
+    private String thumbnailUrl;
+    private String previewUrl;
+}
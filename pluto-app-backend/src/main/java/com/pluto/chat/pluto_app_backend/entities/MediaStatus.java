@@ -0,0 +1,8 @@
+package com.pluto.chat.pluto_app_backend.entities;
+
+// Upload state of a media message; broadcast as PENDING first, then updated in place
+public enum MediaStatus {
+    PENDING,
+    READY,
+    FAILED
+}
@@ -8,6 +8,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 public class Message {
+    // Per-room sequence number, assigned by the server; 1 is the room's first message
+    private Long seq;
+
     private String sender;
     private String content;
     
@@ -21,4 +24,16 @@ public class Message {
     private String fileName;
     private Long fileSize;
     private String mimeType; // Add this field
+    private MediaStatus mediaStatus; // null for plain text
+
+    // Images only: size of the original and its downscaled variants. A variant URL is null
+    // when the original is already small enough to use in its place.
+    private Integer width;
+    private Integer height;
+    private String thumbnailUrl;
+    private String previewUrl;
+
+    // Set on messages restored from an export: who imported them. The sender is whatever
+    // the imported file said.
+    private String importedBy;
 }
\ No newline at end of file
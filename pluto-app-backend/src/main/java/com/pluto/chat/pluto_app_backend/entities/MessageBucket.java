@@ -0,0 +1,53 @@
+package com.pluto.chat.pluto_app_backend.entities;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// A fixed-size slice of a room's history. Message N of a room (1-based)
+// always lives in bucket (N - 1) / SIZE, so appends only touch one small document.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "message_buckets")
+@CompoundIndex(name = "room_bucket_idx", def = "{'roomId': 1, 'bucket': 1}", unique = true)
+public class MessageBucket {
+    public static final int SIZE = 100;
+
+    @Id
+    private String id;
+
+    private String roomId;
+
+    private long bucket;
+
+    private int count;
+
+    private LocalDateTime firstTimestamp;
+    private LocalDateTime lastTimestamp;
+
+    @Builder.Default
+    private List<Message> messages = new ArrayList<>();
+
+    public static long bucketFor(long position) {
+        return (position - 1) / SIZE;
+    }
+
+    // Concurrent $pushes can land slightly out of order inside a bucket. Messages stored
+    // before sequence numbers existed get the one implied by their array position.
+    public List<Message> ordered() {
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i).getSeq() == null) {
+                messages.get(i).setSeq(bucket * SIZE + i + 1);
+            }
+        }
+        messages.sort(Comparator.comparing(Message::getSeq));
+        return messages;
+    }
+}
@@ -0,0 +1,30 @@
+package com.pluto.chat.pluto_app_backend.entities;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+
+// How far a user has read in a room: every message up to lastReadSeq. The id is
+// roomId:username, so a marker is only ever upserted, never duplicated.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "read_markers")
+@CompoundIndex(name = "user_room_idx", def = "{'username': 1, 'roomId': 1}")
+public class ReadMarker {
+    @Id
+    private String id;
+
+    private String username;
+    private String roomId;
+    private long lastReadSeq;
+
+    private LocalDateTime updatedAt;
+
+    public static String id(String roomId, String username) {
+        return roomId + ":" + username;
+    }
+}
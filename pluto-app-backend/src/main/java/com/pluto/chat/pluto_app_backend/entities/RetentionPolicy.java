@@ -0,0 +1,15 @@
+package com.pluto.chat.pluto_app_backend.entities;
+
+import lombok.*;
+
+// How much of a room's history stays in message_buckets. A message older than maxAgeDays,
+// or further back than the newest maxMessages, is moved to the archive by ArchiveCompactor
+// and read from there. Null falls back to the pluto.retention.* defaults; 0 means no limit.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RetentionPolicy {
+    private Integer maxAgeDays;
+    private Long maxMessages;
+}
@@ -2,6 +2,7 @@ package com.pluto.chat.pluto_app_backend.entities;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.index.Indexed;
 import java.util.ArrayList;
@@ -19,9 +20,17 @@ public class Room {
     @Indexed(unique = true)
     private String roomId;
     
+    // Messages live in the message_buckets collection; this is only filled in for responses
+    @Transient
     @Builder.Default
     private List<Message> messages = new ArrayList<>();
     
     @Builder.Default
     private List<String> members = new ArrayList<>();
-}
\ No newline at end of file
+
+    // Total messages ever appended, also the position of the latest message
+    private long messageCount;
+
+    // Null: the pluto.retention.* defaults apply
+    private RetentionPolicy retention;
+}
@@ -0,0 +1,45 @@
+package com.pluto.chat.pluto_app_backend.entities;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+
+// Read model for the chat list, kept up to date on every join and message append
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "room_summaries")
+public class RoomSummary {
+    public static final int PREVIEW_LENGTH = 100;
+
+    @Id
+    private String id;
+
+    @Indexed(unique = true)
+    private String roomId;
+
+    private String lastMessagePreview;
+    private String lastSender;
+    private MessageType lastMessageType;
+
+    private LocalDateTime lastActivityAt;
+
+    private int memberCount;
+    private long messageCount;
+
+    // Per user, filled in when listing a user's rooms; not stored
+    @Transient
+    private Long unreadCount;
+
+    public static String preview(Message message) {
+        String content = message.getContent();
+        if (content == null || content.isBlank()) {
+            return message.getType() != null ? message.getType().name() : null;
+        }
+        return content.length() > PREVIEW_LENGTH ? content.substring(0, PREVIEW_LENGTH) : content;
+    }
+}
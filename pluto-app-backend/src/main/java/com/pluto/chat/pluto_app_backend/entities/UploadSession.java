@@ -0,0 +1,44 @@
+package com.pluto.chat.pluto_app_backend.entities;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// A chunked upload in progress. Chunks land in a part file on the node that created the
+// session; receivedChunks records which ones arrived intact, so a client can resume.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "upload_sessions")
+public class UploadSession {
+    @Id
+    private String id;
+
+    private String roomId;
+    private String sender;
+    private String fileName;
+    private String contentType;
+    private MessageType type;
+
+    private long size;
+    private int chunkSize;
+    private int chunkCount;
+
+    @Builder.Default
+    private List<Integer> receivedChunks = new ArrayList<>();
+
+    // Set by whichever request claims assembly, so the message is published once. A claim
+    // whose holder died is up for grabs again after this time.
+    private LocalDateTime completingUntil;
+    // The published message, once there is one
+    private Long seq;
+
+    private LocalDateTime createdAt;
+    @Indexed
+    private LocalDateTime expiresAt;
+}
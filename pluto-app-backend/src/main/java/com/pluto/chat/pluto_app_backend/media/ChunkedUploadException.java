@@ -0,0 +1,16 @@
+package com.pluto.chat.pluto_app_backend.media;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+// A chunked upload request the client has to correct; status is what the API answers
+@Getter
+public class ChunkedUploadException extends RuntimeException {
+
+    private final HttpStatus status;
+
+    public ChunkedUploadException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+}
@@ -0,0 +1,315 @@
+package com.pluto.chat.pluto_app_backend.media;
+
+import com.pluto.chat.pluto_app_backend.dto.StartUploadRequest;
+import com.pluto.chat.pluto_app_backend.dto.UploadStatus;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.MessageType;
+import com.pluto.chat.pluto_app_backend.entities.UploadSession;
+import com.pluto.chat.pluto_app_backend.repository.UploadSessionRepository;
+import com.pluto.chat.pluto_app_backend.service.RoomService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Resumable uploads for voice notes and other large media:
+//   1. start() records a session and creates a part file with its final length
+//   2. each chunk is streamed from the request body straight into its slot of the part
+//      file with a positional FileChannel write, hashed on the way, and only recorded as
+//      received when its SHA-256 matches what the client sent
+//   3. a client that lost its connection asks for the session and sends what is missing
+//   4. whichever request completes the set claims the session, hands a link to the part
+//      file to the MediaStore and publishes the message; nothing is broadcast before that.
+//      The part file itself stays until the session is marked published, so a failed
+//      publish can be retried by sending any chunk again.
+// Part files live on the node that started the session, so a load balancer has to keep
+// an upload on one node.
+@Service
+public class ChunkedUploadService implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+    private static final int SWEEP_BATCH = 100;
+
+    private final UploadSessionRepository sessionRepository;
+    private final RoomService roomService;
+    private final MediaUploadService mediaUploadService;
+    private final Path partDir;
+    private final int chunkSize;
+    private final long maxSize;
+    private final Duration sessionTtl;
+    private final Duration completionLease;
+    private final Counter checksumFailures;
+    private final Counter completed;
+
+    private ScheduledExecutorService sweeper;
+
+    public ChunkedUploadService(UploadSessionRepository sessionRepository,
+                                RoomService roomService,
+                                MediaUploadService mediaUploadService,
+                                MeterRegistry meterRegistry,
+                                @Value("${pluto.media.staging-dir:data/media-staging}") Path stagingDir,
+                                @Value("${pluto.media.chunked.chunk-size:1MB}") DataSize chunkSize,
+                                @Value("${pluto.media.chunked.max-size:200MB}") DataSize maxSize,
+                                @Value("${pluto.media.chunked.session-ttl:24h}") Duration sessionTtl,
+                                @Value("${pluto.media.chunked.completion-lease:10m}") Duration completionLease) throws IOException {
+        this.sessionRepository = sessionRepository;
+        this.roomService = roomService;
+        this.mediaUploadService = mediaUploadService;
+        this.partDir = Files.createDirectories(stagingDir.resolve("chunked").toAbsolutePath().normalize());
+        this.chunkSize = Math.toIntExact(chunkSize.toBytes());
+        this.maxSize = maxSize.toBytes();
+        this.sessionTtl = sessionTtl;
+        this.completionLease = completionLease;
+
+        this.checksumFailures = Counter.builder("pluto.media.chunked.checksum.failures")
+                .description("Chunks rejected because their SHA-256 did not match")
+                .register(meterRegistry);
+        this.completed = Counter.builder("pluto.media.chunked.completed")
+                .description("Chunked uploads assembled and published")
+                .register(meterRegistry);
+    }
+
+    public UploadStatus start(String roomId, String sender, StartUploadRequest request) throws IOException {
+        if (roomService.getRoomByRoomId(roomId).isEmpty()) {
+            throw new ChunkedUploadException(HttpStatus.NOT_FOUND, "Room not found: " + roomId);
+        }
+        if (request.getSize() <= 0 || request.getSize() > maxSize) {
+            throw new ChunkedUploadException(HttpStatus.BAD_REQUEST,
+                    "size must be between 1 and " + maxSize + " bytes");
+        }
+
+        String id = UUID.randomUUID().toString();
+        // Setting the length up front lets chunks arrive in any order and land at their
+        // offset; the file is sparse until they do
+        try (FileChannel channel = FileChannel.open(partFile(id),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+            channel.write(ByteBuffer.allocate(1), request.getSize() - 1);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        UploadSession session = UploadSession.builder()
+                .id(id)
+                .roomId(roomId)
+                .sender(sender)
+                .fileName(request.getFileName())
+                .contentType(request.getContentType() != null ? request.getContentType() : "application/octet-stream")
+                .type(request.getType() != null ? request.getType() : MessageType.AUDIO)
+                .size(request.getSize())
+                .chunkSize(chunkSize)
+                .chunkCount(Math.toIntExact((request.getSize() + chunkSize - 1) / chunkSize))
+                .createdAt(now)
+                .expiresAt(now.plus(sessionTtl))
+                .build();
+        sessionRepository.save(session);
+        return toStatus(session);
+    }
+
+    public UploadStatus status(String uploadId, String sender) {
+        return toStatus(find(uploadId, sender));
+    }
+
+    // body must deliver exactly the chunk's bytes; sha256 is their hex digest
+    public UploadStatus writeChunk(String uploadId, String sender, int index,
+                                   String sha256, InputStream body) throws IOException {
+        UploadSession session = find(uploadId, sender);
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new ChunkedUploadException(HttpStatus.BAD_REQUEST, "No chunk " + index);
+        }
+        if (sha256 == null) {
+            throw new ChunkedUploadException(HttpStatus.BAD_REQUEST, "Missing chunk checksum");
+        }
+        if (session.getSeq() != null || session.getReceivedChunks().contains(index)) {
+            // A retry of a chunk we already have; don't touch the file again
+            return completeIfReady(session);
+        }
+
+        long offset = (long) index * session.getChunkSize();
+        long expected = Math.min(session.getChunkSize(), session.getSize() - offset);
+        String actual = copyChunk(partFile(uploadId), offset, expected, body);
+        if (!actual.equalsIgnoreCase(sha256)) {
+            checksumFailures.increment();
+            throw new ChunkedUploadException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Checksum mismatch for chunk " + index);
+        }
+
+        UploadSession updated = sessionRepository
+                .markChunkReceived(uploadId, index, LocalDateTime.now().plus(sessionTtl))
+                .orElseThrow(() -> new ChunkedUploadException(HttpStatus.NOT_FOUND, "Upload expired"));
+        return completeIfReady(updated);
+    }
+
+    private UploadStatus completeIfReady(UploadSession session) throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        if (session.getSeq() != null
+                || session.getReceivedChunks().size() < session.getChunkCount()
+                || !sessionRepository.claimCompletion(session.getId(), now, now.plus(completionLease))) {
+            return toStatus(session);
+        }
+
+        Path part = partFile(session.getId());
+        Path handOff = partDir.resolve(session.getId() + "." + UUID.randomUUID() + ".publish");
+        try {
+            // Make sure every chunk is on disk before the store reads the file
+            try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            // publish consumes the file it is given (the store moves or deletes it)
+            StagedFiles.linkOrCopy(part, handOff);
+            Message message = mediaUploadService.publish(session.getRoomId(), session.getSender(),
+                    new MediaStore.MediaUpload(handOff, session.getFileName(), session.getContentType(), session.getSize()),
+                    session.getType());
+            sessionRepository.markPublished(session.getId(), message.getSeq());
+            session.setSeq(message.getSeq());
+            completed.increment();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(handOff);
+            sessionRepository.releaseCompletion(session.getId());
+            throw e;
+        }
+        try {
+            Files.deleteIfExists(part);
+        } catch (IOException e) {
+            // The sweeper gets it when the session expires
+            log.debug("Could not remove {}", part, e);
+        }
+        return toStatus(session);
+    }
+
+
+    // Streams up to `expected` bytes into the part file at `offset`, returning their SHA-256
+    private static String copyChunk(Path part, long offset, long expected, InputStream body) throws IOException {
+        MessageDigest digest = sha256();
+        ReadableByteChannel in = Channels.newChannel(body);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_BYTES);
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            while (true) {
+                // Read one byte past the chunk so an oversized body is caught
+                buffer.limit((int) Math.min(buffer.capacity(), expected - written + 1));
+                int read = in.read(buffer);
+                if (read == -1) {
+                    break;
+                }
+                if (written + buffer.position() > expected) {
+                    throw new ChunkedUploadException(HttpStatus.BAD_REQUEST, "Chunk is larger than " + expected + " bytes");
+                }
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, offset + written);
+                }
+                buffer.clear();
+            }
+        }
+        if (written != expected) {
+            throw new ChunkedUploadException(HttpStatus.BAD_REQUEST,
+                    "Chunk has " + written + " bytes, expected " + expected);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private UploadSession find(String uploadId, String sender) {
+        // Someone else's upload is as good as missing
+        return sessionRepository.findById(uploadId)
+                .filter(session -> session.getSender().equals(sender))
+                .orElseThrow(() -> new ChunkedUploadException(HttpStatus.NOT_FOUND, "No such upload"));
+    }
+
+    private Path partFile(String uploadId) {
+        return partDir.resolve(uploadId + ".part");
+    }
+
+    private static UploadStatus toStatus(UploadSession session) {
+        Set<Integer> received = Set.copyOf(session.getReceivedChunks());
+        List<Integer> missing = IntStream.range(0, session.getChunkCount())
+                .filter(index -> !received.contains(index))
+                .boxed()
+                .toList();
+        return UploadStatus.builder()
+                .uploadId(session.getId())
+                .size(session.getSize())
+                .chunkSize(session.getChunkSize())
+                .chunkCount(session.getChunkCount())
+                .missingChunks(missing)
+                .complete(session.getSeq() != null)
+                .seq(session.getSeq())
+                .build();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Drops sessions nobody touched within the TTL, along with their part files
+    private void sweepExpired() {
+        try {
+            List<UploadSession> expired;
+            do {
+                expired = sessionRepository.findExpired(LocalDateTime.now(), SWEEP_BATCH);
+                for (UploadSession session : expired) {
+                    Files.deleteIfExists(partFile(session.getId()));
+                    sessionRepository.deleteById(session.getId());
+                }
+            } while (expired.size() == SWEEP_BATCH);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Sweeping expired uploads failed", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chunked-upload-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(60_000, sessionTtl.toMillis() / 24);
+        sweeper.scheduleWithFixedDelay(this::sweepExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return sweeper != null;
+    }
+}
@@ -0,0 +1,90 @@
+package com.pluto.chat.pluto_app_backend.media;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.UUID;
+
+// Uploads to freeimage.host's anonymous API. The multipart body is streamed from the
+// staged file through the shared HttpClient; the staged file is removed afterwards.
+@Component
+@ConditionalOnProperty(name = "pluto.media.store", havingValue = "freeimage")
+public class FreeimageMediaStore implements MediaStore {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final URI endpoint;
+    private final String apiKey;
+    private final Duration timeout;
+
+    public FreeimageMediaStore(HttpClient httpClient,
+                               ObjectMapper objectMapper,
+                               @Value("${pluto.media.freeimage.url:https://freeimage.host/api/1/upload}") URI endpoint,
+                               @Value("${pluto.media.freeimage.api-key:6d207e02198a847aa98d0a2a901485a5}") String apiKey,
+                               @Value("${pluto.media.freeimage.timeout:60s}") Duration timeout) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.endpoint = endpoint;
+        this.apiKey = apiKey;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public StoredMedia store(MediaUpload upload) throws IOException {
+        String boundary = "pluto-" + UUID.randomUUID();
+        String head = part(boundary, "action", "upload")
+                + part(boundary, "key", apiKey)
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"source\"; filename=\""
+                + safeFileName(upload.fileName()) + "\"\r\n"
+                + "Content-Type: " + upload.contentType() + "\r\n\r\n";
+        String tail = "\r\n--" + boundary + "--\r\n";
+
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .timeout(timeout)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofString(head, StandardCharsets.UTF_8),
+                        HttpRequest.BodyPublishers.ofFile(upload.file()),
+                        HttpRequest.BodyPublishers.ofString(tail, StandardCharsets.UTF_8)))
+                .build();
+
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("Freeimage.host answered " + response.statusCode());
+            }
+            JsonNode url = objectMapper.readTree(response.body()).path("image").path("url");
+            if (!url.isTextual()) {
+                throw new IOException("No image URL in response from Freeimage.host");
+            }
+            return new StoredMedia(url.asText());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while uploading", e);
+        } finally {
+            Files.deleteIfExists(upload.file());
+        }
+    }
+
+    private static String part(String boundary, String name, String value) {
+        return "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n"
+                + value + "\r\n";
+    }
+
+    private static String safeFileName(String fileName) {
+        return fileName == null ? "upload" : fileName.replaceAll("[\"\\r\\n]", "_");
+    }
+}
@@ -0,0 +1,257 @@
+package com.pluto.chat.pluto_app_backend.media;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Downscaled variants of uploaded images, so a room renders thumbnails instead of
+// full-resolution originals. Runs on its own bounded pool: decoding is CPU and memory
+// heavy and must not hold up uploads or request threads.
+//
+// The original is decoded once, subsampled while reading when it is much larger than
+// needed. The preview is scaled from it and the thumbnail from the preview, both in
+// bilinear halving steps. The thumbnail is stored and published first so the message can
+// go out as soon as it exists; the preview follows.
+@Service
+public class ImageVariantService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageVariantService.class);
+
+    private static final float JPEG_QUALITY = 0.82f;
+
+    // width/height of the original; a null URL means the original is small enough to use.
+    // last is set on the final update for an image.
+    public record ImageVariants(Integer width, Integer height, String thumbnailUrl, String previewUrl, boolean last) {
+        public static final ImageVariants NONE = new ImageVariants(null, null, null, null, true);
+    }
+
+    private record Decoded(BufferedImage image, int width, int height) {}
+
+    private final MediaStore mediaStore;
+    private final Path stagingDir;
+    private final int thumbnailSize;
+    private final int previewSize;
+    private final long maxPixels;
+    private final ThreadPoolExecutor executor;
+    private final Timer generateTime;
+    private final Counter skipped;
+
+    public ImageVariantService(MediaStore mediaStore,
+                               MeterRegistry meterRegistry,
+                               @Value("${pluto.media.staging-dir:data/media-staging}") Path stagingDir,
+                               @Value("${pluto.media.variants.thumbnail-size:320}") int thumbnailSize,
+                               @Value("${pluto.media.variants.preview-size:1280}") int previewSize,
+                               @Value("${pluto.media.variants.max-pixels:50000000}") long maxPixels,
+                               @Value("${pluto.media.variants.threads:2}") int threads,
+                               @Value("${pluto.media.variants.queue-capacity:64}") int queueCapacity) throws IOException {
+        this.mediaStore = mediaStore;
+        this.stagingDir = Files.createDirectories(stagingDir.toAbsolutePath().normalize());
+        this.thumbnailSize = thumbnailSize;
+        this.previewSize = previewSize;
+        this.maxPixels = maxPixels;
+
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("pluto.media.variants.queue.depth", executor, e -> e.getQueue().size())
+                .description("Images waiting for variant generation")
+                .register(meterRegistry);
+        this.generateTime = Timer.builder("pluto.media.variants.time")
+                .description("Time to decode an image and store its variants")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.skipped = Counter.builder("pluto.media.variants.skipped")
+                .description("Images published without variants because the pool was full")
+                .register(meterRegistry);
+    }
+
+    // onUpdate is called with the thumbnail as soon as it is stored, and again once the
+    // preview is too; if the file can't be decoded it is called once with NONE.
+    // Returns false (and never calls onUpdate) when the pool is full. With deleteSource the
+    // service owns the file once accepted.
+    public boolean submit(Path source, boolean deleteSource, Consumer<ImageVariants> onUpdate) {
+        try {
+            executor.execute(() -> generate(source, deleteSource, onUpdate));
+            return true;
+        } catch (RejectedExecutionException e) {
+            skipped.increment();
+            return false;
+        }
+    }
+
+    private void generate(Path source, boolean deleteSource, Consumer<ImageVariants> onUpdate) {
+        long started = System.nanoTime();
+        boolean published = false;
+        String thumbnailUrl = null;
+        try {
+            Decoded decoded = decode(source);
+            if (decoded == null) {
+                onUpdate.accept(ImageVariants.NONE);
+                published = true;
+                return;
+            }
+
+            int longestEdge = Math.max(decoded.width(), decoded.height());
+            boolean alpha = decoded.image().getColorModel().hasAlpha();
+            BufferedImage preview = longestEdge > previewSize ? scale(decoded.image(), previewSize, alpha) : null;
+            BufferedImage base = preview != null ? preview : decoded.image();
+            thumbnailUrl = longestEdge > thumbnailSize
+                    ? storeVariant(scale(base, thumbnailSize, alpha), alpha, "thumbnail")
+                    : null;
+
+            onUpdate.accept(new ImageVariants(decoded.width(), decoded.height(), thumbnailUrl, null, preview == null));
+            published = true;
+
+            if (preview != null) {
+                String previewUrl = storeVariant(preview, alpha, "preview");
+                onUpdate.accept(new ImageVariants(decoded.width(), decoded.height(), thumbnailUrl, previewUrl, true));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not generate variants for {}", source, e);
+            if (!published) {
+                // Nobody will record the thumbnail now
+                if (thumbnailUrl != null) {
+                    try {
+                        mediaStore.release(thumbnailUrl);
+                    } catch (RuntimeException releaseFailure) {
+                        log.warn("Could not release {}", thumbnailUrl, releaseFailure);
+                    }
+                }
+                onUpdate.accept(ImageVariants.NONE);
+            }
+        } finally {
+            generateTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            if (deleteSource) {
+                try {
+                    Files.deleteIfExists(source);
+                } catch (IOException e) {
+                    log.debug("Could not remove {}", source, e);
+                }
+            }
+        }
+    }
+
+    // null when no reader understands the file or it is too large to decode safely
+    private Decoded decode(Path source) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    log.debug("Skipping variants for {}x{} image {}", width, height, source);
+                    return null;
+                }
+
+                // Decode at no more than twice the largest size we produce
+                int target = Math.max(width, height) > previewSize ? previewSize : thumbnailSize;
+                int subsampling = Math.max(1, Math.max(width, height) / (target * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return new Decoded(reader.read(0, param), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private String storeVariant(BufferedImage image, boolean alpha, String name) throws IOException {
+        String format = alpha ? "png" : "jpeg";
+        Path file = Files.createTempFile(stagingDir, name + "-", alpha ? ".png" : ".jpg");
+        try {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(file.toFile())) {
+                writer.setOutput(output);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                if (!alpha) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(JPEG_QUALITY);
+                }
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            MediaStore.MediaUpload upload = new MediaStore.MediaUpload(
+                    file, name + (alpha ? ".png" : ".jpg"), alpha ? "image/png" : "image/jpeg", Files.size(file));
+            return mediaStore.store(upload).url();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Halves in bilinear steps down to the target; a single bilinear step from a much
+    // larger image aliases badly
+    private static BufferedImage scale(BufferedImage image, int maxEdge, boolean alpha) {
+        double ratio = (double) maxEdge / Math.max(image.getWidth(), image.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height,
+                    alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
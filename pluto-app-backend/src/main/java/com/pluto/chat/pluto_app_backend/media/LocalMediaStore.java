@@ -0,0 +1,203 @@
+package com.pluto.chat.pluto_app_backend.media;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pluto.chat.pluto_app_backend.entities.MediaBlob;
+import com.pluto.chat.pluto_app_backend.repository.MediaBlobRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+// Content-addressed blob store on the local filesystem. Each file is stored once under
+// the SHA-256 of its bytes (root/ab/cd/abcd...) and reference-counted in media_blobs, so
+// the same image posted to twenty rooms takes up space once. Served from
+// /api/v1/media/{sha256} by MediaController.
+@Component
+@ConditionalOnProperty(name = "pluto.media.store", havingValue = "local", matchIfMissing = true)
+public class LocalMediaStore implements MediaStore {
+
+    public static final String URL_PREFIX = "/api/v1/media/";
+
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+    private static final int HASH_BUFFER_BYTES = 64 * 1024;
+
+    public record Blob(String sha256, Path file, long size, String contentType) {}
+
+    private final Path root;
+    private final MediaBlobRepository blobRepository;
+    // Blobs never change, so their content type can be cached without invalidation
+    private final Cache<String, String> contentTypes = Caffeine.newBuilder().maximumSize(10_000).build();
+    // Serializes store/reference/release of the same blob on this node
+    private final Object[] locks = new Object[64];
+
+    public LocalMediaStore(MediaBlobRepository blobRepository,
+                           @Value("${pluto.media.local.dir:data/media}") Path root) throws IOException {
+        this.blobRepository = blobRepository;
+        this.root = Files.createDirectories(root.toAbsolutePath().normalize());
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public StoredMedia store(MediaUpload upload) throws IOException {
+        String sha256 = sha256(upload.file());
+        synchronized (lockFor(sha256)) {
+            blobRepository.acquire(sha256, upload.size(), MediaTypes.normalize(upload.contentType()));
+            Path target = pathFor(sha256);
+            if (!Files.exists(target)) {
+                // Move then rename, so a reader never sees a half-written file
+                Files.createDirectories(target.getParent());
+                Path partial = target.resolveSibling(sha256 + ".part");
+                Files.move(upload.file(), partial, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        // Duplicate content leaves the staged file behind; the caller deletes it
+        return new StoredMedia(URL_PREFIX + sha256);
+    }
+
+    @Override
+    public Optional<StoredMedia> reference(String sha256) {
+        if (!SHA256.matcher(sha256).matches()) {
+            return Optional.empty();
+        }
+        synchronized (lockFor(sha256)) {
+            if (!Files.exists(pathFor(sha256))) {
+                return Optional.empty();
+            }
+            return blobRepository.acquireExisting(sha256).map(blob -> new StoredMedia(URL_PREFIX + sha256));
+        }
+    }
+
+    @Override
+    public void rememberVariants(String url, ImageVariantService.ImageVariants variants) {
+        String sha256 = keyOf(url);
+        if (sha256 != null) {
+            blobRepository.setVariants(sha256, variants.width(), variants.height(),
+                    variants.thumbnailUrl(), variants.previewUrl());
+        }
+    }
+
+    @Override
+    public Optional<ImageVariantService.ImageVariants> referenceVariants(String url) {
+        String sha256 = keyOf(url);
+        MediaBlob blob = sha256 != null ? blobRepository.findById(sha256).orElse(null) : null;
+        if (blob == null || blob.getWidth() == null) {
+            return Optional.empty();
+        }
+        List<String> acquired = new ArrayList<>(2);
+        for (String variantUrl : new String[]{blob.getThumbnailUrl(), blob.getPreviewUrl()}) {
+            if (variantUrl == null) {
+                continue;
+            }
+            String variantKey = keyOf(variantUrl);
+            if (variantKey == null || reference(variantKey).isEmpty()) {
+                // Gone since; the caller generates them again
+                acquired.forEach(this::release);
+                return Optional.empty();
+            }
+            acquired.add(variantUrl);
+        }
+        return Optional.of(new ImageVariantService.ImageVariants(blob.getWidth(), blob.getHeight(),
+                blob.getThumbnailUrl(), blob.getPreviewUrl(), true));
+    }
+
+    @Override
+    public Optional<StoredMedia> referenceUrl(String url) {
+        String sha256 = keyOf(url);
+        return sha256 != null ? reference(sha256) : Optional.empty();
+    }
+
+    @Override
+    public void release(String url) {
+        String sha256 = keyOf(url);
+        if (sha256 == null) {
+            return;
+        }
+        synchronized (lockFor(sha256)) {
+            if (blobRepository.release(sha256) == 0 && blobRepository.removeIfUnreferenced(sha256)) {
+                try {
+                    Files.deleteIfExists(pathFor(sha256));
+                } catch (IOException e) {
+                    throw new RuntimeException("Could not delete blob " + sha256, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Optional<Path> localFile(String url) {
+        if (url == null || !url.startsWith(URL_PREFIX)) {
+            return Optional.empty();
+        }
+        return open(url.substring(URL_PREFIX.length())).map(Blob::file);
+    }
+
+    // Only well-formed keys of blobs we hold; anything else (../ etc.) is not found
+    public Optional<Blob> open(String sha256) {
+        if (!SHA256.matcher(sha256).matches()) {
+            return Optional.empty();
+        }
+        Path file = pathFor(sha256);
+        try {
+            long size = Files.size(file);
+            String contentType = contentTypes.get(sha256, key -> blobRepository.findById(key)
+                    .map(MediaBlob::getContentType)
+                    .orElse(MediaTypes.OCTET_STREAM));
+            return Optional.of(new Blob(sha256, file, size, contentType));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    // The blob key behind one of our URLs, or null if it isn't one
+    private static String keyOf(String url) {
+        if (url == null || !url.startsWith(URL_PREFIX)) {
+            return null;
+        }
+        String sha256 = url.substring(URL_PREFIX.length());
+        return SHA256.matcher(sha256).matches() ? sha256 : null;
+    }
+
+    private Path pathFor(String sha256) {
+        return root.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    private Object lockFor(String sha256) {
+        return locks[Math.floorMod(sha256.hashCode(), locks.length)];
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_BYTES);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
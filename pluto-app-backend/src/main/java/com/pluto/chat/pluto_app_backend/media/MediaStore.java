@@ -0,0 +1,49 @@
+package com.pluto.chat.pluto_app_backend.media;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+// Where uploaded media ends up. Implementations get a file already staged on local disk
+// and must not read it into memory as a whole.
+public interface MediaStore {
+
+    record MediaUpload(Path file, String fileName, String contentType, long size) {}
+
+    // url is what clients load the media from; relative URLs are served by this backend
+    record StoredMedia(String url) {}
+
+    StoredMedia store(MediaUpload upload) throws IOException;
+
+    // Points one more message at media already stored under this SHA-256, if there is any,
+    // so a forwarded file does not have to be uploaded again
+    default Optional<StoredMedia> reference(String sha256) {
+        return Optional.empty();
+    }
+
+    // As reference(), for media known by the URL this store gave out. Empty for any other URL,
+    // e.g. one in history imported from elsewhere.
+    default Optional<StoredMedia> referenceUrl(String url) {
+        return Optional.empty();
+    }
+
+    // The stored file behind `url`, when it lives on this node's disk
+    default Optional<Path> localFile(String url) {
+        return Optional.empty();
+    }
+
+    // Keeps the variants generated for the image at `url`, so forwarding it can reuse them
+    default void rememberVariants(String url, ImageVariantService.ImageVariants variants) {
+    }
+
+    // The remembered variants of `url`, with a reference taken on each as reference() does.
+    // Empty if there are none or any of them is gone.
+    default Optional<ImageVariantService.ImageVariants> referenceVariants(String url) {
+        return Optional.empty();
+    }
+
+    // Drops one reference taken by store or reference, e.g. when the message that was
+    // going to point at `url` could not be recorded
+    default void release(String url) {
+    }
+}
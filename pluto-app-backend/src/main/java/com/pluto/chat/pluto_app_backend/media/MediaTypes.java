@@ -0,0 +1,34 @@
+package com.pluto.chat.pluto_app_backend.media;
+
+import java.util.Locale;
+import java.util.Set;
+
+// Content types are declared by the uploading client and the media routes are public, so
+// only types a browser renders without running anything are kept as declared. Everything
+// else is stored as application/octet-stream and served as an attachment.
+public final class MediaTypes {
+
+    public static final String OCTET_STREAM = "application/octet-stream";
+
+    private static final Set<String> INLINE = Set.of(
+            "image/jpeg", "image/png", "image/gif", "image/webp", "image/avif", "image/heic",
+            "audio/mpeg", "audio/mp4", "audio/aac", "audio/ogg", "audio/webm", "audio/wav", "audio/x-wav",
+            "video/mp4", "video/webm");
+
+    private MediaTypes() {
+    }
+
+    // The declared type without parameters if it is safe to serve inline, else octet-stream
+    public static String normalize(String declared) {
+        if (declared == null) {
+            return OCTET_STREAM;
+        }
+        int semicolon = declared.indexOf(';');
+        String type = (semicolon >= 0 ? declared.substring(0, semicolon) : declared).trim().toLowerCase(Locale.ROOT);
+        return INLINE.contains(type) ? type : OCTET_STREAM;
+    }
+
+    public static boolean isInline(String contentType) {
+        return contentType != null && INLINE.contains(contentType);
+    }
+}
@@ -0,0 +1,9 @@
+package com.pluto.chat.pluto_app_backend.media;
+
+// Thrown when the upload executor's queue is full; mapped to 503
+public class MediaUploadBusyException extends RuntimeException {
+
+    public MediaUploadBusyException() {
+        super("Too many uploads in progress, please try again shortly");
+    }
+}
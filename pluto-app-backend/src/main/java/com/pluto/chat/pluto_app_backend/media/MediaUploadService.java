@@ -0,0 +1,383 @@
+package com.pluto.chat.pluto_app_backend.media;
+
+import com.pluto.chat.pluto_app_backend.entities.MediaStatus;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.MessageType;
+import com.pluto.chat.pluto_app_backend.service.RoomService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Photo/file messages without holding a request thread on the media store:
+//   1. the multipart part is moved to a staging file (Tomcat already spooled it to disk)
+//   2. a PENDING message is stored and broadcast so the room sees it immediately
+//   3. a bounded pool hands the staged file to the MediaStore, then re-broadcasts the
+//      same seq as READY with its URL, or as FAILED
+//   4. images go through ImageVariantService first: READY goes out once the thumbnail
+//      exists, and once more when the preview does
+// Content the store already holds (a forwarded photo) can be posted by hash alone, which
+// skips all of the above and goes out READY straight away, with the variants remembered
+// from when the image was first posted.
+//
+// Storing media (originals and variants) takes a reference on it in the store. When the
+// message that should point at the media can't be recorded, that reference is released
+// again so the blob can be removed once nothing else uses it.
+@Service
+public class MediaUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaUploadService.class);
+
+    private final RoomService roomService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MediaStore mediaStore;
+    private final ImageVariantService imageVariants;
+    private final Path stagingDir;
+    private final ThreadPoolExecutor executor;
+    private final Timer storeTime;
+    private final Counter rejected;
+
+    public MediaUploadService(RoomService roomService,
+                              SimpMessagingTemplate messagingTemplate,
+                              MediaStore mediaStore,
+                              ImageVariantService imageVariants,
+                              MeterRegistry meterRegistry,
+                              @Value("${pluto.media.staging-dir:data/media-staging}") Path stagingDir,
+                              @Value("${pluto.media.upload.threads:4}") int threads,
+                              @Value("${pluto.media.upload.queue-capacity:32}") int queueCapacity) throws IOException {
+        this.roomService = roomService;
+        this.messagingTemplate = messagingTemplate;
+        this.mediaStore = mediaStore;
+        this.imageVariants = imageVariants;
+        this.stagingDir = Files.createDirectories(stagingDir.toAbsolutePath().normalize());
+
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "media-upload-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("pluto.media.upload.queue.depth", executor, e -> e.getQueue().size())
+                .description("Uploads waiting for a worker")
+                .register(meterRegistry);
+        this.storeTime = Timer.builder("pluto.media.upload.store")
+                .description("Time to hand one upload to the media store")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("pluto.media.upload.rejected")
+                .description("Uploads turned away because the queue was full")
+                .register(meterRegistry);
+    }
+
+    // Returns the PENDING message that was broadcast
+    public Message upload(String roomId, String sender, MultipartFile file, MessageType type) throws IOException {
+        if (roomService.getRoomByRoomId(roomId).isEmpty()) {
+            throw new RuntimeException("Room not found: " + roomId);
+        }
+
+        Path staged = Files.createTempFile(stagingDir, "upload-", ".tmp");
+        try {
+            // Renames Tomcat's spooled part file where possible, otherwise a streaming copy
+            file.transferTo(staged.toFile());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(staged);
+            throw e;
+        }
+        String contentType = file.getContentType() != null ? file.getContentType() : "application/octet-stream";
+        MediaStore.MediaUpload upload = new MediaStore.MediaUpload(
+                staged, file.getOriginalFilename(), contentType, file.getSize());
+
+        Message pending = Message.builder()
+                .sender(sender)
+                .content(contentFor(type, file.getOriginalFilename()))
+                .type(type)
+                .fileName(file.getOriginalFilename())
+                .fileSize(file.getSize())
+                .mimeType(contentType)
+                .mediaStatus(MediaStatus.PENDING)
+                .timestamp(LocalDateTime.now())
+                .build();
+        roomService.addMessage(roomId, pending);
+        broadcast(roomId, pending);
+
+        try {
+            executor.execute(() -> complete(roomId, pending, upload));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            Files.deleteIfExists(staged);
+            finish(roomId, pending, null, MediaStatus.FAILED, ImageVariantService.ImageVariants.NONE, List.of());
+            throw new MediaUploadBusyException();
+        }
+        return pending;
+    }
+
+    // Media that was assembled some other way (chunked uploads): stores it on the caller's
+    // thread and publishes the message READY in one go. The upload's file is consumed.
+    public Message publish(String roomId, String sender, MediaStore.MediaUpload upload, MessageType type) throws IOException {
+        try {
+            long started = System.nanoTime();
+            MediaStore.StoredMedia stored = mediaStore.store(upload);
+            storeTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+            Message message = Message.builder()
+                    .sender(sender)
+                    .content(contentFor(type, upload.fileName()))
+                    .type(type)
+                    .mediaUrl(stored.url())
+                    .fileName(upload.fileName())
+                    .fileSize(upload.size())
+                    .mimeType(upload.contentType())
+                    .mediaStatus(MediaStatus.READY)
+                    .timestamp(LocalDateTime.now())
+                    .build();
+            addOrRelease(roomId, message, List.of(stored.url()));
+            broadcast(roomId, message);
+            return message;
+        } finally {
+            Files.deleteIfExists(upload.file());
+        }
+    }
+
+    // Posts media the store already has under this SHA-256; empty if the client has to
+    // upload the bytes after all
+    public Optional<Message> reference(String roomId, String sender, String sha256,
+                                       String fileName, String contentType, long fileSize, MessageType type) {
+        if (roomService.getRoomByRoomId(roomId).isEmpty()) {
+            throw new RuntimeException("Room not found: " + roomId);
+        }
+        return mediaStore.reference(sha256).map(stored -> {
+            // A forwarded image reuses the variants made when it was first posted
+            Optional<ImageVariantService.ImageVariants> known = type == MessageType.IMAGE
+                    ? knownVariants(stored.url())
+                    : Optional.empty();
+            ImageVariantService.ImageVariants variants = known.orElse(ImageVariantService.ImageVariants.NONE);
+            Message message = Message.builder()
+                    .sender(sender)
+                    .content(contentFor(type, fileName))
+                    .type(type)
+                    .mediaUrl(stored.url())
+                    .fileName(fileName)
+                    .fileSize(fileSize)
+                    .mimeType(contentType)
+                    .mediaStatus(MediaStatus.READY)
+                    .timestamp(LocalDateTime.now())
+                    .width(variants.width())
+                    .height(variants.height())
+                    .thumbnailUrl(variants.thumbnailUrl())
+                    .previewUrl(variants.previewUrl())
+                    .build();
+            List<String> acquired = new ArrayList<>(3);
+            acquired.add(stored.url());
+            if (variants.thumbnailUrl() != null) {
+                acquired.add(variants.thumbnailUrl());
+            }
+            if (variants.previewUrl() != null) {
+                acquired.add(variants.previewUrl());
+            }
+            addOrRelease(roomId, message, acquired);
+            broadcast(roomId, message);
+            // Posted before variants were remembered (or they have gone): make them now. They
+            // are stored under the same hashes as last time.
+            if (type == MessageType.IMAGE && known.isEmpty()) {
+                AtomicBoolean abandoned = new AtomicBoolean();
+                mediaStore.localFile(stored.url()).ifPresent(file -> imageVariants.submit(file, false, variants -> {
+                    if (variants.width() != null) {
+                        // The original is already recorded; only the variants are new
+                        recordVariants(roomId, message, stored.url(), variants, abandoned, false);
+                    }
+                }));
+            }
+            return message;
+        });
+    }
+
+    private void complete(String roomId, Message pending, MediaStore.MediaUpload upload) {
+        long started = System.nanoTime();
+        boolean handedOff = false;
+        Path kept = null;
+        MediaStore.StoredMedia stored = null;
+        try {
+            if (pending.getType() == MessageType.IMAGE) {
+                // The store may consume the file (a remote one deletes it after sending), so
+                // keep another name for it to make the variants from
+                kept = stagingDir.resolve(upload.file().getFileName() + ".variants");
+                StagedFiles.linkOrCopy(upload.file(), kept);
+            }
+            stored = mediaStore.store(upload);
+            storeTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            String url = stored.url();
+
+            if (kept != null) {
+                // A local store has moved the staged file into place; read it from there
+                Optional<Path> local = mediaStore.localFile(url);
+                Path source = local.orElse(kept);
+                boolean ownsSource = local.isEmpty();
+                AtomicBoolean abandoned = new AtomicBoolean();
+                boolean accepted = imageVariants.submit(source, ownsSource,
+                        variants -> recordVariants(roomId, pending, url, variants, abandoned, true));
+                handedOff = accepted && ownsSource;
+                if (accepted) {
+                    return;
+                }
+            }
+            finish(roomId, pending, url, MediaStatus.READY, ImageVariantService.ImageVariants.NONE, List.of(url));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Upload {} for room {} failed", pending.getSeq(), roomId, e);
+            finish(roomId, pending, null, MediaStatus.FAILED, ImageVariantService.ImageVariants.NONE,
+                    stored != null ? List.of(stored.url()) : List.of());
+        } finally {
+            deleteStaged(upload.file());
+            if (kept != null && !handedOff) {
+                deleteStaged(kept);
+            }
+        }
+    }
+
+    private void deleteStaged(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Could not remove staged upload {}", file, e);
+        }
+    }
+
+    // Optional: without them the variants are generated again
+    private Optional<ImageVariantService.ImageVariants> knownVariants(String mediaUrl) {
+        try {
+            return mediaStore.referenceVariants(mediaUrl);
+        } catch (RuntimeException e) {
+            log.warn("Could not look up variants of {}", mediaUrl, e);
+            return Optional.empty();
+        }
+    }
+
+    // The message did not make it, so nothing points at the media we just referenced
+    private void addOrRelease(String roomId, Message message, List<String> acquired) {
+        try {
+            roomService.addMessage(roomId, message);
+        } catch (RuntimeException e) {
+            acquired.forEach(this::release);
+            throw e;
+        }
+    }
+
+    // Called with the thumbnail and again with the preview. Each update releases what it
+    // stored if it can't be recorded; once one fails the message is left as it is, and
+    // later updates only release theirs.
+    private void recordVariants(String roomId, Message message, String mediaUrl,
+                                ImageVariantService.ImageVariants variants, AtomicBoolean abandoned,
+                                boolean originalUnrecorded) {
+        List<String> acquired = new ArrayList<>(2);
+        if (variants.previewUrl() == null) {
+            if (originalUnrecorded) {
+                acquired.add(mediaUrl);
+            }
+            if (variants.thumbnailUrl() != null) {
+                acquired.add(variants.thumbnailUrl());
+            }
+        } else {
+            acquired.add(variants.previewUrl());
+        }
+        if (abandoned.get()) {
+            acquired.forEach(this::release);
+            return;
+        }
+        if (!finish(roomId, message, mediaUrl, MediaStatus.READY, variants, acquired)) {
+            abandoned.set(true);
+            return;
+        }
+        if (variants.last() && variants.width() != null) {
+            try {
+                mediaStore.rememberVariants(mediaUrl, variants);
+            } catch (RuntimeException e) {
+                log.warn("Could not remember variants of {}", mediaUrl, e);
+            }
+        }
+    }
+
+    // Best effort: a reference that can't be dropped only keeps a blob around longer
+    private void release(String mediaUrl) {
+        try {
+            mediaStore.release(mediaUrl);
+        } catch (RuntimeException e) {
+            log.warn("Could not release {}", mediaUrl, e);
+        }
+    }
+
+    // A fresh copy rather than mutating the pending instance other threads may be serializing.
+    // `acquired` is what this update references for the first time; it is released when the
+    // update can't be recorded. Returns whether it was.
+    private boolean finish(String roomId, Message pending, String mediaUrl, MediaStatus status,
+                           ImageVariantService.ImageVariants variants, List<String> acquired) {
+        Message updated = Message.builder()
+                .seq(pending.getSeq())
+                .sender(pending.getSender())
+                .content(pending.getContent())
+                .timestamp(pending.getTimestamp())
+                .type(pending.getType())
+                .mediaUrl(mediaUrl)
+                .fileName(pending.getFileName())
+                .fileSize(pending.getFileSize())
+                .mimeType(pending.getMimeType())
+                .mediaStatus(status)
+                .width(variants.width())
+                .height(variants.height())
+                .thumbnailUrl(variants.thumbnailUrl())
+                .previewUrl(variants.previewUrl())
+                .build();
+        try {
+            roomService.updateMessage(roomId, updated);
+        } catch (RuntimeException e) {
+            log.error("Could not record upload result for message {} in room {}", pending.getSeq(), roomId, e);
+            acquired.forEach(this::release);
+            return false;
+        }
+        broadcast(roomId, updated);
+        return true;
+    }
+
+    private static String contentFor(MessageType type, String fileName) {
+        return switch (type) {
+            case IMAGE -> "📷 Photo";
+            case AUDIO -> "🎤 Voice note";
+            default -> fileName;
+        };
+    }
+
+    private void broadcast(String roomId, Message message) {
+        messagingTemplate.convertAndSend("/topic/room/" + roomId, message,
+                Map.of("seq", String.valueOf(message.getSeq())));
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
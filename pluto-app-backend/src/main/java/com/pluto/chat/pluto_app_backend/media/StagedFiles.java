@@ -0,0 +1,22 @@
+package com.pluto.chat.pluto_app_backend.media;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Files under the staging directory
+final class StagedFiles {
+
+    private StagedFiles() {
+    }
+
+    // A second name for `source` that outlives whatever is done with the first. A hard link
+    // costs nothing when both are on one file system; otherwise it is a copy.
+    static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(source, target);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.pluto.chat.pluto_app_backend.messaging;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Opt-in coalescing of room broadcasts on the client outbound channel. A client that sends
+// "batch-window" (milliseconds) and optionally "batch-max" in its CONNECT frame gets the
+// messages of each /topic/room/{roomId} subscription held for up to that window, or until
+// batch-max are pending, and then delivered as one MESSAGE frame whose body is a JSON array.
+// Such frames carry a "batch" header with the element count and "seq" of the last element;
+// a lone message at the end of a window goes out unchanged, so clients must handle both.
+//
+// Both values are clamped to the server's limits. Sessions that don't ask, other
+// destinations and non-JSON payloads are passed through untouched.
+@Component
+public class OutboundBatcher implements ChannelInterceptor, SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundBatcher.class);
+
+    public static final String WINDOW_HEADER = "batch-window";
+    public static final String MAX_HEADER = "batch-max";
+    public static final String BATCH_HEADER = "batch";
+
+    private static final String ROOM_PREFIX = "/topic/room/";
+    private static final String SEQ_HEADER = "seq";
+    // Set on frames this class already handled, so re-sending them doesn't buffer them again
+    private static final String BATCHED_HEADER = "plutoBatched";
+
+    private record Settings(long windowMillis, int maxMessages) {}
+
+    // Guarded by its own monitor. Sealed batches queue in `outgoing` and are sent by one
+    // thread at a time outside the lock, so a send blocked on a full outbound stripe never
+    // holds up the broker thread adding to the same subscription. A buffer with nothing left
+    // is closed and dropped from the map; whoever finds it closed makes a new one.
+    private static final class Buffer {
+        final String sessionId;
+        final String subscriptionId;
+        final List<Message<byte[]>> pending = new ArrayList<>();
+        final Deque<Message<?>> outgoing = new ArrayDeque<>();
+        ScheduledFuture<?> flush;
+        boolean draining;
+        boolean closed;
+
+        Buffer(String sessionId, String subscriptionId) {
+            this.sessionId = sessionId;
+            this.subscriptionId = subscriptionId;
+        }
+    }
+
+    private final MessageChannel clientOutboundChannel;
+    private final boolean enabled;
+    private final long maxWindowMillis;
+    private final int maxMessages;
+    private final DistributionSummary batchSize;
+
+    // sessionId -> negotiated settings, only for sessions that asked for batching
+    private final Map<String, Settings> sessions = new ConcurrentHashMap<>();
+    // sessionId -> subscriptionId -> messages waiting for the window to close
+    private final Map<String, Map<String, Buffer>> buffers = new ConcurrentHashMap<>();
+
+    private volatile ScheduledThreadPoolExecutor scheduler;
+
+    public OutboundBatcher(@Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+                           MeterRegistry meterRegistry,
+                           @Value("${pluto.stomp.batching.enabled:true}") boolean enabled,
+                           @Value("${pluto.stomp.batching.max-window:50ms}") Duration maxWindow,
+                           @Value("${pluto.stomp.batching.max-messages:100}") int maxMessages) {
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.enabled = enabled;
+        this.maxWindowMillis = maxWindow.toMillis();
+        this.maxMessages = maxMessages;
+
+        this.batchSize = DistributionSummary.builder("pluto.stomp.batch.size")
+                .description("Room messages per coalesced outbound frame")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        if (!enabled) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        long window = parse(accessor.getFirstNativeHeader(WINDOW_HEADER));
+        if (window <= 0 || accessor.getSessionId() == null) {
+            return;
+        }
+        long requestedMax = parse(accessor.getFirstNativeHeader(MAX_HEADER));
+        int max = requestedMax > 0 ? (int) Math.min(requestedMax, maxMessages) : maxMessages;
+        sessions.put(accessor.getSessionId(), new Settings(Math.min(window, maxWindowMillis), max));
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+        Map<String, Buffer> dropped = buffers.remove(event.getSessionId());
+        if (dropped != null) {
+            // Nothing left to deliver them to
+            dropped.values().forEach(OutboundBatcher::discard);
+        }
+    }
+
+    // The client no longer wants what is held for that subscription
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        Map<String, Buffer> subscriptions = sessionId != null ? buffers.get(sessionId) : null;
+        if (subscriptions == null || subscriptionId == null) {
+            return;
+        }
+        Buffer dropped = subscriptions.remove(subscriptionId);
+        if (dropped != null) {
+            discard(dropped);
+        }
+    }
+
+    private static void discard(Buffer buffer) {
+        synchronized (buffer) {
+            buffer.pending.clear();
+            buffer.outgoing.clear();
+            cancel(buffer);
+            buffer.closed = true;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE
+                || accessor.getHeader(BATCHED_HEADER) != null
+                || !(message.getPayload() instanceof byte[])
+                || !isRoomStream(accessor.getDestination())
+                || !isJson(accessor.getContentType())) {
+            return message;
+        }
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        Settings settings = sessionId != null ? sessions.get(sessionId) : null;
+        if (settings == null || subscriptionId == null) {
+            return message;
+        }
+
+        while (true) {
+            Buffer buffer = buffers.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(subscriptionId, id -> new Buffer(sessionId, id));
+            synchronized (buffer) {
+                if (buffer.closed) {
+                    continue;
+                }
+                buffer.pending.add((Message<byte[]>) message);
+                if (buffer.pending.size() >= settings.maxMessages()) {
+                    seal(buffer);
+                } else if (buffer.flush == null && !schedule(buffer, settings)) {
+                    seal(buffer);
+                }
+            }
+            drain(buffer);
+            // Swallowed here; it goes out with the rest of its batch
+            return null;
+        }
+    }
+
+    private boolean schedule(Buffer buffer, Settings settings) {
+        ScheduledThreadPoolExecutor current = scheduler;
+        if (current == null) {
+            return false;
+        }
+        try {
+            buffer.flush = current.schedule(() -> {
+                synchronized (buffer) {
+                    buffer.flush = null;
+                    seal(buffer);
+                }
+                drain(buffer);
+            }, settings.windowMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    // Caller holds the buffer's lock. Turns what is pending into one frame, queued behind the
+    // batches sealed before it
+    private void seal(Buffer buffer) {
+        cancel(buffer);
+        if (buffer.pending.isEmpty()) {
+            return;
+        }
+        Message<?> frame = buffer.pending.size() == 1
+                ? MessageBuilder.fromMessage(buffer.pending.get(0)).setHeader(BATCHED_HEADER, Boolean.TRUE).build()
+                : combine(buffer.pending);
+        batchSize.record(buffer.pending.size());
+        buffer.pending.clear();
+        buffer.outgoing.add(frame);
+    }
+
+    // Sends sealed batches in order, without holding the buffer's lock while sending. If
+    // another thread is already at it, that thread picks up ours too.
+    private void drain(Buffer buffer) {
+        synchronized (buffer) {
+            if (buffer.draining) {
+                return;
+            }
+            buffer.draining = true;
+        }
+        while (true) {
+            Message<?> frame;
+            synchronized (buffer) {
+                frame = buffer.outgoing.poll();
+                if (frame == null) {
+                    buffer.draining = false;
+                    retireIfIdle(buffer);
+                    return;
+                }
+            }
+            try {
+                clientOutboundChannel.send(frame);
+            } catch (RuntimeException e) {
+                log.warn("Could not deliver a batch of room messages", e);
+            }
+        }
+    }
+
+    // Caller holds the buffer's lock
+    private void retireIfIdle(Buffer buffer) {
+        if (buffer.closed || !buffer.pending.isEmpty() || buffer.flush != null) {
+            return;
+        }
+        buffer.closed = true;
+        Map<String, Buffer> subscriptions = buffers.get(buffer.sessionId);
+        if (subscriptions != null) {
+            subscriptions.remove(buffer.subscriptionId, buffer);
+            // Made again by a message that raced the disconnect
+            if (subscriptions.isEmpty() && !sessions.containsKey(buffer.sessionId)) {
+                buffers.remove(buffer.sessionId, subscriptions);
+            }
+        }
+    }
+
+    private static void cancel(Buffer buffer) {
+        if (buffer.flush != null) {
+            buffer.flush.cancel(false);
+            buffer.flush = null;
+        }
+    }
+
+    // The payloads are JSON objects already, so the array is just their bytes joined
+    static Message<byte[]> combine(List<Message<byte[]>> messages) {
+        int size = 2 + messages.size() - 1;
+        for (Message<byte[]> message : messages) {
+            size += message.getPayload().length;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream(size);
+        body.write('[');
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) {
+                body.write(',');
+            }
+            body.writeBytes(messages.get(i).getPayload());
+        }
+        body.write(']');
+
+        Message<byte[]> last = messages.get(messages.size() - 1);
+        SimpMessageHeaderAccessor lastHeaders = SimpMessageHeaderAccessor.wrap(last);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(lastHeaders.getSessionId());
+        accessor.setSubscriptionId(lastHeaders.getSubscriptionId());
+        accessor.setDestination(lastHeaders.getDestination());
+        accessor.setUser(lastHeaders.getUser());
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setNativeHeader(BATCH_HEADER, String.valueOf(messages.size()));
+        String seq = lastHeaders.getFirstNativeHeader(SEQ_HEADER);
+        if (seq != null) {
+            accessor.setNativeHeader(SEQ_HEADER, seq);
+        }
+        accessor.setHeader(BATCHED_HEADER, Boolean.TRUE);
+        return MessageBuilder.createMessage(body.toByteArray(), accessor.getMessageHeaders());
+    }
+
+    // The chat stream itself, not /topic/room/{id}/presence
+    private static boolean isRoomStream(String destination) {
+        return destination != null && destination.startsWith(ROOM_PREFIX)
+                && destination.indexOf('/', ROOM_PREFIX.length()) == -1;
+    }
+
+    private static boolean isJson(MimeType contentType) {
+        return contentType != null && MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType);
+    }
+
+    private static long parse(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void start() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "stomp-batch-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        scheduler = executor;
+    }
+
+    @Override
+    public void stop() {
+        ScheduledThreadPoolExecutor executor = scheduler;
+        scheduler = null;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        // Deliver what is still held rather than lose it
+        buffers.values().forEach(subscriptions -> subscriptions.values().forEach(buffer -> {
+            synchronized (buffer) {
+                seal(buffer);
+            }
+            drain(buffer);
+        }));
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+}
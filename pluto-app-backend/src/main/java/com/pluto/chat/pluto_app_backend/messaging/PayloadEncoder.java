@@ -0,0 +1,134 @@
+package com.pluto.chat.pluto_app_backend.messaging;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Binary payloads for clients that ask for them. A client that sends
+// "payload-encoding: cbor" in its CONNECT frame receives every JSON MESSAGE body as CBOR
+// (RFC 8949) instead, with content-type application/octet-stream, so it travels as a binary
+// WebSocket frame, and a "payload-encoding: cbor" header. The structure and field names
+// are exactly those of the JSON. Anything else, or no header, keeps plain JSON.
+//
+// The broker hands every subscriber of a broadcast the same payload array, so the CBOR
+// form is cached by identity and a broadcast is transcoded once however many binary
+// sessions receive it. Runs after OutboundBatcher, so a batch is transcoded as one array.
+@Component
+public class PayloadEncoder implements ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(PayloadEncoder.class);
+
+    public static final String ENCODING_HEADER = "payload-encoding";
+    public static final String CBOR = "cbor";
+
+    private final boolean enabled;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final CBORFactory cborFactory = new CBORFactory();
+    // Weak keys compare by identity, which is what we want for shared payload arrays
+    private final Cache<byte[], byte[]> transcoded = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(1024)
+            .build();
+    private final Set<String> binarySessions = ConcurrentHashMap.newKeySet();
+    private final Counter jsonBytes;
+    private final Counter cborBytes;
+
+    public PayloadEncoder(MeterRegistry meterRegistry,
+                          @Value("${pluto.stomp.cbor.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        this.jsonBytes = Counter.builder("pluto.stomp.payload.bytes")
+                .tag("encoding", "json")
+                .description("Bytes of JSON payloads transcoded for binary sessions")
+                .register(meterRegistry);
+        this.cborBytes = Counter.builder("pluto.stomp.payload.bytes")
+                .tag("encoding", CBOR)
+                .description("Bytes of the CBOR payloads they became")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if (enabled && accessor.getSessionId() != null
+                && CBOR.equalsIgnoreCase(accessor.getFirstNativeHeader(ENCODING_HEADER))) {
+            binarySessions.add(accessor.getSessionId());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        binarySessions.remove(event.getSessionId());
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (binarySessions.isEmpty()
+                || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || !binarySessions.contains(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()))
+                || !(message.getPayload() instanceof byte[] json)) {
+            return message;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        if (!isJson(accessor.getContentType())) {
+            return message;
+        }
+
+        byte[] cbor;
+        try {
+            cbor = transcoded.get(json, this::transcode);
+        } catch (UncheckedIOException e) {
+            // Not valid JSON after all; the client gets what was sent
+            log.debug("Could not transcode payload for {}", accessor.getDestination(), e);
+            return message;
+        }
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setNativeHeader(ENCODING_HEADER, CBOR);
+        return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+    }
+
+    // Streams the JSON tokens straight into a CBOR generator, without building a tree
+    public byte[] transcode(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = jsonFactory.createParser(json);
+             JsonGenerator generator = cborFactory.createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] cbor = out.toByteArray();
+        jsonBytes.increment(json.length);
+        cborBytes.increment(cbor.length);
+        return cbor;
+    }
+
+    private static boolean isJson(MimeType contentType) {
+        return contentType != null && MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType);
+    }
+}
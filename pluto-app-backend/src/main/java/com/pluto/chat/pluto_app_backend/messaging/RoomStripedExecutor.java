@@ -0,0 +1,197 @@
+package com.pluto.chat.pluto_app_backend.messaging;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Executor for the STOMP client channels. Every task is routed to one of N stripes by a key,
+// and each stripe runs its tasks one at a time on its own thread, so tasks with the same key
+// keep their order while different keys run in parallel.
+//   ROOM    (inbound) the room a frame concerns, falling back to the session: messages sent
+//           to a room are sequenced in order, and a slow room only holds up its stripe
+//   SESSION (outbound) the session a frame goes to: everything one client receives, across
+//           all its rooms plus CONNECTED/RECEIPT/ERROR, arrives in the order it was sent
+public class RoomStripedExecutor implements Executor {
+
+    private static final Logger log = LoggerFactory.getLogger(RoomStripedExecutor.class);
+
+    // Inbound SENDs arrive on /app/chat/{roomId}; broadcasts leave on /topic/room/{roomId}
+    private static final String[] ROOM_PREFIXES = {"/app/chat/", "/topic/room/"};
+
+    public enum Mode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    public enum Affinity {
+        ROOM,
+        SESSION
+    }
+
+    private final String name;
+    private final Affinity affinity;
+    private final Stripe[] stripes;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private final Timer waitTimer;
+    private final Timer runTimer;
+    private volatile boolean shutdown;
+
+    public RoomStripedExecutor(String name, Mode mode, Affinity affinity, int stripeCount, int queueCapacity,
+                               MeterRegistry meterRegistry) {
+        this.name = name;
+        this.affinity = affinity;
+        Thread.Builder threads = mode == Mode.VIRTUAL
+                ? Thread.ofVirtual().name(name + "-", 0)
+                : Thread.ofPlatform().daemon(true).name(name + "-", 0);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(queueCapacity);
+            stripes[i].thread = threads.start(stripes[i]::run);
+        }
+
+        Gauge.builder("pluto.stomp.executor.queue.depth", this, RoomStripedExecutor::queued)
+                .tag("channel", name)
+                .description("Tasks waiting across all stripes")
+                .register(meterRegistry);
+        Gauge.builder("pluto.stomp.executor.queue.max", this, RoomStripedExecutor::deepestStripe)
+                .tag("channel", name)
+                .description("Tasks waiting in the most backed-up stripe")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("pluto.stomp.executor.wait")
+                .tag("channel", name)
+                .description("Time a task spent queued before running")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("pluto.stomp.executor.run")
+                .tag("channel", name)
+                .description("Time spent handling a task")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException(name + " executor is shut down");
+        }
+        Stripe stripe = stripes[Math.floorMod(keyOf(task), stripes.length)];
+        try {
+            // A full stripe pushes back on the caller (the WebSocket read or the broker)
+            stripe.queue.put(new Task(task, System.nanoTime()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while queueing on " + name, e);
+        }
+    }
+
+    int keyOf(Runnable task) {
+        if (task instanceof MessageHandlingRunnable handling) {
+            Message<?> message = handling.getMessage();
+            String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+            if (affinity == Affinity.SESSION && sessionId != null) {
+                return spread(sessionId.hashCode());
+            }
+            String roomId = roomOf(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+            if (roomId != null) {
+                return spread(roomId.toLowerCase().trim().hashCode());
+            }
+            if (sessionId != null) {
+                return spread(sessionId.hashCode());
+            }
+        }
+        return roundRobin.getAndIncrement();
+    }
+
+    private static String roomOf(String destination) {
+        if (destination == null) {
+            return null;
+        }
+        for (String prefix : ROOM_PREFIXES) {
+            if (destination.startsWith(prefix)) {
+                String rest = destination.substring(prefix.length());
+                int slash = rest.indexOf('/');
+                return slash >= 0 ? rest.substring(0, slash) : rest;
+            }
+        }
+        return null;
+    }
+
+    // Room and session ids are short strings with similar prefixes; mix the bits before taking the modulus
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private int queued() {
+        return Arrays.stream(stripes).mapToInt(stripe -> stripe.queue.size()).sum();
+    }
+
+    private int deepestStripe() {
+        return Arrays.stream(stripes).mapToInt(stripe -> stripe.queue.size()).max().orElse(0);
+    }
+
+    // Lets queued tasks finish, then stops the stripe threads
+    public void shutdown() {
+        shutdown = true;
+        for (Stripe stripe : stripes) {
+            stripe.queue.offer(Task.POISON);
+        }
+        for (Stripe stripe : stripes) {
+            try {
+                stripe.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private record Task(Runnable runnable, long queuedAt) {
+        static final Task POISON = new Task(() -> {}, 0);
+    }
+
+    private final class Stripe {
+        private final BlockingQueue<Task> queue;
+        private Thread thread;
+
+        Stripe(int capacity) {
+            this.queue = new LinkedBlockingQueue<>(capacity);
+        }
+
+        void run() {
+            while (true) {
+                Task task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (task == Task.POISON) {
+                    return;
+                }
+                long started = System.nanoTime();
+                waitTimer.record(started - task.queuedAt(), TimeUnit.NANOSECONDS);
+                try {
+                    task.runnable().run();
+                } catch (RuntimeException e) {
+                    // One bad message must not take the stripe (and its rooms) down with it
+                    log.error("Unhandled error on {} executor", name, e);
+                } finally {
+                    runTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+    }
+}
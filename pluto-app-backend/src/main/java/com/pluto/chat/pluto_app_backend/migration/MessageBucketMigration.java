@@ -0,0 +1,78 @@
+package com.pluto.chat.pluto_app_backend.migration;
+
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.MessageBucket;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Splits the legacy embedded rooms.messages arrays into message_buckets documents.
+// Runs before the web server starts accepting traffic, and is safe to re-run: buckets
+// are upserted by (roomId, bucket) and the array is only unset once they are written.
+@Component
+public class MessageBucketMigration implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageBucketMigration.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    public MessageBucketMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Query legacyRooms = Query.query(Criteria.where("messages").exists(true));
+        legacyRooms.fields().include("roomId").include("messages");
+
+        int migrated = 0;
+        try (Stream<Document> rooms = mongoTemplate.stream(legacyRooms, Document.class, "rooms")) {
+            for (Document room : (Iterable<Document>) rooms::iterator) {
+                migrateRoom(room);
+                migrated++;
+            }
+        }
+
+        if (migrated > 0) {
+            log.info("Migrated embedded messages of {} rooms into message buckets", migrated);
+        }
+    }
+
+    private void migrateRoom(Document room) {
+        String roomId = room.getString("roomId");
+        List<Document> raw = room.getList("messages", Document.class, List.of());
+
+        for (int start = 0; start < raw.size(); start += MessageBucket.SIZE) {
+            List<Message> chunk = new ArrayList<>();
+            for (int i = start; i < Math.min(start + MessageBucket.SIZE, raw.size()); i++) {
+                Message message = mongoTemplate.getConverter().read(Message.class, raw.get(i));
+                message.setSeq((long) i + 1);
+                chunk.add(message);
+            }
+
+            Query bucketQuery = Query.query(Criteria.where("roomId").is(roomId)
+                    .and("bucket").is((long) (start / MessageBucket.SIZE)));
+            Update bucketUpdate = new Update()
+                    .set("messages", chunk)
+                    .set("count", chunk.size())
+                    .set("firstTimestamp", chunk.get(0).getTimestamp())
+                    .set("lastTimestamp", chunk.get(chunk.size() - 1).getTimestamp());
+            mongoTemplate.upsert(bucketQuery, bucketUpdate, MessageBucket.class);
+        }
+
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(room.get("_id"))),
+                new Update().unset("messages").set("messageCount", (long) raw.size()),
+                "rooms");
+    }
+}
@@ -0,0 +1,86 @@
+package com.pluto.chat.pluto_app_backend.observability;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Timings for a chat message from the moment the server receives it:
+//   pluto.message.latency{stage=sequenced|broadcast|persisted}
+// plus an overall received counter and per-room counters. Room ids are unbounded, so
+// per-room meters exist only for the most recently active `max-rooms` rooms and are
+// removed from the registry once a room goes quiet. Room ids are join codes, so the room
+// tag is a hash of the id (see roomTag) rather than the id itself.
+@Component
+public class MessageMetrics {
+
+    public static final String SEQUENCED = "sequenced";
+    public static final String BROADCAST = "broadcast";
+    public static final String PERSISTED = "persisted";
+
+    private final MeterRegistry meterRegistry;
+    private final Counter received;
+    private final Map<String, Timer> stages = new ConcurrentHashMap<>();
+    private final Cache<String, Counter> roomCounters;
+
+    public MessageMetrics(MeterRegistry meterRegistry,
+                          @Value("${pluto.metrics.room-rate.max-rooms:200}") int maxRooms,
+                          @Value("${pluto.metrics.room-rate.idle-timeout:10m}") Duration idleTimeout) {
+        this.meterRegistry = meterRegistry;
+        this.received = Counter.builder("pluto.messages.received")
+                .description("Chat messages received over WebSocket and upload")
+                .register(meterRegistry);
+        this.roomCounters = Caffeine.newBuilder()
+                .maximumSize(maxRooms)
+                .expireAfterAccess(idleTimeout)
+                .<String, Counter>removalListener((roomId, counter, cause) -> {
+                    if (counter != null) {
+                        meterRegistry.remove(counter);
+                    }
+                })
+                .build();
+    }
+
+    // Returns the receive timestamp to pass to stage()
+    public long received(String roomId) {
+        received.increment();
+        roomCounters.get(roomId.toLowerCase().trim(), room -> Counter.builder("pluto.room.messages")
+                .description("Messages received per active room")
+                .tag("room", roomTag(room))
+                .register(meterRegistry)).increment();
+        return System.nanoTime();
+    }
+
+    // First 8 bytes of SHA-256 of the normalized id, hex: stable across nodes and restarts,
+    // so an operator who knows a room can find its series, but the id can't be read back
+    public static String roomTag(String roomId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(roomId.toLowerCase().trim().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void stage(String stage, long receivedAt) {
+        stages.computeIfAbsent(stage, name -> Timer.builder("pluto.message.latency")
+                        .description("Time from receiving a message to the given stage")
+                        .tag("stage", name)
+                        .publishPercentiles(0.5, 0.99, 0.999)
+                        .register(meterRegistry))
+                .record(System.nanoTime() - receivedAt, TimeUnit.NANOSECONDS);
+    }
+}
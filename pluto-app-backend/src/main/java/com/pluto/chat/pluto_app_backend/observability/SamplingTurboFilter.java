@@ -0,0 +1,38 @@
+package com.pluto.chat.pluto_app_backend.observability;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lets through one in `oneIn` DEBUG/TRACE events from loggers under `loggerPrefix`, so
+// per-message diagnostics can be switched on in production without logging every frame.
+// Level checks (isDebugEnabled) are not sampled, only actual events. Configured in
+// logback-spring.xml.
+public class SamplingTurboFilter extends TurboFilter {
+
+    private final AtomicLong events = new AtomicLong();
+    private String loggerPrefix = "com.pluto.chat";
+    private int oneIn = 100;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+                              Throwable t) {
+        if (format == null || level == null || level.isGreaterOrEqual(Level.INFO)
+                || !logger.getName().startsWith(loggerPrefix)) {
+            return FilterReply.NEUTRAL;
+        }
+        return events.getAndIncrement() % oneIn == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public void setLoggerPrefix(String loggerPrefix) {
+        this.loggerPrefix = loggerPrefix;
+    }
+
+    public void setOneIn(int oneIn) {
+        this.oneIn = Math.max(1, oneIn);
+    }
+}
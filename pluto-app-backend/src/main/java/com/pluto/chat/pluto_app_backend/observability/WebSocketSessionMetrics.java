@@ -0,0 +1,65 @@
+package com.pluto.chat.pluto_app_backend.observability;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Live STOMP sessions and subscriptions on this node
+@Component
+public class WebSocketSessionMetrics {
+
+    // sessionId -> number of active subscriptions
+    private final Map<String, AtomicInteger> sessions = new ConcurrentHashMap<>();
+
+    public WebSocketSessionMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("pluto.websocket.sessions", sessions, Map::size)
+                .description("Connected STOMP sessions")
+                .register(meterRegistry);
+        Gauge.builder("pluto.websocket.subscriptions", this, WebSocketSessionMetrics::subscriptions)
+                .description("Active STOMP subscriptions")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (sessionId != null) {
+            sessions.putIfAbsent(sessionId, new AtomicInteger());
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        AtomicInteger count = sessions.get(SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders()));
+        if (count != null) {
+            count.incrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        AtomicInteger count = sessions.get(SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders()));
+        if (count != null) {
+            count.updateAndGet(current -> Math.max(0, current - 1));
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    private int subscriptions() {
+        return sessions.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+}
@@ -0,0 +1,48 @@
+package com.pluto.chat.pluto_app_backend.persistence;
+
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Messages that have been broadcast with a sequence number but not yet written by the
+// persistence pipeline. History reads merge these in so a reconnecting client never sees
+// a gap between what Mongo has and what was already sent over the socket.
+@Component
+public class InFlightMessages {
+
+    private final Map<String, ConcurrentSkipListMap<Long, Message>> byRoom = new ConcurrentHashMap<>();
+
+    public void add(String roomId, Message message) {
+        byRoom.computeIfAbsent(roomId, id -> new ConcurrentSkipListMap<>()).put(message.getSeq(), message);
+    }
+
+    public void remove(String roomId, Collection<Message> messages) {
+        byRoom.computeIfPresent(roomId, (id, pending) -> {
+            messages.forEach(message -> pending.remove(message.getSeq()));
+            return pending.isEmpty() ? null : pending;
+        });
+    }
+
+    // Pending messages with after < seq < before, oldest first; either bound may be null
+    public List<Message> between(String roomId, Long after, Long before) {
+        ConcurrentSkipListMap<Long, Message> pending = byRoom.get(roomId);
+        if (pending == null) {
+            return List.of();
+        }
+        NavigableMap<Long, Message> range = pending;
+        if (after != null) {
+            range = range.tailMap(after, false);
+        }
+        if (before != null) {
+            range = range.headMap(before, false);
+        }
+        return new ArrayList<>(range.values());
+    }
+}
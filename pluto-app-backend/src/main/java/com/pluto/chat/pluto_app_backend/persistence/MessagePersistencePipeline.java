@@ -0,0 +1,388 @@
+package com.pluto.chat.pluto_app_backend.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.observability.MessageMetrics;
+import com.pluto.chat.pluto_app_backend.service.MessageService;
+import com.pluto.chat.pluto_app_backend.service.RoomService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+// Write-behind persistence for chat messages. Messages get their sequence number, are
+// broadcast, and are then submitted here; a single writer drains the bounded queue and
+// stores each room's share of a batch with one $push per bucket.
+//
+// Messages have already gone out to clients, so a failed write is never dropped. It stays
+// in InFlightMessages (history reads keep returning it) and is retried with backoff, only
+// writing what Mongo doesn't already have. The writer takes no new work while it retries,
+// so the queue fills and pushes back on senders. Whatever is still unwritten when the node
+// shuts down goes to a dead-letter file, which the next start picks up again.
+@Component
+public class MessagePersistencePipeline implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(MessagePersistencePipeline.class);
+
+    // What submit() does when the queue is full
+    public enum OverflowPolicy {
+        // Wait up to offer-timeout for space, then persist on the caller's thread
+        BLOCK,
+        // Persist on the caller's thread straight away
+        CALLER_RUNS
+    }
+
+    // receivedAt is 0 for messages replayed from the dead-letter file
+    private record PendingMessage(String roomId, Message message, long receivedAt) {}
+
+    // One line of the dead-letter file
+    record DeadLetter(String roomId, Message message) {}
+
+    private final RoomService roomService;
+    private final MessageService messageService;
+    private final InFlightMessages inFlightMessages;
+    private final MessageMetrics messageMetrics;
+    private final BlockingQueue<PendingMessage> queue;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Duration offerTimeout;
+    private final OverflowPolicy overflowPolicy;
+    private final Duration retryBackoff;
+    private final Duration maxRetryBackoff;
+    private final Duration shutdownRetry;
+    private final Path deadLetterFile;
+    private final ObjectMapper objectMapper;
+    // Failed writes waiting for another attempt, oldest first
+    private final Queue<PendingMessage> retries = new ConcurrentLinkedQueue<>();
+
+    private final DistributionSummary batchSizes;
+    private final Timer flushTimer;
+    private final Counter overflows;
+    private final Counter failures;
+
+    private volatile boolean running;
+    private volatile long giveUpAt;
+    private Thread writer;
+
+    public MessagePersistencePipeline(RoomService roomService,
+                                      MessageService messageService,
+                                      InFlightMessages inFlightMessages,
+                                      MessageMetrics messageMetrics,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${pluto.persistence.queue-capacity:10000}") int queueCapacity,
+                                      @Value("${pluto.persistence.batch-size:500}") int batchSize,
+                                      @Value("${pluto.persistence.flush-interval:50ms}") Duration flushInterval,
+                                      @Value("${pluto.persistence.offer-timeout:100ms}") Duration offerTimeout,
+                                      @Value("${pluto.persistence.overflow-policy:block}") OverflowPolicy overflowPolicy,
+                                      @Value("${pluto.persistence.retry-backoff:100ms}") Duration retryBackoff,
+                                      @Value("${pluto.persistence.max-retry-backoff:10s}") Duration maxRetryBackoff,
+                                      @Value("${pluto.persistence.shutdown-retry:10s}") Duration shutdownRetry,
+                                      @Value("${pluto.persistence.dead-letter-file:data/persistence-dead-letter.ndjson}") Path deadLetterFile,
+                                      ObjectMapper objectMapper) {
+        this.roomService = roomService;
+        this.messageService = messageService;
+        this.inFlightMessages = inFlightMessages;
+        this.messageMetrics = messageMetrics;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.offerTimeout = offerTimeout;
+        this.overflowPolicy = overflowPolicy;
+        this.retryBackoff = retryBackoff;
+        this.maxRetryBackoff = maxRetryBackoff;
+        this.shutdownRetry = shutdownRetry;
+        this.deadLetterFile = deadLetterFile.toAbsolutePath().normalize();
+        this.objectMapper = objectMapper;
+
+        Gauge.builder("pluto.persistence.queue.depth", queue, BlockingQueue::size)
+                .description("Messages waiting to be persisted")
+                .register(meterRegistry);
+        Gauge.builder("pluto.persistence.retry.backlog", retries, Queue::size)
+                .description("Messages whose write failed and is being retried")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("pluto.persistence.batch.size")
+                .description("Messages written per flush")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("pluto.persistence.flush")
+                .description("Time to write one batch")
+                .register(meterRegistry);
+        this.overflows = Counter.builder("pluto.persistence.overflow")
+                .description("Submits that found the queue full")
+                .tag("policy", overflowPolicy.name().toLowerCase())
+                .register(meterRegistry);
+        this.failures = Counter.builder("pluto.persistence.failures")
+                .description("Message writes that failed and were queued for a retry")
+                .register(meterRegistry);
+    }
+
+    // The message must already have its sequence number (RoomService.assignSequence).
+    // receivedAt is the MessageMetrics.received() timestamp, used for the persisted stage.
+    public void submit(String rawRoomId, Message message, long receivedAt) {
+        // In-flight lookups in RoomService use the normalized id
+        String roomId = rawRoomId.toLowerCase().trim();
+        PendingMessage pending = new PendingMessage(roomId, message, receivedAt);
+        inFlightMessages.add(roomId, message);
+        if (running && queue.offer(pending)) {
+            return;
+        }
+
+        overflows.increment();
+        if (running && overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                if (queue.offer(pending, offerTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Never drop: fall back to a synchronous write on the caller, and to the writer's
+        // retries if that fails too
+        try {
+            roomService.storeMessages(roomId, List.of(message));
+            messageMetrics.stage(MessageMetrics.PERSISTED, receivedAt);
+            inFlightMessages.remove(roomId, List.of(message));
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Could not persist message {} for room {}, will retry", message.getSeq(), roomId, e);
+            retries.add(pending);
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        long backoff = retryBackoff.toNanos();
+        long retryAt = 0;
+        while (running || !queue.isEmpty() || !retries.isEmpty()) {
+            if (!retries.isEmpty()) {
+                long now = System.nanoTime();
+                if (!running && now - giveUpAt > 0) {
+                    deadLetter();
+                    break;
+                }
+                if (retryAt - now > 0) {
+                    pause(Math.min(retryAt - now, flushInterval.toNanos()));
+                    continue;
+                }
+                backoff = retry() ? retryBackoff.toNanos() : Math.min(backoff * 2, maxRetryBackoff.toNanos());
+                retryAt = System.nanoTime() + backoff;
+                continue;
+            }
+
+            try {
+                PendingMessage first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Keep collecting until the batch is full or the flush interval runs out
+                long deadline = System.nanoTime() + flushInterval.toNanos();
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Nobody interrupts the writer on purpose; flush what we have and carry on
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+                if (!retries.isEmpty()) {
+                    retryAt = System.nanoTime() + backoff;
+                }
+            }
+        }
+    }
+
+    private static void pause(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            // As in drainLoop: not used to stop the writer
+        }
+    }
+
+    private void flush(List<PendingMessage> batch) {
+        batchSizes.record(batch.size());
+
+        // Group by room, keeping arrival order inside each room
+        Map<String, List<PendingMessage>> byRoom = new LinkedHashMap<>();
+        for (PendingMessage pending : batch) {
+            byRoom.computeIfAbsent(pending.roomId(), roomId -> new ArrayList<>()).add(pending);
+        }
+
+        flushTimer.record(() -> byRoom.forEach((roomId, pendings) -> {
+            List<Message> messages = pendings.stream().map(PendingMessage::message).toList();
+            try {
+                roomService.storeMessages(roomId, messages);
+                pendings.forEach(pending -> messageMetrics.stage(MessageMetrics.PERSISTED, pending.receivedAt()));
+                inFlightMessages.remove(roomId, messages);
+            } catch (RuntimeException e) {
+                failures.increment(messages.size());
+                log.error("Failed to persist {} messages for room {}, will retry", messages.size(), roomId, e);
+                retries.addAll(pendings);
+            }
+        }));
+    }
+
+    // One attempt at everything waiting. A write that failed part way may have stored some
+    // of a room's messages already, so those are looked up first and not written twice.
+    // Returns whether nothing is left to retry.
+    private boolean retry() {
+        Map<String, List<PendingMessage>> byRoom = new LinkedHashMap<>();
+        PendingMessage pending;
+        while ((pending = retries.poll()) != null) {
+            byRoom.computeIfAbsent(pending.roomId(), roomId -> new ArrayList<>()).add(pending);
+        }
+        byRoom.forEach((roomId, pendings) -> {
+            List<Message> messages = pendings.stream().map(PendingMessage::message).toList();
+            try {
+                Set<Long> stored = messageService.getBySeqs(roomId.toLowerCase().trim(),
+                        messages.stream().map(Message::getSeq).toList()).keySet();
+                roomService.storeMessages(roomId, messages.stream()
+                        .filter(message -> !stored.contains(message.getSeq()))
+                        .sorted(Comparator.comparing(Message::getSeq))
+                        .toList());
+                pendings.stream()
+                        .filter(done -> done.receivedAt() != 0)
+                        .forEach(done -> messageMetrics.stage(MessageMetrics.PERSISTED, done.receivedAt()));
+                inFlightMessages.remove(roomId, messages);
+                log.info("Persisted {} messages for room {} on retry", messages.size(), roomId);
+            } catch (RuntimeException e) {
+                failures.increment(messages.size());
+                log.warn("Retry of {} messages for room {} failed", messages.size(), roomId, e);
+                retries.addAll(pendings);
+            }
+        });
+        if (!retries.isEmpty()) {
+            return false;
+        }
+        try {
+            // Everything replayed from it is written now
+            Files.deleteIfExists(deadLetterFile);
+        } catch (IOException e) {
+            log.warn("Could not remove {}", deadLetterFile, e);
+        }
+        return true;
+    }
+
+    // Shutting down with writes still failing: keep them, and whatever queued up behind
+    // them, on disk for the next start
+    private void deadLetter() {
+        List<PendingMessage> unwritten = new ArrayList<>(retries);
+        queue.drainTo(unwritten);
+        retries.removeAll(unwritten);
+        try {
+            Files.createDirectories(deadLetterFile.getParent());
+            try (BufferedWriter out = Files.newBufferedWriter(deadLetterFile, StandardCharsets.UTF_8)) {
+                for (PendingMessage pending : unwritten) {
+                    out.write(objectMapper.writeValueAsString(new DeadLetter(pending.roomId(), pending.message())));
+                    out.newLine();
+                }
+            }
+            log.error("Could not persist {} messages before shutdown; saved them to {}", unwritten.size(), deadLetterFile);
+        } catch (IOException e) {
+            log.error("Could not persist {} messages before shutdown, nor save them to {}: {}",
+                    unwritten.size(), deadLetterFile, unwritten, e);
+        }
+    }
+
+    // Messages a previous run could not write go back in line, ahead of anything new
+    private void replayDeadLetters() {
+        if (!Files.exists(deadLetterFile)) {
+            return;
+        }
+        int replayed = 0;
+        try (BufferedReader in = Files.newBufferedReader(deadLetterFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                DeadLetter letter = objectMapper.readValue(line, DeadLetter.class);
+                inFlightMessages.add(letter.roomId(), letter.message());
+                retries.add(new PendingMessage(letter.roomId(), letter.message(), 0));
+                replayed++;
+            }
+        } catch (IOException e) {
+            // Leave the file alone; it is only removed once its messages are written
+            log.error("Could not read dead letters from {}", deadLetterFile, e);
+        }
+        log.warn("Replaying {} messages a previous run could not persist", replayed);
+    }
+
+    @Override
+    public void start() {
+        replayDeadLetters();
+        running = true;
+        writer = new Thread(this::drainLoop, "message-persistence");
+        writer.start();
+    }
+
+    // Stops taking work and blocks until everything queued has been written, or for at most
+    // shutdown-retry once writes are failing
+    @Override
+    public void stop() {
+        giveUpAt = System.nanoTime() + shutdownRetry.toNanos();
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        // No interrupt: the writer notices within one flush interval, and interrupting a
+        // thread in the middle of a Mongo call would fail the write
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Message persistence pipeline stopped, queue drained");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Stop after the WebSocket handlers (which use the default phase) so nothing new arrives
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1024;
+    }
+}
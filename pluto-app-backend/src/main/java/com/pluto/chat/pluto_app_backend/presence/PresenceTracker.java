@@ -0,0 +1,256 @@
+package com.pluto.chat.pluto_app_backend.presence;
+
+import com.pluto.chat.pluto_app_backend.dto.PresenceUpdate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Who is online and who is typing, per room. A user is online in a room while at least
+// one of their sessions subscribes to /topic/room/{roomId}; typing is a flag the client
+// refreshes while the user types and that lapses after typing-ttl.
+//
+// Events only update concurrent maps and mark the room dirty. A tick publishes one diff
+// per dirty room against what was last published, so a room costs at most one broadcast
+// per tick however many people join, leave or type, and a leave/rejoin inside one tick
+// (a reconnect) is never seen at all.
+//
+// Presence is per node: in a cluster each node reports the sessions it holds.
+@Component
+public class PresenceTracker implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceTracker.class);
+
+    private static final String ROOM_PREFIX = "/topic/room/";
+
+    private static final class RoomPresence {
+        // user -> subscriptions to the room across that user's sessions
+        final Map<String, Integer> subscriptions = new ConcurrentHashMap<>();
+        // user -> System.nanoTime() their typing flag lapses
+        final Map<String, Long> typingUntil = new ConcurrentHashMap<>();
+        // What clients were last told; only the tick thread touches these
+        Set<String> publishedOnline = Set.of();
+        Set<String> publishedTyping = Set.of();
+
+        boolean idle() {
+            return subscriptions.isEmpty() && typingUntil.isEmpty()
+                    && publishedOnline.isEmpty() && publishedTyping.isEmpty();
+        }
+    }
+
+    private record Subscription(String roomId, String username) {}
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final Duration tick;
+    private final long typingTtlNanos;
+
+    private final Map<String, RoomPresence> rooms = new ConcurrentHashMap<>();
+    private final Set<String> dirtyRooms = ConcurrentHashMap.newKeySet();
+    // sessionId -> subscriptionId -> room subscription
+    private final Map<String, Map<String, Subscription>> sessions = new ConcurrentHashMap<>();
+
+    private final Counter events;
+    private final Counter broadcasts;
+
+    private ScheduledExecutorService ticker;
+
+    public PresenceTracker(SimpMessagingTemplate messagingTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${pluto.presence.tick:250ms}") Duration tick,
+                           @Value("${pluto.presence.typing-ttl:5s}") Duration typingTtl) {
+        this.messagingTemplate = messagingTemplate;
+        this.tick = tick;
+        this.typingTtlNanos = typingTtl.toNanos();
+
+        this.events = Counter.builder("pluto.presence.events")
+                .description("Subscribe, unsubscribe, disconnect and typing events")
+                .register(meterRegistry);
+        this.broadcasts = Counter.builder("pluto.presence.broadcasts")
+                .description("Presence diffs published")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String roomId = roomOf(accessor.getDestination());
+        Principal user = event.getUser();
+        if (roomId == null || user == null || accessor.getSessionId() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        events.increment();
+        sessions.computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>())
+                .put(accessor.getSubscriptionId(), new Subscription(roomId, user.getName()));
+        rooms.compute(roomId, (id, presence) -> {
+            RoomPresence updated = presence != null ? presence : new RoomPresence();
+            updated.subscriptions.merge(user.getName(), 1, Integer::sum);
+            return updated;
+        });
+        dirtyRooms.add(roomId);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Map<String, Subscription> subscriptions = sessions.get(accessor.getSessionId());
+        if (subscriptions != null && accessor.getSubscriptionId() != null) {
+            Subscription subscription = subscriptions.remove(accessor.getSubscriptionId());
+            if (subscription != null) {
+                events.increment();
+                leave(subscription);
+            }
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, Subscription> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            events.increment();
+            subscriptions.values().forEach(this::leave);
+        }
+    }
+
+    private void leave(Subscription subscription) {
+        rooms.computeIfPresent(subscription.roomId(), (id, presence) -> {
+            Integer remaining = presence.subscriptions.computeIfPresent(subscription.username(),
+                    (user, count) -> count > 1 ? count - 1 : null);
+            if (remaining == null) {
+                presence.typingUntil.remove(subscription.username());
+            }
+            return presence;
+        });
+        dirtyRooms.add(subscription.roomId());
+    }
+
+    // Only users online in the room can type in it; repeats just push the deadline out
+    public void typing(String roomId, String username, boolean typing) {
+        RoomPresence presence = rooms.get(roomId);
+        if (presence == null || !presence.subscriptions.containsKey(username)) {
+            return;
+        }
+        events.increment();
+        boolean changed = typing
+                ? presence.typingUntil.put(username, System.nanoTime() + typingTtlNanos) == null
+                : presence.typingUntil.remove(username) != null;
+        if (changed) {
+            dirtyRooms.add(roomId);
+        }
+    }
+
+    public PresenceUpdate snapshot(String roomId) {
+        RoomPresence presence = rooms.get(roomId);
+        return PresenceUpdate.builder()
+                .roomId(roomId)
+                .snapshot(true)
+                .online(presence != null ? List.copyOf(presence.subscriptions.keySet()) : List.of())
+                .offline(List.of())
+                .typing(presence != null ? List.copyOf(presence.typingUntil.keySet()) : List.of())
+                .build();
+    }
+
+    private void publishDiffs() {
+        try {
+            expireTyping();
+            for (String roomId : dirtyRooms) {
+                dirtyRooms.remove(roomId);
+                publishDiff(roomId);
+            }
+        } catch (RuntimeException e) {
+            // Never let one bad tick cancel the schedule
+            log.warn("Presence tick failed", e);
+        }
+    }
+
+    private void expireTyping() {
+        long now = System.nanoTime();
+        rooms.forEach((roomId, presence) -> {
+            if (presence.typingUntil.values().removeIf(deadline -> deadline - now <= 0)) {
+                dirtyRooms.add(roomId);
+            }
+        });
+    }
+
+    private void publishDiff(String roomId) {
+        RoomPresence presence = rooms.get(roomId);
+        if (presence == null) {
+            return;
+        }
+        Set<String> online = new HashSet<>(presence.subscriptions.keySet());
+        Set<String> typing = new HashSet<>(presence.typingUntil.keySet());
+
+        List<String> joined = new ArrayList<>(online);
+        joined.removeAll(presence.publishedOnline);
+        List<String> left = new ArrayList<>(presence.publishedOnline);
+        left.removeAll(online);
+        boolean typingChanged = !typing.equals(presence.publishedTyping);
+
+        presence.publishedOnline = online;
+        presence.publishedTyping = typing;
+        if (!joined.isEmpty() || !left.isEmpty() || typingChanged) {
+            messagingTemplate.convertAndSend(ROOM_PREFIX + roomId + "/presence", PresenceUpdate.builder()
+                    .roomId(roomId)
+                    .online(joined)
+                    .offline(left)
+                    .typing(typingChanged ? List.copyOf(typing) : null)
+                    .build());
+            broadcasts.increment();
+        }
+
+        // Forget rooms nobody is in any more, unless something arrived meanwhile
+        rooms.computeIfPresent(roomId, (id, current) -> current.idle() ? null : current);
+    }
+
+    // The chat stream itself, not /topic/room/{id}/presence
+    private static String roomOf(String destination) {
+        if (destination == null || !destination.startsWith(ROOM_PREFIX)) {
+            return null;
+        }
+        String roomId = destination.substring(ROOM_PREFIX.length());
+        return roomId.isEmpty() || roomId.contains("/") ? null : roomId;
+    }
+
+    @Override
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::publishDiffs, tick.toMillis(), tick.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return ticker != null;
+    }
+}
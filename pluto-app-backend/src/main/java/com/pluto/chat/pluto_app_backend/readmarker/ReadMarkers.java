@@ -0,0 +1,152 @@
+package com.pluto.chat.pluto_app_backend.readmarker;
+
+import com.pluto.chat.pluto_app_backend.entities.ReadMarker;
+import com.pluto.chat.pluto_app_backend.entities.RoomSummary;
+import com.pluto.chat.pluto_app_backend.repository.ReadMarkerRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Last-read positions per user and room. A client reports "read up to seq" as the user
+// scrolls, which can be many times a second, so reports only raise an in-memory marker and
+// a flush every flush-interval writes each changed marker once, in one bulk $max upsert.
+// Reads take the newer of the stored and pending marker, so a user never sees a count that
+// ignores what they just read on this node.
+//
+// Unread counts cost nothing extra: a room's summary already carries its message counter,
+// and unread is that minus the marker. A user with no marker in a room has read nothing.
+@Component
+public class ReadMarkers implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadMarkers.class);
+
+    private record Key(String roomId, String username) {}
+
+    private final ReadMarkerRepository markerRepository;
+    private final Duration flushInterval;
+
+    private final Map<Key, Long> pending = new ConcurrentHashMap<>();
+
+    private final Counter reports;
+    private final Counter writes;
+
+    private ScheduledExecutorService flusher;
+
+    public ReadMarkers(ReadMarkerRepository markerRepository,
+                       MeterRegistry meterRegistry,
+                       @Value("${pluto.read-markers.flush-interval:2s}") Duration flushInterval) {
+        this.markerRepository = markerRepository;
+        this.flushInterval = flushInterval;
+
+        this.reports = Counter.builder("pluto.readmarkers.reports")
+                .description("Read-up-to reports received")
+                .register(meterRegistry);
+        this.writes = Counter.builder("pluto.readmarkers.writes")
+                .description("Markers written to Mongo after coalescing")
+                .register(meterRegistry);
+    }
+
+    public void markRead(String username, String roomId, long seq) {
+        if (seq <= 0) {
+            return;
+        }
+        reports.increment();
+        // Usernames are case-sensitive, so only trimmed as UserService does; room ids are lowercased
+        pending.merge(new Key(roomId.toLowerCase().trim(), username.trim()), seq, Math::max);
+    }
+
+    // roomId -> last read seq, for the rooms the user has a marker in
+    public Map<String, Long> lastRead(String username, List<String> roomIds) {
+        String normalizedUser = username.trim();
+        List<String> normalizedIds = roomIds.stream().map(id -> id.toLowerCase().trim()).distinct().toList();
+        Map<String, Long> lastRead = new HashMap<>();
+        for (ReadMarker marker : markerRepository.findByUsernameAndRoomIdIn(normalizedUser, normalizedIds)) {
+            lastRead.put(marker.getRoomId(), marker.getLastReadSeq());
+        }
+        for (String roomId : normalizedIds) {
+            Long unflushed = pending.get(new Key(roomId, normalizedUser));
+            if (unflushed != null) {
+                lastRead.merge(roomId, unflushed, Math::max);
+            }
+        }
+        return lastRead;
+    }
+
+    // Sets unreadCount on each summary from its message counter and the user's marker
+    public void fillUnread(String username, List<RoomSummary> summaries) {
+        if (summaries.isEmpty()) {
+            return;
+        }
+        Map<String, Long> lastRead = lastRead(username, summaries.stream().map(RoomSummary::getRoomId).toList());
+        for (RoomSummary summary : summaries) {
+            long read = lastRead.getOrDefault(summary.getRoomId(), 0L);
+            summary.setUnreadCount(Math.max(0, summary.getMessageCount() - read));
+        }
+    }
+
+    void flush() {
+        List<ReadMarker> batch = new ArrayList<>(pending.size());
+        for (Key key : pending.keySet()) {
+            Long seq = pending.remove(key);
+            if (seq != null) {
+                batch.add(ReadMarker.builder().roomId(key.roomId()).username(key.username()).lastReadSeq(seq).build());
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            markerRepository.advanceAll(batch);
+            writes.increment(batch.size());
+        } catch (RuntimeException e) {
+            // Put them back for the next flush, unless something newer arrived meanwhile
+            batch.forEach(marker -> pending.merge(new Key(marker.getRoomId(), marker.getUsername()),
+                    marker.getLastReadSeq(), Math::max));
+            log.warn("Could not write {} read markers, will retry", batch.size(), e);
+        }
+    }
+
+    @Override
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "read-marker-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // Writes what is still pending before Mongo goes away
+    @Override
+    public void stop() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flusher = null;
+            flush();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return flusher != null;
+    }
+}
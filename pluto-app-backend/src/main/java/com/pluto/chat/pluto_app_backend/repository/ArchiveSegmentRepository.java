@@ -0,0 +1,14 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.ArchiveSegment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import java.util.List;
+import java.util.Optional;
+
+public interface ArchiveSegmentRepository extends MongoRepository<ArchiveSegment, String> {
+    List<ArchiveSegment> findByRoomIdOrderByFirstSeqAsc(String roomId);
+    Optional<ArchiveSegment> findFirstByRoomIdOrderByLastSeqDesc(String roomId);
+    List<ArchiveSegment> findByRoomIdAndFirstSeqLessThanOrderByFirstSeqDesc(String roomId, long seq, Pageable pageable);
+    List<ArchiveSegment> findByRoomIdAndLastSeqGreaterThanOrderByFirstSeqAsc(String roomId, long seq, Pageable pageable);
+}
@@ -0,0 +1,7 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.MediaBlob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface MediaBlobRepository extends MongoRepository<MediaBlob, String>, MediaBlobRepositoryCustom {
+}
@@ -0,0 +1,12 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.MediaBlob;
+import java.util.Optional;
+
+public interface MediaBlobRepositoryCustom {
+    MediaBlob acquire(String sha256, long size, String contentType);
+    Optional<MediaBlob> acquireExisting(String sha256);
+    long release(String sha256);
+    boolean removeIfUnreferenced(String sha256);
+    void setVariants(String sha256, Integer width, Integer height, String thumbnailUrl, String previewUrl);
+}
@@ -0,0 +1,74 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.MediaBlob;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public class MediaBlobRepositoryCustomImpl implements MediaBlobRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public MediaBlobRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // One more reference, creating the blob record on first upload
+    @Override
+    public MediaBlob acquire(String sha256, long size, String contentType) {
+        return mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(sha256)),
+                new Update()
+                        .inc("refCount", 1)
+                        .setOnInsert("size", size)
+                        .setOnInsert("contentType", contentType)
+                        .setOnInsert("createdAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                MediaBlob.class);
+    }
+
+    // One more reference to a blob that is already stored; empty if we don't have it
+    @Override
+    public Optional<MediaBlob> acquireExisting(String sha256) {
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(sha256).and("refCount").gt(0)),
+                new Update().inc("refCount", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                MediaBlob.class));
+    }
+
+    // Returns the remaining reference count, or -1 if the blob is unknown
+    @Override
+    public long release(String sha256) {
+        MediaBlob blob = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(sha256).and("refCount").gt(0)),
+                new Update().inc("refCount", -1),
+                FindAndModifyOptions.options().returnNew(true),
+                MediaBlob.class);
+        return blob != null ? blob.getRefCount() : -1;
+    }
+
+    @Override
+    public boolean removeIfUnreferenced(String sha256) {
+        return mongoTemplate.remove(
+                Query.query(Criteria.where("_id").is(sha256).and("refCount").lte(0)),
+                MediaBlob.class).getDeletedCount() > 0;
+    }
+
+    @Override
+    public void setVariants(String sha256, Integer width, Integer height, String thumbnailUrl, String previewUrl) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(sha256)),
+                new Update()
+                        .set("width", width)
+                        .set("height", height)
+                        .set("thumbnailUrl", thumbnailUrl)
+                        .set("previewUrl", previewUrl),
+                MediaBlob.class);
+    }
+}
@@ -0,0 +1,18 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.MessageBucket;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface MessageBucketRepository extends MongoRepository<MessageBucket, String>, MessageBucketRepositoryCustom {
+    Optional<MessageBucket> findByRoomIdAndBucket(String roomId, long bucket);
+    List<MessageBucket> findByRoomIdOrderByBucketAsc(String roomId);
+    List<MessageBucket> findByRoomIdAndBucketIn(String roomId, Collection<Long> buckets);
+    List<MessageBucket> findByRoomIdOrderByBucketDesc(String roomId, Pageable pageable);
+    List<MessageBucket> findByRoomIdAndBucketLessThanEqualOrderByBucketDesc(String roomId, long bucket, Pageable pageable);
+    List<MessageBucket> findByRoomIdAndBucketGreaterThanEqualOrderByBucketAsc(String roomId, long bucket, Pageable pageable);
+    long deleteByRoomIdAndBucketLessThanEqual(String roomId, long bucket);
+}
@@ -0,0 +1,12 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.MessageBucket;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface MessageBucketRepositoryCustom {
+    void append(String roomId, long bucket, List<Message> messages);
+    boolean replace(String roomId, long bucket, Message message);
+    Stream<MessageBucket> streamByRoomId(String roomId);
+}
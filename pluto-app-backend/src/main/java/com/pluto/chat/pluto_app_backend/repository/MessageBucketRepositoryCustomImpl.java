@@ -0,0 +1,71 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.MessageBucket;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+public class MessageBucketRepositoryCustomImpl implements MessageBucketRepositoryCustom {
+
+    // Buckets per cursor batch when streaming, about a thousand messages
+    private static final int STREAM_BATCH_BUCKETS = 10;
+
+    private final MongoTemplate mongoTemplate;
+
+    public MessageBucketRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // $push into the bucket, creating it on first use; nothing already stored is sent back
+    @Override
+    public void append(String roomId, long bucket, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        Query query = Query.query(Criteria.where("roomId").is(roomId).and("bucket").is(bucket));
+        Update update = new Update()
+                .push("messages").each(messages.toArray())
+                .inc("count", messages.size());
+
+        messages.stream()
+                .map(Message::getTimestamp)
+                .filter(Objects::nonNull)
+                .min(LocalDateTime::compareTo)
+                .ifPresent(first -> update.min("firstTimestamp", first));
+        messages.stream()
+                .map(Message::getTimestamp)
+                .filter(Objects::nonNull)
+                .max(LocalDateTime::compareTo)
+                .ifPresent(last -> update.max("lastTimestamp", last));
+
+        mongoTemplate.upsert(query, update, MessageBucket.class);
+    }
+
+    // Overwrites the stored message with the same seq in place (positional $set)
+    @Override
+    public boolean replace(String roomId, long bucket, Message message) {
+        Query query = Query.query(Criteria.where("roomId").is(roomId)
+                .and("bucket").is(bucket)
+                .and("messages.seq").is(message.getSeq()));
+        return mongoTemplate.updateFirst(query, new Update().set("messages.$", message), MessageBucket.class)
+                .getMatchedCount() > 0;
+    }
+
+    // All of a room's buckets in order over one cursor, a few at a time; close the stream
+    @Override
+    public Stream<MessageBucket> streamByRoomId(String roomId) {
+        Query query = Query.query(Criteria.where("roomId").is(roomId))
+                .with(Sort.by("bucket"))
+                .cursorBatchSize(STREAM_BATCH_BUCKETS);
+        return mongoTemplate.stream(query, MessageBucket.class);
+    }
+}
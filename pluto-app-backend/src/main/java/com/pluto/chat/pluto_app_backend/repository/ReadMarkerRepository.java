@@ -0,0 +1,10 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.ReadMarker;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import java.util.Collection;
+import java.util.List;
+
+public interface ReadMarkerRepository extends MongoRepository<ReadMarker, String>, ReadMarkerRepositoryCustom {
+    List<ReadMarker> findByUsernameAndRoomIdIn(String username, Collection<String> roomIds);
+}
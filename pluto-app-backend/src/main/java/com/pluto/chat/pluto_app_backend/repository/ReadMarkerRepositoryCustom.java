@@ -0,0 +1,8 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.ReadMarker;
+import java.util.Collection;
+
+public interface ReadMarkerRepositoryCustom {
+    void advanceAll(Collection<ReadMarker> markers);
+}
@@ -0,0 +1,41 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.ReadMarker;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public class ReadMarkerRepositoryCustomImpl implements ReadMarkerRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public ReadMarkerRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // One unordered bulk write; $max means a marker never moves back, whatever order
+    // writes from several nodes arrive in
+    @Override
+    public void advanceAll(Collection<ReadMarker> markers) {
+        if (markers.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReadMarker.class);
+        for (ReadMarker marker : markers) {
+            Query query = Query.query(Criteria.where("_id").is(ReadMarker.id(marker.getRoomId(), marker.getUsername())));
+            Update update = new Update()
+                    .max("lastReadSeq", marker.getLastReadSeq())
+                    .set("updatedAt", now)
+                    .setOnInsert("username", marker.getUsername())
+                    .setOnInsert("roomId", marker.getRoomId());
+            bulk.upsert(query, update);
+        }
+        bulk.execute();
+    }
+}
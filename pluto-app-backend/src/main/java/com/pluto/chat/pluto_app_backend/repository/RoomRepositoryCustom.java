@@ -0,0 +1,14 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.RetentionPolicy;
+import com.pluto.chat.pluto_app_backend.entities.Room;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+// Single round-trip updates on rooms, implemented with MongoTemplate in RoomRepositoryCustomImpl
+public interface RoomRepositoryCustom {
+    Room upsertMember(String roomId, String username);
+    Optional<Room> addMember(String roomId, String username);
+    OptionalLong incrementMessageCount(String roomId, int delta);
+    Optional<Room> setRetention(String roomId, RetentionPolicy retention);
+}
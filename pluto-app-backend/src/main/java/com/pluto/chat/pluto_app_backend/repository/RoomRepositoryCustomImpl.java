@@ -0,0 +1,71 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.RetentionPolicy;
+import com.pluto.chat.pluto_app_backend.entities.Room;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Optional;
+import java.util.OptionalLong;
+
+public class RoomRepositoryCustomImpl implements RoomRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public RoomRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // Creates the room if needed and adds the member in one call. Mongo retries a racing
+    // upsert itself because the filter is an equality match on the unique roomId index.
+    @Override
+    public Room upsertMember(String roomId, String username) {
+        return mongoTemplate.findAndModify(
+                membershipQuery(roomId),
+                new Update().addToSet("members", username),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Room.class);
+    }
+
+    @Override
+    public Optional<Room> addMember(String roomId, String username) {
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+                membershipQuery(roomId),
+                new Update().addToSet("members", username),
+                FindAndModifyOptions.options().returnNew(true),
+                Room.class));
+    }
+
+    // Reserves `delta` message positions and returns the last one
+    @Override
+    public OptionalLong incrementMessageCount(String roomId, int delta) {
+        Query query = Query.query(Criteria.where("roomId").is(roomId));
+        query.fields().include("messageCount");
+
+        Room room = mongoTemplate.findAndModify(
+                query,
+                new Update().inc("messageCount", delta),
+                FindAndModifyOptions.options().returnNew(true),
+                Room.class);
+
+        return room == null ? OptionalLong.empty() : OptionalLong.of(room.getMessageCount());
+    }
+
+    @Override
+    public Optional<Room> setRetention(String roomId, RetentionPolicy retention) {
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+                Query.query(Criteria.where("roomId").is(roomId)),
+                new Update().set("retention", retention),
+                FindAndModifyOptions.options().returnNew(true),
+                Room.class));
+    }
+
+    private Query membershipQuery(String roomId) {
+        Query query = Query.query(Criteria.where("roomId").is(roomId));
+        query.fields().include("roomId").include("members").include("messageCount");
+        return query;
+    }
+}
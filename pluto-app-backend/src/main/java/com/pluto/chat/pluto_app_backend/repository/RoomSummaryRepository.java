@@ -0,0 +1,10 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.RoomSummary;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import java.util.List;
+
+public interface RoomSummaryRepository extends MongoRepository<RoomSummary, String>, RoomSummaryRepositoryCustom {
+    List<RoomSummary> findAllByRoomIdIn(List<String> roomIds, Sort sort);
+}
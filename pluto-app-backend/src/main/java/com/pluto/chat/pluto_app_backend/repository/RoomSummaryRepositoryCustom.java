@@ -0,0 +1,8 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.Message;
+
+public interface RoomSummaryRepositoryCustom {
+    void recordMessage(String roomId, long position, Message message);
+    void recordMemberCount(String roomId, int memberCount);
+}
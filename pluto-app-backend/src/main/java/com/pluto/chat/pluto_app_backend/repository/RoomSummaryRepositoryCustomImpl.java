@@ -0,0 +1,44 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.RoomSummary;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+
+public class RoomSummaryRepositoryCustomImpl implements RoomSummaryRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public RoomSummaryRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // Only applies if nothing newer has been recorded, so racing appends can't roll the
+    // preview back. Rooms without a summary yet are backfilled on first read instead.
+    @Override
+    public void recordMessage(String roomId, long position, Message message) {
+        Query query = Query.query(Criteria.where("roomId").is(roomId).and("messageCount").lt(position));
+        Update update = new Update()
+                .set("messageCount", position)
+                .set("lastMessagePreview", RoomSummary.preview(message))
+                .set("lastSender", message.getSender())
+                .set("lastMessageType", message.getType())
+                .max("lastActivityAt", message.getTimestamp() != null ? message.getTimestamp() : LocalDateTime.now());
+        mongoTemplate.updateFirst(query, update, RoomSummary.class);
+    }
+
+    // Membership only grows, so $max keeps the largest count seen
+    @Override
+    public void recordMemberCount(String roomId, int memberCount) {
+        Query query = Query.query(Criteria.where("roomId").is(roomId));
+        Update update = new Update()
+                .max("memberCount", memberCount)
+                .setOnInsert("messageCount", 0L)
+                .setOnInsert("lastActivityAt", LocalDateTime.now());
+        mongoTemplate.upsert(query, update, RoomSummary.class);
+    }
+}
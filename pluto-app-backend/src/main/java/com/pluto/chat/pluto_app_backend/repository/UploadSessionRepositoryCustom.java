@@ -0,0 +1,14 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.UploadSession;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadSessionRepositoryCustom {
+    Optional<UploadSession> markChunkReceived(String id, int index, LocalDateTime expiresAt);
+    boolean claimCompletion(String id, LocalDateTime now, LocalDateTime until);
+    void releaseCompletion(String id);
+    void markPublished(String id, long seq);
+    List<UploadSession> findExpired(LocalDateTime now, int limit);
+}
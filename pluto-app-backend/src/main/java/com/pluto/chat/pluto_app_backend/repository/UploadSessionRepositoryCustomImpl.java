@@ -0,0 +1,70 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.UploadSession;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public class UploadSessionRepositoryCustomImpl implements UploadSessionRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public UploadSessionRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // Records a verified chunk and pushes the expiry out; returns the updated session
+    @Override
+    public Optional<UploadSession> markChunkReceived(String id, int index, LocalDateTime expiresAt) {
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(id)),
+                new Update().addToSet("receivedChunks", index).set("expiresAt", expiresAt),
+                FindAndModifyOptions.options().returnNew(true),
+                UploadSession.class));
+    }
+
+    // Only one caller gets true, however many requests see the last chunk arrive. The claim
+    // lapses at `until`, so a node that died while assembling doesn't block the upload.
+    @Override
+    public boolean claimCompletion(String id, LocalDateTime now, LocalDateTime until) {
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(id).and("seq").is(null)
+                        .orOperator(Criteria.where("completingUntil").is(null),
+                                Criteria.where("completingUntil").lt(now))),
+                new Update().set("completingUntil", until),
+                UploadSession.class).getModifiedCount() > 0;
+    }
+
+    // Assembly failed; let the next retry claim it again
+    @Override
+    public void releaseCompletion(String id) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(id)),
+                new Update().unset("completingUntil"),
+                UploadSession.class);
+    }
+
+    @Override
+    public void markPublished(String id, long seq) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(id)),
+                new Update().set("seq", seq).unset("completingUntil"),
+                UploadSession.class);
+    }
+
+    @Override
+    public List<UploadSession> findExpired(LocalDateTime now, int limit) {
+        return mongoTemplate.find(
+                Query.query(Criteria.where("expiresAt").lt(now))
+                        .with(Sort.by("expiresAt"))
+                        .limit(limit),
+                UploadSession.class);
+    }
+}
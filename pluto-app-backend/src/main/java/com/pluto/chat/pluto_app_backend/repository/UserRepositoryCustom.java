@@ -0,0 +1,6 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+public interface UserRepositoryCustom {
+    boolean addJoinedRoom(String username, String roomId);
+    boolean replacePasswordHash(String userId, String expectedHash, String newHash);
+}
@@ -0,0 +1,34 @@
+package com.pluto.chat.pluto_app_backend.repository;
+
+import com.pluto.chat.pluto_app_backend.entities.User;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public UserRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // Returns false when no such user exists
+    @Override
+    public boolean addJoinedRoom(String username, String roomId) {
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("username").is(username)),
+                new Update().addToSet("joinedRooms", roomId),
+                User.class).getMatchedCount() > 0;
+    }
+
+    // Compare-and-set, so a password changed in the meantime is never overwritten
+    @Override
+    public boolean replacePasswordHash(String userId, String expectedHash, String newHash) {
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(userId).and("passwordHash").is(expectedHash)),
+                new Update().set("passwordHash", newHash),
+                User.class).getModifiedCount() > 0;
+    }
+}
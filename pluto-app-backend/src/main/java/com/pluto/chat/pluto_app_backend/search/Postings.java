@@ -0,0 +1,69 @@
+package com.pluto.chat.pluto_app_backend.search;
+
+import java.util.Arrays;
+
+// The messages containing one term in one room: parallel arrays of seq (ascending) and
+// term frequency. Messages are indexed in roughly seq order, so adds are almost always
+// appends; the rare late one is inserted in place.
+final class Postings {
+
+    private long[] seqs = new long[4];
+    private int[] frequencies = new int[4];
+    private int size;
+
+    // Returns false when seq was already present (its frequency is replaced)
+    boolean add(long seq, int frequency) {
+        if (size == 0 || seq > seqs[size - 1]) {
+            ensureCapacity(size + 1);
+            seqs[size] = seq;
+            frequencies[size] = frequency;
+            size++;
+            return true;
+        }
+        int index = Arrays.binarySearch(seqs, 0, size, seq);
+        if (index >= 0) {
+            frequencies[index] = frequency;
+            return false;
+        }
+        int insertAt = -index - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(seqs, insertAt, seqs, insertAt + 1, size - insertAt);
+        System.arraycopy(frequencies, insertAt, frequencies, insertAt + 1, size - insertAt);
+        seqs[insertAt] = seq;
+        frequencies[insertAt] = frequency;
+        size++;
+        return true;
+    }
+
+    // Drops every seq below `seq`
+    void removeBefore(long seq) {
+        int index = Arrays.binarySearch(seqs, 0, size, seq);
+        int from = index >= 0 ? index : -index - 1;
+        if (from == 0) {
+            return;
+        }
+        System.arraycopy(seqs, from, seqs, 0, size - from);
+        System.arraycopy(frequencies, from, frequencies, 0, size - from);
+        size -= from;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long seq(int index) {
+        return seqs[index];
+    }
+
+    int frequency(int index) {
+        return frequencies[index];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > seqs.length) {
+            int grown = Math.max(capacity, seqs.length + (seqs.length >> 1));
+            seqs = Arrays.copyOf(seqs, grown);
+            frequencies = Arrays.copyOf(frequencies, grown);
+        }
+    }
+}
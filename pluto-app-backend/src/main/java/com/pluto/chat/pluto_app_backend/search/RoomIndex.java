@@ -0,0 +1,181 @@
+package com.pluto.chat.pluto_app_backend.search;
+
+import com.pluto.chat.pluto_app_backend.search.SearchIndex.Hit;
+import com.pluto.chat.pluto_app_backend.search.SearchIndex.Results;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted index of one room, ranked with BM25. Seqs are dense per room, so document
+// lengths live in an array indexed by seq. Queries take the read lock, indexing the write
+// lock; both are short.
+final class RoomIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Comparator<Hit> RANKING = Comparator.comparingDouble(Hit::score)
+            // Equal scores: newer first
+            .thenComparingLong(Hit::seq);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> terms = new HashMap<>();
+    private int[] docLengths = new int[64];
+    private long docCount;
+    private long totalLength;
+
+    // Returns false for an empty message or one already indexed
+    boolean add(long seq, Map<String, Integer> frequencies, int length) {
+        if (length == 0) {
+            return false;
+        }
+        int slot = Math.toIntExact(seq);
+        lock.writeLock().lock();
+        try {
+            if (slot < docLengths.length && docLengths[slot] != 0) {
+                return false;
+            }
+            if (slot >= docLengths.length) {
+                docLengths = Arrays.copyOf(docLengths, Math.max(slot + 1, docLengths.length * 2));
+            }
+            docLengths[slot] = length;
+            docCount++;
+            totalLength += length;
+            frequencies.forEach((term, frequency) ->
+                    terms.computeIfAbsent(term, t -> new Postings()).add(seq, frequency));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Forgets every message below `seq` (history removed by retention)
+    void removeBefore(long seq) {
+        lock.writeLock().lock();
+        try {
+            int end = (int) Math.min(seq, docLengths.length);
+            for (int slot = 0; slot < end; slot++) {
+                if (docLengths[slot] != 0) {
+                    docCount--;
+                    totalLength -= docLengths[slot];
+                    docLengths[slot] = 0;
+                }
+            }
+            terms.values().removeIf(postings -> {
+                postings.removeBefore(seq);
+                return postings.size() == 0;
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Any query term may match; messages matching more (and rarer) terms rank higher
+    Results search(List<String> queryTerms, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            if (docCount == 0) {
+                return new Results(0, List.of());
+            }
+            double averageLength = (double) totalLength / docCount;
+            Map<Long, double[]> scores = new HashMap<>();
+            for (String term : queryTerms.stream().distinct().toList()) {
+                Postings postings = terms.get(term);
+                if (postings == null) {
+                    continue;
+                }
+                int documentFrequency = postings.size();
+                double idf = Math.log(1 + (docCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                for (int i = 0; i < postings.size(); i++) {
+                    long seq = postings.seq(i);
+                    int frequency = postings.frequency(i);
+                    double norm = K1 * (1 - B + B * docLengths[(int) seq] / averageLength);
+                    double score = idf * frequency * (K1 + 1) / (frequency + norm);
+                    scores.computeIfAbsent(seq, s -> new double[1])[0] += score;
+                }
+            }
+
+            if (limit <= 0 || offset >= scores.size()) {
+                return new Results(scores.size(), List.of());
+            }
+            // Keep only the best offset + limit in a min-heap; never more than there are hits
+            int wanted = (int) Math.min((long) offset + limit, scores.size());
+            PriorityQueue<Hit> best = new PriorityQueue<>(wanted, RANKING);
+            scores.forEach((seq, score) -> {
+                Hit hit = new Hit(seq, score[0]);
+                if (best.size() < wanted) {
+                    best.add(hit);
+                } else if (RANKING.compare(hit, best.peek()) > 0) {
+                    best.poll();
+                    best.add(hit);
+                }
+            });
+            List<Hit> ranked = new ArrayList<>(best);
+            ranked.sort(RANKING.reversed());
+            List<Hit> page = ranked.subList(offset, ranked.size());
+            return new Results(scores.size(), page);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeLong(docCount);
+            for (int slot = 0; slot < docLengths.length; slot++) {
+                if (docLengths[slot] != 0) {
+                    out.writeInt(slot);
+                    out.writeInt(docLengths[slot]);
+                }
+            }
+            out.writeInt(terms.size());
+            for (Map.Entry<String, Postings> entry : terms.entrySet()) {
+                Postings postings = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeInt(postings.size());
+                for (int i = 0; i < postings.size(); i++) {
+                    out.writeLong(postings.seq(i));
+                    out.writeInt(postings.frequency(i));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static RoomIndex readFrom(DataInputStream in) throws IOException {
+        RoomIndex index = new RoomIndex();
+        long docs = in.readLong();
+        for (long i = 0; i < docs; i++) {
+            int slot = in.readInt();
+            int length = in.readInt();
+            if (slot >= index.docLengths.length) {
+                index.docLengths = Arrays.copyOf(index.docLengths, Math.max(slot + 1, index.docLengths.length * 2));
+            }
+            index.docLengths[slot] = length;
+            index.totalLength += length;
+        }
+        index.docCount = docs;
+        int termCount = in.readInt();
+        for (int t = 0; t < termCount; t++) {
+            String term = in.readUTF();
+            int size = in.readInt();
+            Postings postings = new Postings();
+            for (int i = 0; i < size; i++) {
+                postings.add(in.readLong(), in.readInt());
+            }
+            index.terms.put(term, postings);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,464 @@
+package com.pluto.chat.pluto_app_backend.search;
+
+import com.pluto.chat.pluto_app_backend.dto.MessagePage;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.Room;
+import com.pluto.chat.pluto_app_backend.repository.RoomRepository;
+import com.pluto.chat.pluto_app_backend.service.MessageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// In-process full-text index over room messages, one RoomIndex per room.
+//
+// Messages are indexed as RoomService stores them. Every change is also appended to a
+// log on disk (index-<n>.log); compaction rotates the log, writes the whole index to
+// snapshot.bin and deletes the logs it covers. Startup loads the snapshot and replays the
+// remaining logs; replay is idempotent, so a crash anywhere in between only costs time.
+//
+// A rebuild reads a room's stored history into a fresh index on a background thread
+// while live messages go to both, then swaps it in. It runs on its own when no index
+// exists yet. Each node indexes the messages it persists.
+@Component
+public class SearchIndex implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndex.class);
+
+    private static final String SNAPSHOT = "snapshot.bin";
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE_BEFORE = 2;
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    public record Hit(long seq, double score) {}
+
+    // total counts every matching message; hits is the requested page, best first
+    public record Results(int total, List<Hit> hits) {}
+
+    private final MessageService messageService;
+    private final RoomRepository roomRepository;
+    private final Path dir;
+    private final Duration flushInterval;
+    private final long compactAfterBytes;
+    private final boolean rebuildIfMissing;
+
+    private final Map<String, RoomIndex> rooms = new ConcurrentHashMap<>();
+    // Rooms being rebuilt: live messages are indexed here as well until the swap
+    private final Map<String, RoomIndex> rebuilding = new ConcurrentHashMap<>();
+    private final Object[] roomLocks = new Object[64];
+
+    private final Object logLock = new Object();
+    private DataOutputStream logOut;
+    private long logNumber;
+    private long logBytes;
+
+    private final Timer queryTime;
+    private final Counter rebuilds;
+
+    private ScheduledExecutorService maintenance;
+    private ExecutorService rebuilder;
+
+    public SearchIndex(MessageService messageService,
+                       RoomRepository roomRepository,
+                       MeterRegistry meterRegistry,
+                       @Value("${pluto.search.dir:data/search}") Path dir,
+                       @Value("${pluto.search.flush-interval:1s}") Duration flushInterval,
+                       @Value("${pluto.search.compact-after:64MB}") DataSize compactAfter,
+                       @Value("${pluto.search.rebuild-if-missing:true}") boolean rebuildIfMissing) {
+        this.messageService = messageService;
+        this.roomRepository = roomRepository;
+        this.dir = dir.toAbsolutePath().normalize();
+        this.flushInterval = flushInterval;
+        this.compactAfterBytes = compactAfter.toBytes();
+        this.rebuildIfMissing = rebuildIfMissing;
+        for (int i = 0; i < roomLocks.length; i++) {
+            roomLocks[i] = new Object();
+        }
+
+        Gauge.builder("pluto.search.rooms", rooms, Map::size)
+                .description("Rooms with a search index in memory")
+                .register(meterRegistry);
+        this.queryTime = Timer.builder("pluto.search.query")
+                .description("Time to rank one search query")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rebuilds = Counter.builder("pluto.search.rebuilds")
+                .description("Rooms rebuilt from stored history")
+                .register(meterRegistry);
+    }
+
+    // Called with messages that are now stored (seq assigned). Changes are logged while the
+    // room lock is held, so replay sees a room's adds and removals in the order they
+    // happened; locks are always taken room lock first, then logLock.
+    public void index(String roomId, List<Message> messages) {
+        for (Message message : messages) {
+            List<String> tokens = SearchTokenizer.tokens(message.getContent());
+            if (tokens.isEmpty()) {
+                continue;
+            }
+            Map<String, Integer> frequencies = SearchTokenizer.termFrequencies(tokens);
+            synchronized (lockFor(roomId)) {
+                boolean added = rooms.computeIfAbsent(roomId, r -> new RoomIndex())
+                        .add(message.getSeq(), frequencies, tokens.size());
+                RoomIndex shadow = rebuilding.get(roomId);
+                if (shadow != null) {
+                    shadow.add(message.getSeq(), frequencies, tokens.size());
+                }
+                if (added) {
+                    appendAdd(roomId, message.getSeq(), tokens.size(), frequencies);
+                }
+            }
+        }
+    }
+
+    // History below `seq` is gone from the store
+    public void removeBefore(String roomId, long seq) {
+        synchronized (lockFor(roomId)) {
+            RoomIndex index = rooms.get(roomId);
+            if (index != null) {
+                index.removeBefore(seq);
+            }
+            RoomIndex shadow = rebuilding.get(roomId);
+            if (shadow != null) {
+                shadow.removeBefore(seq);
+            }
+            appendRemoveBefore(roomId, seq);
+        }
+    }
+
+    public Results search(String roomId, String query, int offset, int limit) {
+        long started = System.nanoTime();
+        try {
+            List<String> terms = SearchTokenizer.tokens(query);
+            RoomIndex index = rooms.get(roomId);
+            if (terms.isEmpty() || index == null) {
+                return new Results(0, List.of());
+            }
+            return index.search(terms, offset, limit);
+        } finally {
+            queryTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Re-reads a room's stored history in the background
+    public void rebuild(String roomId) {
+        rebuilder.execute(() -> {
+            rebuildRoom(roomId);
+            compactQuietly();
+        });
+    }
+
+    public void rebuildAll() {
+        rebuilder.execute(() -> {
+            for (Room room : roomRepository.findAll()) {
+                rebuildRoom(room.getRoomId());
+            }
+            compactQuietly();
+        });
+    }
+
+    private void rebuildRoom(String roomId) {
+        long started = System.nanoTime();
+        RoomIndex fresh = new RoomIndex();
+        rebuilding.put(roomId, fresh);
+        try {
+            long after = 0;
+            MessagePage page;
+            do {
+                page = messageService.getPageAfter(roomId, after, REBUILD_PAGE_SIZE);
+                for (Message message : page.getMessages()) {
+                    List<String> tokens = SearchTokenizer.tokens(message.getContent());
+                    if (!tokens.isEmpty()) {
+                        fresh.add(message.getSeq(), SearchTokenizer.termFrequencies(tokens), tokens.size());
+                    }
+                }
+                if (!page.getMessages().isEmpty()) {
+                    after = page.getMessages().get(page.getMessages().size() - 1).getSeq();
+                }
+            } while (page.isHasMore());
+
+            synchronized (lockFor(roomId)) {
+                rooms.put(roomId, fresh);
+                rebuilding.remove(roomId);
+            }
+            rebuilds.increment();
+            log.info("Rebuilt search index for room {} in {} ms", roomId,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (RuntimeException e) {
+            rebuilding.remove(roomId);
+            log.error("Rebuilding search index for room {} failed", roomId, e);
+        }
+    }
+
+    private void appendAdd(String roomId, long seq, int length, Map<String, Integer> frequencies) {
+        synchronized (logLock) {
+            // Not started (or stopped): memory only, the next compaction persists it
+            if (logOut == null) {
+                return;
+            }
+            try {
+                int before = logOut.size();
+                logOut.writeByte(OP_ADD);
+                logOut.writeUTF(roomId);
+                logOut.writeLong(seq);
+                logOut.writeInt(length);
+                logOut.writeInt(frequencies.size());
+                for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                    logOut.writeUTF(entry.getKey());
+                    logOut.writeInt(entry.getValue());
+                }
+                logBytes += logOut.size() - before;
+            } catch (IOException e) {
+                // The in-memory index is still right; the next compaction persists it
+                log.warn("Could not log search entry {} for room {}", seq, roomId, e);
+            }
+        }
+    }
+
+    private void appendRemoveBefore(String roomId, long seq) {
+        synchronized (logLock) {
+            if (logOut == null) {
+                return;
+            }
+            try {
+                int before = logOut.size();
+                logOut.writeByte(OP_REMOVE_BEFORE);
+                logOut.writeUTF(roomId);
+                logOut.writeLong(seq);
+                logBytes += logOut.size() - before;
+            } catch (IOException e) {
+                log.warn("Could not log search removal for room {}", roomId, e);
+            }
+        }
+    }
+
+    private void flushAndMaybeCompact() {
+        boolean compact;
+        synchronized (logLock) {
+            if (logOut == null) {
+                return;
+            }
+            try {
+                logOut.flush();
+            } catch (IOException e) {
+                log.warn("Could not flush search log", e);
+            }
+            compact = logBytes > compactAfterBytes;
+        }
+        if (compact) {
+            compactQuietly();
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            log.error("Search index compaction failed", e);
+        }
+    }
+
+    // Only one compaction at a time; indexing carries on meanwhile
+    private synchronized void compact() throws IOException {
+        long covered;
+        synchronized (logLock) {
+            covered = logNumber;
+            openLog(logNumber + 1);
+        }
+
+        Path temp = dir.resolve(SNAPSHOT + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            Map<String, RoomIndex> current = Map.copyOf(rooms);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(current.size());
+            for (Map.Entry<String, RoomIndex> entry : current.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, dir.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path logFile : logFiles()) {
+            if (logNumberOf(logFile) <= covered) {
+                Files.deleteIfExists(logFile);
+            }
+        }
+    }
+
+    // Returns true when anything was on disk
+    private boolean load() throws IOException {
+        boolean found = false;
+        Path snapshot = dir.resolve(SNAPSHOT);
+        if (Files.exists(snapshot)) {
+            found = true;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+                if (in.readInt() != SNAPSHOT_VERSION) {
+                    log.warn("Ignoring search snapshot with an unknown version");
+                    return false;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String roomId = in.readUTF();
+                    rooms.put(roomId, RoomIndex.readFrom(in));
+                }
+            }
+        }
+        for (Path logFile : logFiles()) {
+            found = true;
+            logNumber = Math.max(logNumber, logNumberOf(logFile));
+            replay(logFile);
+        }
+        return found;
+    }
+
+    private void replay(Path logFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile), 1 << 16))) {
+            while (true) {
+                int op = in.read();
+                if (op == -1) {
+                    return;
+                }
+                String roomId = in.readUTF();
+                long seq = in.readLong();
+                if (op == OP_REMOVE_BEFORE) {
+                    RoomIndex index = rooms.get(roomId);
+                    if (index != null) {
+                        index.removeBefore(seq);
+                    }
+                    continue;
+                }
+                int length = in.readInt();
+                int termCount = in.readInt();
+                Map<String, Integer> frequencies = new HashMap<>(termCount * 2);
+                for (int i = 0; i < termCount; i++) {
+                    frequencies.put(in.readUTF(), in.readInt());
+                }
+                rooms.computeIfAbsent(roomId, r -> new RoomIndex()).add(seq, frequencies, length);
+            }
+        } catch (EOFException e) {
+            // Torn last record from a crash; everything before it is good
+            log.warn("Search log {} ends in a partial record", logFile.getFileName());
+        }
+    }
+
+    private void openLog(long number) throws IOException {
+        if (logOut != null) {
+            logOut.close();
+        }
+        logNumber = number;
+        logBytes = 0;
+        logOut = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(dir.resolve("index-" + number + ".log").toFile(), true), 1 << 16));
+    }
+
+    private List<Path> logFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().matches("index-\\d+\\.log"))
+                    .sorted((a, b) -> Long.compare(logNumberOf(a), logNumberOf(b)))
+                    .toList();
+        }
+    }
+
+    private static long logNumberOf(Path logFile) {
+        String name = logFile.getFileName().toString();
+        return Long.parseLong(name.substring("index-".length(), name.length() - ".log".length()));
+    }
+
+    private Object lockFor(String roomId) {
+        return roomLocks[Math.floorMod(roomId.hashCode(), roomLocks.length)];
+    }
+
+    @Override
+    public void start() {
+        boolean found;
+        try {
+            Files.createDirectories(dir);
+            found = load();
+            openLog(logNumber + 1);
+            // Start from a clean snapshot, so nothing is ever appended after a torn record
+            compact();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open search index in " + dir, e);
+        }
+
+        rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-rebuild");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::flushAndMaybeCompact,
+                flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+        if (!found && rebuildIfMissing) {
+            log.info("No search index on disk, rebuilding from stored history");
+            rebuildAll();
+        }
+    }
+
+    // Flushes the log; the next start replays it
+    @Override
+    public void stop() {
+        if (maintenance == null) {
+            return;
+        }
+        maintenance.shutdownNow();
+        rebuilder.shutdownNow();
+        maintenance = null;
+        synchronized (logLock) {
+            try {
+                logOut.close();
+            } catch (IOException e) {
+                log.warn("Could not close search log", e);
+            }
+            logOut = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return maintenance != null;
+    }
+
+    // Stop after the persistence pipeline has drained into RoomService
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+}
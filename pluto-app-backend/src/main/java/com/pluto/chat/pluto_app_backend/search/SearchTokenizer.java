@@ -0,0 +1,43 @@
+package com.pluto.chat.pluto_app_backend.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// Shared by indexing and queries so both see the same terms: split on anything that isn't
+// a letter or digit, lower-case, fold accents ("Café" matches "cafe"), drop 1-char noise.
+final class SearchTokenizer {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final int MIN_LENGTH = 2;
+    private static final int MAX_LENGTH = 64;
+
+    private SearchTokenizer() {
+    }
+
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return tokens;
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        for (String token : SEPARATORS.split(folded.toLowerCase(Locale.ROOT))) {
+            if (token.length() >= MIN_LENGTH && token.length() <= MAX_LENGTH) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // Term -> occurrences, in first-seen order
+    static Map<String, Integer> termFrequencies(List<String> tokens) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        tokens.forEach(token -> frequencies.merge(token, 1, Integer::sum));
+        return frequencies;
+    }
+}
@@ -0,0 +1,47 @@
+package com.pluto.chat.pluto_app_backend.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+// Authenticates REST requests carrying "Authorization: Bearer <jwt>". Requests without a
+// valid token go through unauthenticated and SecurityConfig decides whether that's allowed.
+@Component
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final VerifiedTokenCache tokenCache;
+
+    public JwtAuthenticationFilter(VerifiedTokenCache tokenCache) {
+        this.tokenCache = tokenCache;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String token = bearerToken(request.getHeader(HttpHeaders.AUTHORIZATION));
+        if (token != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            tokenCache.verify(token).ifPresent(verified -> SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken(verified.username(), null, List.of())));
+        }
+        chain.doFilter(request, response);
+    }
+
+    static String bearerToken(String header) {
+        if (header == null || !header.startsWith(BEARER_PREFIX)) {
+            return null;
+        }
+        String token = header.substring(BEARER_PREFIX.length()).trim();
+        return token.isEmpty() ? null : token;
+    }
+}
@@ -0,0 +1,140 @@
+package com.pluto.chat.pluto_app_backend.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs bcrypt on a small dedicated pool so a login storm can't take every request thread.
+// The queue is bounded; when it is full callers get PasswordHashingBusyException (503)
+// straight away instead of piling up behind hundreds of milliseconds of CPU each.
+@Component
+public class PasswordHasher {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final Timer queueWait;
+    private final Timer encodeTime;
+    private final Timer matchTime;
+    private final Counter rejected;
+    private final Counter upgrades;
+
+    public PasswordHasher(PasswordEncoder passwordEncoder,
+                          MeterRegistry meterRegistry,
+                          @Value("${pluto.security.hashing.threads:0}") int threads,
+                          @Value("${pluto.security.hashing.queue-capacity:64}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+
+        // Leave at least half the cores for everything else
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("pluto.password.hash.queue.depth", executor, e -> e.getQueue().size())
+                .description("Hash requests waiting for a thread")
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("pluto.password.hash.wait")
+                .description("Time a hash request waited for a thread")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.encodeTime = hashTimer(meterRegistry, "encode");
+        this.matchTime = hashTimer(meterRegistry, "matches");
+        this.rejected = Counter.builder("pluto.password.hash.rejected")
+                .description("Hash requests turned away because the queue was full")
+                .register(meterRegistry);
+        this.upgrades = Counter.builder("pluto.password.hash.upgrades")
+                .description("Stored hashes re-encoded with the current parameters")
+                .register(meterRegistry);
+    }
+
+    private static Timer hashTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("pluto.password.hash.time")
+                .description("CPU time spent in the password encoder")
+                .tag("operation", operation)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    public String encode(CharSequence rawPassword) {
+        return run(() -> encodeTime.record(() -> passwordEncoder.encode(rawPassword)));
+    }
+
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> matchTime.record(() -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+
+    // After a successful login: re-hash with the current parameters if the stored hash is
+    // weaker. Runs in the background and is simply skipped when the pool is busy; the
+    // next login will try again.
+    public void upgradeIfNeeded(CharSequence rawPassword, String encodedPassword, HashUpgrade upgrade) {
+        if (!passwordEncoder.upgradeEncoding(encodedPassword)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                if (upgrade.replace(encodedPassword, encodeTime.record(() -> passwordEncoder.encode(rawPassword)))) {
+                    upgrades.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+        }
+    }
+
+    @FunctionalInterface
+    public interface HashUpgrade {
+        boolean replace(String oldHash, String newHash);
+    }
+
+    private <T> T run(Callable<T> hashing) {
+        long submitted = System.nanoTime();
+        Future<T> result;
+        try {
+            result = executor.submit(() -> {
+                queueWait.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                return hashing.call();
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingBusyException();
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Password hashing failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
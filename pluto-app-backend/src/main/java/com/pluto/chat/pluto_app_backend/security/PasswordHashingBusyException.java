@@ -0,0 +1,9 @@
+package com.pluto.chat.pluto_app_backend.security;
+
+// Thrown when the password hashing pool and its queue are full; mapped to 503
+public class PasswordHashingBusyException extends RuntimeException {
+
+    public PasswordHashingBusyException() {
+        super("Server is busy, please try again shortly");
+    }
+}
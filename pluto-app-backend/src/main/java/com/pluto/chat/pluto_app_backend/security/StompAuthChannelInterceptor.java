@@ -0,0 +1,43 @@
+package com.pluto.chat.pluto_app_backend.security;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Authenticates a STOMP session once, on CONNECT, from an "Authorization: Bearer <jwt>"
+// native header. The principal set here is kept on the WebSocket session and attached to
+// every later frame, so SEND and SUBSCRIBE never verify a signature again.
+@Component
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    private final VerifiedTokenCache tokenCache;
+
+    public StompAuthChannelInterceptor(VerifiedTokenCache tokenCache) {
+        this.tokenCache = tokenCache;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT) {
+            return message;
+        }
+
+        String token = JwtAuthenticationFilter.bearerToken(accessor.getFirstNativeHeader("Authorization"));
+        VerifiedTokenCache.VerifiedToken verified = token == null ? null : tokenCache.verify(token).orElse(null);
+        if (verified == null) {
+            // Turned into a STOMP ERROR frame and the connection is closed
+            throw new MessageDeliveryException(message, "Missing or invalid token");
+        }
+        accessor.setUser(new UsernamePasswordAuthenticationToken(verified.username(), null, List.of()));
+        return message;
+    }
+}
@@ -0,0 +1,60 @@
+package com.pluto.chat.pluto_app_backend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.pluto.chat.pluto_app_backend.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+// Remembers tokens whose signature has already been checked, so a client sending the same
+// bearer token on every request pays for HMAC verification once. Each entry lives exactly
+// until the token's own exp, so a cached token can never outlive its validity.
+@Component
+public class VerifiedTokenCache {
+
+    public record VerifiedToken(String username, Instant expiresAt) {}
+
+    private final JwtService jwtService;
+    private final Cache<String, VerifiedToken> verified;
+
+    public VerifiedTokenCache(JwtService jwtService,
+                              MeterRegistry meterRegistry,
+                              @Value("${pluto.security.token-cache.max-size:10000}") long maxSize) {
+        this.jwtService = jwtService;
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.creating((String token, VerifiedToken entry) ->
+                        Duration.between(Instant.now(), entry.expiresAt())))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "jwt.verified.tokens");
+    }
+
+    // Empty when the token is malformed, badly signed or expired
+    public Optional<VerifiedToken> verify(String token) {
+        VerifiedToken cached = verified.getIfPresent(token);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        try {
+            Claims claims = jwtService.extractAllClaims(token);
+            if (claims.getSubject() == null || claims.getExpiration() == null) {
+                return Optional.empty();
+            }
+            VerifiedToken entry = new VerifiedToken(claims.getSubject(), claims.getExpiration().toInstant());
+            verified.put(token, entry);
+            return Optional.of(entry);
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.pluto.chat.pluto_app_backend.service;
+
+import com.pluto.chat.pluto_app_backend.dto.MessagePage;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// Messages passed in here must already carry their room sequence number
+public interface MessageService {
+    Message append(String roomId, Message message);
+    void appendAll(String roomId, List<Message> messages);
+    boolean replace(String roomId, Message message);
+    List<Message> getMessages(String roomId);
+    MessagePage getPage(String roomId, Long before, int limit);
+    MessagePage getPageAfter(String roomId, long after, int limit);
+    Map<Long, Message> getBySeqs(String roomId, Collection<Long> seqs);
+}
@@ -1,14 +1,28 @@
 package com.pluto.chat.pluto_app_backend.service;
 
+import com.pluto.chat.pluto_app_backend.dto.MessagePage;
+import com.pluto.chat.pluto_app_backend.dto.SearchResults;
 import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.RetentionPolicy;
 import com.pluto.chat.pluto_app_backend.entities.Room;
 import java.util.List;
 import java.util.Optional;
 
 public interface RoomService {
     Room createOrJoinRoom(String roomId, String username);
+    Optional<Room> joinRoom(String roomId, String username);
     Optional<Room> getRoomByRoomId(String roomId);
     Room saveRoom(Room room);
     List<Room> getRoomsByIds(List<String> roomIds);
-    Room addMessage(String roomId, Message message);
+    Message addMessage(String roomId, Message message);
+    void updateMessage(String roomId, Message message);
+    Message assignSequence(String roomId, Message message);
+    void storeMessages(String roomId, List<Message> messages);
+    void importMessages(String roomId, List<Message> messages);
+    List<Message> getMessages(String roomId);
+    MessagePage getMessagePage(String roomId, Long before, int limit);
+    MessagePage getMessagesAfter(String roomId, long after, int limit);
+    SearchResults search(String roomId, String query, int offset, int limit);
+    void rebuildSearchIndex(String roomId);
+    Optional<Room> updateRetention(String roomId, RetentionPolicy retention);
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.pluto.chat.pluto_app_backend.service;
+
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.RoomSummary;
+import java.util.List;
+
+public interface RoomSummaryService {
+    void recordMessage(String roomId, long position, Message message);
+    void recordMemberCount(String roomId, int memberCount);
+    List<RoomSummary> getSummaries(List<String> roomIds);
+}
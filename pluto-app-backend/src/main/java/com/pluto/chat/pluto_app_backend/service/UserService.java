@@ -17,7 +17,7 @@ public interface UserService {
     // Existing methods
     User loginOrCreateUser(String username);
     Optional<User> getUserByUsername(String username);
-    User addRoomToUser(String username, String roomId);
+    void addRoomToUser(String username, String roomId);
 
         // Profile management methods
     ProfileResponse getProfile(String username);
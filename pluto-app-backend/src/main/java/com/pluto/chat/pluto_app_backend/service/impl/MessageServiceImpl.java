@@ -0,0 +1,125 @@
+package com.pluto.chat.pluto_app_backend.service.impl;
+
+import com.pluto.chat.pluto_app_backend.dto.MessagePage;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.MessageBucket;
+import com.pluto.chat.pluto_app_backend.repository.MessageBucketRepository;
+import com.pluto.chat.pluto_app_backend.service.MessageService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+@Service
+public class MessageServiceImpl implements MessageService {
+
+    private final MessageBucketRepository bucketRepository;
+
+    public MessageServiceImpl(MessageBucketRepository bucketRepository) {
+        this.bucketRepository = bucketRepository;
+    }
+
+    @Override
+    public Message append(String roomId, Message message) {
+        bucketRepository.append(roomId, MessageBucket.bucketFor(message.getSeq()), List.of(message));
+        return message;
+    }
+
+    // One $push per bucket touched; sequence numbers need not be contiguous or in order
+    @Override
+    public void appendAll(String roomId, List<Message> messages) {
+        Map<Long, List<Message>> byBucket = new TreeMap<>();
+        for (Message message : messages) {
+            byBucket.computeIfAbsent(MessageBucket.bucketFor(message.getSeq()), bucket -> new ArrayList<>())
+                    .add(message);
+        }
+        byBucket.forEach((bucket, bucketMessages) -> bucketRepository.append(roomId, bucket, bucketMessages));
+    }
+
+    @Override
+    public boolean replace(String roomId, Message message) {
+        return bucketRepository.replace(roomId, MessageBucket.bucketFor(message.getSeq()), message);
+    }
+
+    @Override
+    public List<Message> getMessages(String roomId) {
+        return bucketRepository.findByRoomIdOrderByBucketAsc(roomId).stream()
+                .flatMap(bucket -> bucket.ordered().stream())
+                .toList();
+    }
+
+    // Walks buckets newest first from the one holding `before - 1`. A page never spans more
+    // than limit / SIZE + 2 buckets, so the cost depends on the page size, not the history.
+    @Override
+    public MessagePage getPage(String roomId, Long before, int limit) {
+        PageRequest bucketsNeeded = PageRequest.of(0, limit / MessageBucket.SIZE + 2);
+        List<MessageBucket> buckets = before == null
+                ? bucketRepository.findByRoomIdOrderByBucketDesc(roomId, bucketsNeeded)
+                : bucketRepository.findByRoomIdAndBucketLessThanEqualOrderByBucketDesc(
+                        roomId, MessageBucket.bucketFor(before - 1), bucketsNeeded);
+
+        List<Message> page = new ArrayList<>(limit);
+        for (MessageBucket bucket : buckets) {
+            List<Message> messages = bucket.ordered();
+            for (int i = messages.size() - 1; i >= 0 && page.size() < limit; i--) {
+                Message message = messages.get(i);
+                if (before == null || message.getSeq() < before) {
+                    page.add(message);
+                }
+            }
+            if (page.size() == limit) {
+                break;
+            }
+        }
+
+        Collections.reverse(page);
+        return MessagePage.before(page);
+    }
+
+    // Replay for reconnecting clients: everything after `after`, oldest first
+    @Override
+    public MessagePage getPageAfter(String roomId, long after, int limit) {
+        List<MessageBucket> buckets = bucketRepository.findByRoomIdAndBucketGreaterThanEqualOrderByBucketAsc(
+                roomId, MessageBucket.bucketFor(after + 1), PageRequest.of(0, limit / MessageBucket.SIZE + 2));
+
+        List<Message> page = new ArrayList<>(limit);
+        for (MessageBucket bucket : buckets) {
+            for (Message message : bucket.ordered()) {
+                if (page.size() == limit) {
+                    break;
+                }
+                if (message.getSeq() > after) {
+                    page.add(message);
+                }
+            }
+        }
+        return MessagePage.after(page, limit);
+    }
+
+    // Scattered messages (search hits) in one query for all the buckets they live in
+    @Override
+    public Map<Long, Message> getBySeqs(String roomId, Collection<Long> seqs) {
+        Map<Long, Message> found = new HashMap<>();
+        if (seqs.isEmpty()) {
+            return found;
+        }
+        Set<Long> wanted = new HashSet<>(seqs);
+        Set<Long> buckets = new HashSet<>();
+        wanted.forEach(seq -> buckets.add(MessageBucket.bucketFor(seq)));
+        for (MessageBucket bucket : bucketRepository.findByRoomIdAndBucketIn(roomId, buckets)) {
+            for (Message message : bucket.ordered()) {
+                if (wanted.contains(message.getSeq())) {
+                    found.put(message.getSeq(), message);
+                }
+            }
+        }
+        return found;
+    }
+}
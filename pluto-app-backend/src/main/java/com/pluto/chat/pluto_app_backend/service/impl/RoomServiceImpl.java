@@ -1,49 +1,73 @@
 package com.pluto.chat.pluto_app_backend.service.impl;
 
+import com.pluto.chat.pluto_app_backend.archive.MessageArchive;
+import com.pluto.chat.pluto_app_backend.cache.RecentMessageCache;
+import com.pluto.chat.pluto_app_backend.dto.MessagePage;
+import com.pluto.chat.pluto_app_backend.dto.SearchHit;
+import com.pluto.chat.pluto_app_backend.dto.SearchResults;
 import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.RetentionPolicy;
 import com.pluto.chat.pluto_app_backend.entities.Room;
+import com.pluto.chat.pluto_app_backend.persistence.InFlightMessages;
 import com.pluto.chat.pluto_app_backend.repository.RoomRepository;
+import com.pluto.chat.pluto_app_backend.search.SearchIndex;
+import com.pluto.chat.pluto_app_backend.service.MessageService;
 import com.pluto.chat.pluto_app_backend.service.RoomService;
+import com.pluto.chat.pluto_app_backend.service.RoomSummaryService;
 import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 @Service
 public class RoomServiceImpl implements RoomService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SEARCH_PAGE_SIZE = 50;
+    // Ranking keeps offset + limit hits in memory, so deep pages are cut off
+    private static final int MAX_SEARCH_OFFSET = 1_000;
     
     private final RoomRepository roomRepository;
+    private final MessageService messageService;
+    private final RoomSummaryService roomSummaryService;
+    private final InFlightMessages inFlightMessages;
+    private final RecentMessageCache recentMessageCache;
+    private final SearchIndex searchIndex;
+    private final MessageArchive messageArchive;
 
-    public RoomServiceImpl(RoomRepository roomRepository) {
+    public RoomServiceImpl(RoomRepository roomRepository,
+                           MessageService messageService,
+                           RoomSummaryService roomSummaryService,
+                           InFlightMessages inFlightMessages,
+                           RecentMessageCache recentMessageCache,
+                           SearchIndex searchIndex,
+                           MessageArchive messageArchive) {
         this.roomRepository = roomRepository;
+        this.messageService = messageService;
+        this.roomSummaryService = roomSummaryService;
+        this.inFlightMessages = inFlightMessages;
+        this.recentMessageCache = recentMessageCache;
+        this.searchIndex = searchIndex;
+        this.messageArchive = messageArchive;
     }
 
     @Override
     public Room createOrJoinRoom(String roomId, String username) {
-        String normalized = roomId.toLowerCase().trim();
-        
-        // Try to find existing room
-        Optional<Room> existingRoom = roomRepository.findByRoomId(normalized);
-        
-        if (existingRoom.isPresent()) {
-            // Room exists, add user if not already a member
-            Room room = existingRoom.get();
-            if (!room.getMembers().contains(username)) {
-                room.getMembers().add(username);
-                return roomRepository.save(room);
-            }
-            return room;
-        }
-        
-        // Create new room
-        Room newRoom = Room.builder()
-                .roomId(normalized)
-                .members(new ArrayList<>(List.of(username)))
-                .messages(new ArrayList<>())
-                .build();
-        
-        return roomRepository.save(newRoom);
+        Room room = roomRepository.upsertMember(roomId.toLowerCase().trim(), username);
+        roomSummaryService.recordMemberCount(room.getRoomId(), room.getMembers().size());
+        return room;
+    }
+
+    @Override
+    public Optional<Room> joinRoom(String roomId, String username) {
+        Optional<Room> room = roomRepository.addMember(roomId.toLowerCase().trim(), username);
+        room.ifPresent(joined -> roomSummaryService.recordMemberCount(joined.getRoomId(), joined.getMembers().size()));
+        return room;
     }
 
     @Override
@@ -69,10 +93,200 @@ public class RoomServiceImpl implements RoomService {
     }
 
     @Override
-    public Room addMessage(String roomId, Message message) {
-        Room room = getRoomByRoomId(roomId)
+    public Message addMessage(String roomId, Message message) {
+        assignSequence(roomId, message);
+        storeMessages(roomId, List.of(message));
+        return message;
+    }
+
+    // The room counter hands out sequence numbers; this is also the only place we find out
+    // the room doesn't exist, before anything gets broadcast. From here on the message is
+    // visible to recent-history reads through the cache.
+    @Override
+    public Message assignSequence(String roomId, Message message) {
+        String normalized = roomId.toLowerCase().trim();
+        long seq = roomRepository.incrementMessageCount(normalized, 1)
                 .orElseThrow(() -> new RuntimeException("Room not found: " + roomId));
-        room.getMessages().add(message);
-        return roomRepository.save(room);
+        message.setSeq(seq);
+        recentMessageCache.add(normalized, message);
+        return message;
+    }
+
+    @Override
+    public void storeMessages(String roomId, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        String normalized = roomId.toLowerCase().trim();
+
+        messageService.appendAll(normalized, messages);
+        searchIndex.index(normalized, messages);
+
+        Message newest = messages.stream().max(Comparator.comparing(Message::getSeq)).orElseThrow();
+        roomSummaryService.recordMessage(normalized, newest.getSeq(), newest);
+    }
+
+    // History written elsewhere (an import), appended in the given order. The whole batch
+    // reserves its positions with one counter update, so live messages may land before or
+    // after it but never inside it. Not broadcast; cached recent history is dropped instead.
+    @Override
+    public void importMessages(String roomId, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        String normalized = roomId.toLowerCase().trim();
+        long last = roomRepository.incrementMessageCount(normalized, messages.size())
+                .orElseThrow(() -> new RuntimeException("Room not found: " + roomId));
+        long seq = last - messages.size() + 1;
+        for (Message message : messages) {
+            message.setSeq(seq++);
+            if (message.getTimestamp() == null) {
+                message.setTimestamp(LocalDateTime.now());
+            }
+        }
+        storeMessages(normalized, messages);
+        recentMessageCache.invalidate(normalized);
+    }
+
+    // Replaces an already stored message, matched by seq, in Mongo and in the cache
+    @Override
+    public void updateMessage(String roomId, Message message) {
+        String normalized = roomId.toLowerCase().trim();
+        if (!messageService.replace(normalized, message)) {
+            throw new RuntimeException("Message " + message.getSeq() + " not found in room " + roomId);
+        }
+        recentMessageCache.update(normalized, message);
+    }
+
+    // Archived history first, then what is still in buckets
+    @Override
+    public List<Message> getMessages(String roomId) {
+        String normalized = roomId.toLowerCase().trim();
+        return merge(messageService.getMessages(normalized), messageArchive.readAll(normalized));
+    }
+
+    @Override
+    public MessagePage getMessagePage(String roomId, Long before, int limit) {
+        String normalized = roomId.toLowerCase().trim();
+        int pageSize = pageSize(limit);
+
+        Optional<List<Message>> cached = recentMessageCache.latest(normalized, before, pageSize);
+        if (cached.isPresent()) {
+            return MessagePage.before(cached.get());
+        }
+
+        // Taken before reading Mongo: a message the pipeline writes and drops from in-flight
+        // while the read runs is then in one of the two
+        List<Message> pending = inFlightMessages.between(normalized, null, before);
+        MessagePage page = messageService.getPage(normalized, before, pageSize);
+        if (!pending.isEmpty()) {
+            // Keep the newest pageSize of stored + not-yet-stored messages
+            List<Message> merged = merge(page.getMessages(), pending);
+            page = MessagePage.before(merged.subList(Math.max(0, merged.size() - pageSize), merged.size()));
+        }
+
+        // Ran out of hot history before the page filled: the rest may be archived
+        List<Message> hot = page.getMessages();
+        Long oldest = hot.isEmpty() ? before : hot.get(0).getSeq();
+        if (hot.size() < pageSize && (oldest == null || oldest > 1)) {
+            List<Message> archived = messageArchive.readBefore(normalized,
+                    oldest != null ? oldest : Long.MAX_VALUE, pageSize - hot.size());
+            if (!archived.isEmpty()) {
+                page = MessagePage.before(merge(hot, archived));
+            }
+        }
+
+        requireRoomIfEmpty(page, normalized, roomId);
+        if (before == null) {
+            recentMessageCache.seed(normalized, page.getMessages());
+        }
+        return page;
+    }
+
+    @Override
+    public MessagePage getMessagesAfter(String roomId, long after, int limit) {
+        String normalized = roomId.toLowerCase().trim();
+        int pageSize = pageSize(limit);
+
+        Optional<List<Message>> cached = recentMessageCache.after(normalized, after, pageSize);
+        if (cached.isPresent()) {
+            return MessagePage.after(cached.get(), pageSize);
+        }
+
+        // Before the Mongo read, for the same reason as in getMessagePage
+        List<Message> pending = inFlightMessages.between(normalized, after, null);
+        MessagePage page = messageService.getPageAfter(normalized, after, pageSize);
+        if (!pending.isEmpty()) {
+            List<Message> merged = merge(page.getMessages(), pending);
+            page = MessagePage.after(merged.subList(0, Math.min(merged.size(), pageSize)), pageSize);
+        }
+
+        // Hot history doesn't reach back to `after`: the start of the page is archived
+        List<Message> hot = page.getMessages();
+        if (hot.isEmpty() || hot.get(0).getSeq() > after + 1) {
+            List<Message> archived = messageArchive.readAfter(normalized, after, pageSize);
+            if (!archived.isEmpty()) {
+                List<Message> merged = merge(hot, archived);
+                page = MessagePage.after(merged.subList(0, Math.min(merged.size(), pageSize)), pageSize);
+            }
+        }
+
+        requireRoomIfEmpty(page, normalized, roomId);
+        return page;
+    }
+
+    // Ranked by the in-memory index; only the page's messages are read from Mongo
+    @Override
+    public SearchResults search(String roomId, String query, int offset, int limit) {
+        String normalized = roomId.toLowerCase().trim();
+        int pageSize = Math.max(1, Math.min(limit, MAX_SEARCH_PAGE_SIZE));
+        int from = Math.min(Math.max(0, offset), MAX_SEARCH_OFFSET);
+
+        SearchIndex.Results results = searchIndex.search(normalized, query, from, pageSize);
+        if (results.total() == 0 && !roomRepository.existsByRoomId(normalized)) {
+            throw new RuntimeException("Room not found: " + roomId);
+        }
+
+        Map<Long, Message> messages = messageService.getBySeqs(normalized,
+                results.hits().stream().map(SearchIndex.Hit::seq).toList());
+        List<SearchHit> hits = results.hits().stream()
+                .filter(hit -> messages.containsKey(hit.seq()))
+                .map(hit -> new SearchHit(messages.get(hit.seq()), hit.score()))
+                .toList();
+        int next = from + results.hits().size();
+        return SearchResults.builder()
+                .query(query)
+                .hits(hits)
+                .total(results.total())
+                .nextOffset(next < results.total() && next <= MAX_SEARCH_OFFSET ? next : null)
+                .build();
+    }
+
+    @Override
+    public void rebuildSearchIndex(String roomId) {
+        searchIndex.rebuild(roomId.toLowerCase().trim());
+    }
+
+    @Override
+    public Optional<Room> updateRetention(String roomId, RetentionPolicy retention) {
+        return roomRepository.setRetention(roomId.toLowerCase().trim(), retention);
+    }
+
+    private static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    private static List<Message> merge(List<Message> stored, List<Message> pending) {
+        TreeMap<Long, Message> bySeq = new TreeMap<>();
+        stored.forEach(message -> bySeq.put(message.getSeq(), message));
+        pending.forEach(message -> bySeq.putIfAbsent(message.getSeq(), message));
+        return new ArrayList<>(bySeq.values());
+    }
+
+    // An empty page is the only case where we need to tell "no history" from "no room"
+    private void requireRoomIfEmpty(MessagePage page, String normalized, String roomId) {
+        if (page.getMessages().isEmpty() && !roomRepository.existsByRoomId(normalized)) {
+            throw new RuntimeException("Room not found: " + roomId);
+        }
     }
-}
\ No newline at end of file
+}
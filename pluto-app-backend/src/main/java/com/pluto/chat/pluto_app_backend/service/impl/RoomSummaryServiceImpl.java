@@ -0,0 +1,104 @@
+package com.pluto.chat.pluto_app_backend.service.impl;
+
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.MessageBucket;
+import com.pluto.chat.pluto_app_backend.entities.Room;
+import com.pluto.chat.pluto_app_backend.entities.RoomSummary;
+import com.pluto.chat.pluto_app_backend.repository.MessageBucketRepository;
+import com.pluto.chat.pluto_app_backend.repository.RoomRepository;
+import com.pluto.chat.pluto_app_backend.repository.RoomSummaryRepository;
+import com.pluto.chat.pluto_app_backend.service.RoomSummaryService;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+public class RoomSummaryServiceImpl implements RoomSummaryService {
+
+    private static final Comparator<RoomSummary> MOST_RECENT_FIRST = Comparator.comparing(
+            RoomSummary::getLastActivityAt, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final RoomSummaryRepository summaryRepository;
+    private final RoomRepository roomRepository;
+    private final MessageBucketRepository bucketRepository;
+
+    public RoomSummaryServiceImpl(RoomSummaryRepository summaryRepository,
+                                  RoomRepository roomRepository,
+                                  MessageBucketRepository bucketRepository) {
+        this.summaryRepository = summaryRepository;
+        this.roomRepository = roomRepository;
+        this.bucketRepository = bucketRepository;
+    }
+
+    @Override
+    public void recordMessage(String roomId, long position, Message message) {
+        summaryRepository.recordMessage(roomId, position, message);
+    }
+
+    @Override
+    public void recordMemberCount(String roomId, int memberCount) {
+        summaryRepository.recordMemberCount(roomId, memberCount);
+    }
+
+    @Override
+    public List<RoomSummary> getSummaries(List<String> roomIds) {
+        if (roomIds == null || roomIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> normalizedIds = roomIds.stream()
+                .map(id -> id.toLowerCase().trim())
+                .distinct()
+                .toList();
+
+        List<RoomSummary> summaries = new ArrayList<>(summaryRepository.findAllByRoomIdIn(
+                normalizedIds, Sort.by(Sort.Direction.DESC, "lastActivityAt")));
+
+        if (summaries.size() == normalizedIds.size()) {
+            return summaries;
+        }
+
+        // Rooms created before summaries existed get one built the first time they are listed
+        Set<String> found = summaries.stream().map(RoomSummary::getRoomId).collect(Collectors.toSet());
+        List<String> missing = normalizedIds.stream().filter(id -> !found.contains(id)).toList();
+        for (Room room : roomRepository.findAllByRoomIdIn(missing)) {
+            summaries.add(backfill(room));
+        }
+        summaries.sort(MOST_RECENT_FIRST);
+        return summaries;
+    }
+
+    private RoomSummary backfill(Room room) {
+        RoomSummary summary = RoomSummary.builder()
+                .roomId(room.getRoomId())
+                .memberCount(room.getMembers() != null ? room.getMembers().size() : 0)
+                .messageCount(room.getMessageCount())
+                .build();
+
+        bucketRepository.findByRoomIdOrderByBucketDesc(room.getRoomId(), PageRequest.of(0, 1)).stream()
+                .findFirst()
+                .map(MessageBucket::getMessages)
+                .filter(messages -> !messages.isEmpty())
+                .map(messages -> messages.get(messages.size() - 1))
+                .ifPresent(last -> {
+                    summary.setLastMessagePreview(RoomSummary.preview(last));
+                    summary.setLastSender(last.getSender());
+                    summary.setLastMessageType(last.getType());
+                    summary.setLastActivityAt(last.getTimestamp());
+                });
+
+        try {
+            return summaryRepository.insert(summary);
+        } catch (DuplicateKeyException e) {
+            // Another request backfilled it first
+            return summary;
+        }
+    }
+}
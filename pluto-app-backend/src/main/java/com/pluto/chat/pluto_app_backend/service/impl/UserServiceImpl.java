@@ -7,9 +7,9 @@ import com.pluto.chat.pluto_app_backend.dto.LoginRequest;
 import com.pluto.chat.pluto_app_backend.dto.RegisterRequest;
 import com.pluto.chat.pluto_app_backend.entities.User;
 import com.pluto.chat.pluto_app_backend.repository.UserRepository;
+import com.pluto.chat.pluto_app_backend.security.PasswordHasher;
 import com.pluto.chat.pluto_app_backend.service.JwtService;
 import com.pluto.chat.pluto_app_backend.service.UserService;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -20,14 +20,14 @@ import java.util.Optional;
 public class UserServiceImpl implements UserService {
     
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;  // bcrypt runs on its own bounded pool
     private final JwtService jwtService;
 
     public UserServiceImpl(UserRepository userRepository, 
-                          PasswordEncoder passwordEncoder,
+                          PasswordHasher passwordHasher,
                           JwtService jwtService) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHasher = passwordHasher;
         this.jwtService = jwtService;
     }
 
@@ -52,7 +52,7 @@ public class UserServiceImpl implements UserService {
         User user = User.builder()
                 .username(request.getUsername().trim())
                 .email(request.getEmail().trim().toLowerCase())
-                .passwordHash(passwordEncoder.encode(request.getPassword()))
+                .passwordHash(passwordHasher.encode(request.getPassword()))
                 .createdAt(LocalDateTime.now())
                 .joinedRooms(new ArrayList<>())
                 .build();
@@ -78,10 +78,14 @@ public class UserServiceImpl implements UserService {
                 .orElseThrow(() -> new RuntimeException("Invalid username or password"));
 
         // Check password
-        if (!passwordEncoder.matches(request.getPassword(), user.getPasswordHash())) {
+        if (!passwordHasher.matches(request.getPassword(), user.getPasswordHash())) {
             throw new RuntimeException("Invalid username or password");
         }
 
+        // Hashes from an older cost setting are re-encoded in the background
+        passwordHasher.upgradeIfNeeded(request.getPassword(), user.getPasswordHash(),
+                (oldHash, newHash) -> userRepository.replacePasswordHash(user.getId(), oldHash, newHash));
+
         // Generate JWT token
         String token = jwtService.generateToken(user.getUsername());
 
@@ -118,18 +122,10 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public User addRoomToUser(String username, String roomId) {
-        User user = getUserByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found: " + username));
-        
-        String normalizedRoomId = roomId.toLowerCase().trim();
-        
-        if (!user.getJoinedRooms().contains(normalizedRoomId)) {
-            user.getJoinedRooms().add(normalizedRoomId);
-            return userRepository.save(user);
+    public void addRoomToUser(String username, String roomId) {
+        if (!userRepository.addJoinedRoom(username.trim(), roomId.toLowerCase().trim())) {
+            throw new RuntimeException("User not found: " + username);
         }
-        
-        return user;
     }
     @Override
     public ProfileResponse getProfile(String username) {
@@ -197,7 +193,7 @@ public class UserServiceImpl implements UserService {
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         // Verify current password
-        if (!passwordEncoder.matches(request.getCurrentPassword(), user.getPasswordHash())) {
+        if (!passwordHasher.matches(request.getCurrentPassword(), user.getPasswordHash())) {
             throw new RuntimeException("Current password is incorrect");
         }
 
@@ -212,7 +208,7 @@ public class UserServiceImpl implements UserService {
         }
 
         // Update password
-        user.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
+        user.setPasswordHash(passwordHasher.encode(request.getNewPassword()));
         userRepository.save(user);
     }
 
@@ -222,7 +218,7 @@ public class UserServiceImpl implements UserService {
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         // Verify password before deletion
-        if (!passwordEncoder.matches(password, user.getPasswordHash())) {
+        if (!passwordHasher.matches(password, user.getPasswordHash())) {
             throw new RuntimeException("Password is incorrect");
         }
 
@@ -0,0 +1,272 @@
+package com.pluto.chat.pluto_app_backend.archive;
+
+import com.pluto.chat.pluto_app_backend.cache.RecentMessageCache;
+import com.pluto.chat.pluto_app_backend.dto.ImportResult;
+import com.pluto.chat.pluto_app_backend.entities.ArchiveSegment;
+import com.pluto.chat.pluto_app_backend.entities.MediaBlob;
+import com.pluto.chat.pluto_app_backend.entities.MediaStatus;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.MessageBucket;
+import com.pluto.chat.pluto_app_backend.entities.RetentionPolicy;
+import com.pluto.chat.pluto_app_backend.media.LocalMediaStore;
+import com.pluto.chat.pluto_app_backend.media.MediaStore;
+import com.pluto.chat.pluto_app_backend.persistence.InFlightMessages;
+import com.pluto.chat.pluto_app_backend.repository.ArchiveSegmentRepository;
+import com.pluto.chat.pluto_app_backend.repository.MediaBlobRepository;
+import com.pluto.chat.pluto_app_backend.repository.MessageBucketRepository;
+import com.pluto.chat.pluto_app_backend.search.SearchIndex;
+import com.pluto.chat.pluto_app_backend.service.impl.MessageServiceImpl;
+import com.pluto.chat.pluto_app_backend.service.impl.RoomServiceImpl;
+import com.pluto.chat.pluto_app_backend.service.impl.RoomSummaryServiceImpl;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataMongoTest
+@Import({ArchiveCompactor.class, MessageArchive.class, RoomHistoryTransfer.class, LocalArchiveStore.class, RoomServiceImpl.class,
+        MessageServiceImpl.class, RoomSummaryServiceImpl.class, InFlightMessages.class, RecentMessageCache.class,
+        SearchIndex.class, LocalMediaStore.class, SimpleMeterRegistry.class})
+class ArchiveCompactorTests {
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+
+    @Autowired
+    private ArchiveCompactor compactor;
+
+    @Autowired
+    private RoomServiceImpl roomService;
+
+    @Autowired
+    private RoomHistoryTransfer historyTransfer;
+
+    @Autowired
+    private MessageBucketRepository bucketRepository;
+
+    @Autowired
+    private MessageArchive archive;
+
+    @Autowired
+    private ArchiveSegmentRepository segmentRepository;
+
+    @Autowired
+    private LocalMediaStore mediaStore;
+
+    @Autowired
+    private MediaBlobRepository blobRepository;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        mongod = Mongod.instance().start(Version.Main.V7_0);
+        ServerAddress address = mongod.current().getServerAddress();
+        registry.add("spring.data.mongodb.uri",
+                () -> "mongodb://" + address.getHost() + ":" + address.getPort() + "/pluto-test");
+        registry.add("pluto.search.dir", () -> tempDir("pluto-test-search"));
+        registry.add("pluto.search.rebuild-if-missing", () -> "false");
+        registry.add("pluto.archive.local.dir", () -> tempDir("pluto-test-archive"));
+        registry.add("pluto.media.local.dir", () -> tempDir("pluto-test-media"));
+        // Passes are run by the test, not on a schedule
+        registry.add("pluto.archive.enabled", () -> "false");
+        registry.add("pluto.archive.max-messages-per-second", () -> "0");
+    }
+
+    private static String tempDir(String prefix) {
+        try {
+            return Files.createTempDirectory(prefix).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        mongod.close();
+    }
+
+    @Test
+    void archivedHistoryStaysReadable() {
+        roomService.createOrJoinRoom("old-room", "owner");
+        for (int i = 1; i <= 350; i++) {
+            roomService.addMessage("old-room", Message.builder().sender("owner").content("message " + i).build());
+        }
+        roomService.updateRetention("old-room", RetentionPolicy.builder().maxMessages(100L).build());
+
+        compactor.compactAll();
+
+        // Buckets holding 1-200 are entirely behind the newest 100; 201-300 is not
+        assertThat(bucketRepository.findByRoomIdOrderByBucketAsc("old-room"))
+                .extracting(MessageBucket::getBucket)
+                .containsExactly(2L, 3L);
+
+        assertThat(roomService.getMessagePage("old-room", 150L, 100).getMessages())
+                .extracting(Message::getSeq)
+                .containsExactlyElementsOf(LongStream.range(50, 150).boxed().toList());
+        assertThat(roomService.getMessagesAfter("old-room", 180, 50).getMessages())
+                .extracting(Message::getSeq)
+                .containsExactlyElementsOf(LongStream.rangeClosed(181, 230).boxed().toList());
+        assertThat(roomService.getMessages("old-room"))
+                .extracting(Message::getSeq)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, 350).boxed().toList());
+
+        // A second pass finds nothing more to move
+        compactor.compactAll();
+        assertThat(bucketRepository.findByRoomIdOrderByBucketAsc("old-room")).hasSize(2);
+    }
+
+    @Test
+    void aPassAfterACrashDoesNotArchiveTheSameBucketsAgain() throws IOException {
+        roomService.createOrJoinRoom("crashed-room", "owner");
+        for (int i = 1; i <= 350; i++) {
+            roomService.addMessage("crashed-room", Message.builder().sender("owner").content("message " + i).build());
+        }
+        roomService.updateRetention("crashed-room", RetentionPolicy.builder().maxMessages(100L).build());
+        // A pass that wrote the segment for 1-200 and died having deleted only the first bucket
+        List<Message> cold = bucketRepository.findByRoomIdOrderByBucketAsc("crashed-room").stream()
+                .limit(2)
+                .flatMap(bucket -> bucket.ordered().stream())
+                .toList();
+        archive.write("crashed-room", cold);
+        bucketRepository.deleteByRoomIdAndBucketLessThanEqual("crashed-room", 0);
+
+        compactor.compactAll();
+
+        assertThat(segmentRepository.findByRoomIdOrderByFirstSeqAsc("crashed-room"))
+                .extracting(ArchiveSegment::getFirstSeq, ArchiveSegment::getLastSeq)
+                .containsExactly(tuple(1L, 200L));
+        assertThat(bucketRepository.findByRoomIdOrderByBucketAsc("crashed-room"))
+                .extracting(MessageBucket::getBucket)
+                .containsExactly(2L, 3L);
+        assertThat(roomService.getMessages("crashed-room"))
+                .extracting(Message::getSeq)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, 350).boxed().toList());
+    }
+
+    @Test
+    void overlappingSegmentsAreReadOnce() throws IOException {
+        // As left by a crash before segments started after the last archived seq
+        archive.write("overlap-room", messages(1, 200));
+        archive.write("overlap-room", messages(101, 300));
+        List<Long> all = LongStream.rangeClosed(1, 300).boxed().toList();
+
+        assertThat(archive.readAll("overlap-room")).extracting(Message::getSeq).containsExactlyElementsOf(all);
+        assertThat(archive.readBefore("overlap-room", 301, 300)).extracting(Message::getSeq).containsExactlyElementsOf(all);
+        assertThat(archive.readAfter("overlap-room", 0, 300)).extracting(Message::getSeq).containsExactlyElementsOf(all);
+
+        ByteArrayOutputStream copied = new ByteArrayOutputStream();
+        assertThat(archive.copyTo("overlap-room", copied)).isEqualTo(300);
+        assertThat(copied.toString(StandardCharsets.UTF_8).lines()).hasSize(300);
+    }
+
+    private static List<Message> messages(long firstSeq, long lastSeq) {
+        return LongStream.rangeClosed(firstSeq, lastSeq)
+                .mapToObj(seq -> Message.builder().seq(seq).sender("owner").content("message " + seq).build())
+                .toList();
+    }
+
+    @Test
+    void exportRestoresIntoAnotherRoom() throws IOException {
+        roomService.createOrJoinRoom("export-room", "owner");
+        for (int i = 1; i <= 250; i++) {
+            roomService.addMessage("export-room", Message.builder().sender("owner").content("message " + i).build());
+        }
+        roomService.updateRetention("export-room", RetentionPolicy.builder().maxMessages(100L).build());
+        compactor.compactAll();
+        assertThat(bucketRepository.findByRoomIdOrderByBucketAsc("export-room")).hasSize(2);
+
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        historyTransfer.export("export-room", exported, true);
+
+        roomService.createOrJoinRoom("restored-room", "owner");
+        ImportResult result = historyTransfer.importHistory("restored-room",
+                new ByteArrayInputStream(exported.toByteArray()), "owner");
+
+        assertThat(result.getImported()).isEqualTo(250);
+        assertThat(result.getFirstSeq()).isEqualTo(1);
+        assertThat(result.getLastSeq()).isEqualTo(250);
+        assertThat(roomService.getMessages("restored-room"))
+                .extracting(Message::getContent)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, 250).mapToObj(i -> "message " + i).toList());
+    }
+
+    @Test
+    void importStopsAtTheFirstBadLine() {
+        roomService.createOrJoinRoom("import-room", "owner");
+        String body = """
+                {"sender":"owner","content":"one"}
+                {"sender":"owner","content":"two"}
+                not json
+                {"sender":"owner","content":"four"}
+                """;
+
+        assertThatThrownBy(() -> historyTransfer.importHistory("import-room",
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), "owner"))
+                .isInstanceOfSatisfying(HistoryImportException.class, e -> assertThat(e.getLine()).isEqualTo(3));
+    }
+
+    @Test
+    void importRecordsTheImporterAndOnlyKeepsMediaThisStoreHolds() throws IOException {
+        roomService.createOrJoinRoom("media-import-room", "owner");
+        Path file = Files.createTempFile("upload-", ".tmp");
+        Files.writeString(file, "a photo", StandardCharsets.UTF_8);
+        String stored = mediaStore.store(new MediaStore.MediaUpload(file, "photo.jpg", "image/jpeg", Files.size(file))).url();
+        String body = """
+                {"sender":"ceo","content":"hi","type":"TEXT"}
+                {"sender":"ceo","type":"IMAGE","mediaUrl":"%s","mediaStatus":"READY"}
+                {"sender":"ceo","type":"IMAGE","mediaUrl":"https://elsewhere.example/x.jpg","mediaStatus":"READY"}
+                """.formatted(stored);
+
+        historyTransfer.importHistory("media-import-room",
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), "mallory");
+
+        assertThat(roomService.getMessages("media-import-room"))
+                .extracting(Message::getImportedBy, Message::getMediaUrl, Message::getMediaStatus)
+                .containsExactly(
+                        tuple("mallory", null, null),
+                        tuple("mallory", stored, MediaStatus.READY),
+                        tuple("mallory", null, MediaStatus.FAILED));
+        // The imported message holds a reference of its own
+        assertThat(blobRepository.findById(stored.substring(LocalMediaStore.URL_PREFIX.length()))).get()
+                .extracting(MediaBlob::getRefCount).isEqualTo(2L);
+    }
+
+    @Test
+    void aFailedImportGivesItsMediaReferencesBack() throws IOException {
+        roomService.createOrJoinRoom("failed-import-room", "owner");
+        Path file = Files.createTempFile("upload-", ".tmp");
+        Files.writeString(file, "another photo", StandardCharsets.UTF_8);
+        String stored = mediaStore.store(new MediaStore.MediaUpload(file, "photo.jpg", "image/jpeg", Files.size(file))).url();
+        String body = """
+                {"sender":"owner","type":"IMAGE","mediaUrl":"%s"}
+                not json
+                """.formatted(stored);
+
+        assertThatThrownBy(() -> historyTransfer.importHistory("failed-import-room",
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), "owner"))
+                .isInstanceOf(HistoryImportException.class);
+        assertThat(blobRepository.findById(stored.substring(LocalMediaStore.URL_PREFIX.length()))).get()
+                .extracting(MediaBlob::getRefCount).isEqualTo(1L);
+    }
+}
@@ -0,0 +1,189 @@
+package com.pluto.chat.pluto_app_backend.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pluto.chat.pluto_app_backend.cache.RecentMessageCache;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+class ClusterFanoutTests {
+
+    private static final Duration SYNC_INTERVAL = Duration.ofMillis(20);
+    private static final Duration REORDER_WINDOW = Duration.ofMillis(50);
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final List<ClusterFrame> sent = new CopyOnWriteArrayList<>();
+    private final List<org.springframework.messaging.Message<?>> delivered = new CopyOnWriteArrayList<>();
+
+    private RecentMessageCache cache;
+    private ClusterFanout fanout;
+
+    @BeforeEach
+    void setUp() {
+        ClusterTransport transport = new ClusterTransport() {
+            @Override
+            public String localNode() {
+                return "a";
+            }
+
+            @Override
+            public Collection<String> peers() {
+                return List.of("b");
+            }
+
+            @Override
+            public void send(String peer, ClusterFrame frame) {
+                sent.add(frame);
+            }
+
+            @Override
+            public void onReceive(Consumer<ClusterFrame> handler) {
+            }
+        };
+        MessageChannel brokerChannel = (message, timeout) -> delivered.add(message);
+        cache = new RecentMessageCache(new SimpleMeterRegistry(), 100, DataSize.ofMegabytes(1));
+        fanout = new ClusterFanout(transport, brokerChannel, cache, objectMapper, SYNC_INTERVAL, REORDER_WINDOW);
+    }
+
+    @Test
+    void duplicateFramesAreDeliveredOnce() throws Exception {
+        ClusterFrame frame = broadcast(1, 1);
+        fanout.onFrame(frame);
+        fanout.onFrame(frame);
+
+        assertThat(deliveredSeqs()).containsExactly("1");
+    }
+
+    @Test
+    void aRestartedPeerIsNotTakenForItsPreviousBoot() throws Exception {
+        fanout.onFrame(broadcast("boot-1", 1, 1));
+        fanout.onFrame(broadcast("boot-1", 2, 2));
+        // Same node, restarted: its frame ids start again at 1
+        fanout.onFrame(broadcast("boot-2", 1, 3));
+        fanout.onFrame(broadcast("boot-2", 2, 4));
+
+        assertThat(deliveredSeqs()).containsExactly("1", "2", "3", "4");
+    }
+
+    @Test
+    void earlyArrivalsWaitForTheGap() throws Exception {
+        fanout.onFrame(broadcast(1, 1));
+        fanout.onFrame(broadcast(2, 3));
+        assertThat(deliveredSeqs()).containsExactly("1");
+
+        fanout.onFrame(broadcast(3, 2));
+        assertThat(deliveredSeqs()).containsExactly("1", "2", "3");
+    }
+
+    @Test
+    void aGapThatNeverFillsIsGivenUpAfterTheWindow() throws Exception {
+        fanout.onFrame(broadcast(1, 1));
+        fanout.onFrame(broadcast(2, 3));
+        fanout.releaseExpiredHolds();
+        assertThat(deliveredSeqs()).containsExactly("1");
+
+        Thread.sleep(REORDER_WINDOW.toMillis() * 2);
+        fanout.releaseExpiredHolds();
+        assertThat(deliveredSeqs()).containsExactly("1", "3");
+    }
+
+    @Test
+    void peersThatGoQuietStopReceivingBroadcasts() throws Exception {
+        fanout.onFrame(ClusterFrame.interest("b", Set.of("lobby")));
+        fanout.preSend(localBroadcast(1), brokerChannel());
+        assertThat(sentBroadcasts()).hasSize(1);
+
+        Thread.sleep(SYNC_INTERVAL.toMillis() * 5);
+        fanout.syncInterest();
+        fanout.preSend(localBroadcast(2), brokerChannel());
+        assertThat(sentBroadcasts()).hasSize(1);
+    }
+
+    @Test
+    void interestWithoutRoomsIsEmptyInterest() {
+        assertThatCode(() -> fanout.onFrame(new ClusterFrame(ClusterFrame.Type.INTEREST, "b", null, 0, null, null, null, null)))
+                .doesNotThrowAnyException();
+        fanout.preSend(localBroadcast(1), brokerChannel());
+        assertThat(sentBroadcasts()).isEmpty();
+    }
+
+    @Test
+    void onlyRoomsWithLocalSubscribersAreCached() throws Exception {
+        // No subscribers: relays for the room stop, so neither REST reads nor sends may fill the cache
+        cache.seed("lobby", List.of(message(1)));
+        cache.add("lobby", message(2));
+        assertThat(cache.latest("lobby", null, 2)).isEmpty();
+        assertThat(cache.after("lobby", 1, 10)).isEmpty();
+
+        fanout.onSubscribe(subscribe("lobby"));
+        fanout.onFrame(broadcast(1, 1));
+        fanout.onFrame(broadcast(2, 2));
+        assertThat(cache.latest("lobby", null, 2)).get()
+                .extracting(list -> list.stream().map(Message::getSeq).toList())
+                .isEqualTo(List.of(1L, 2L));
+        // A client ahead of the cache is not told there is nothing new
+        assertThat(cache.after("lobby", 5, 10)).isEmpty();
+    }
+
+    private ClusterFrame broadcast(long id, long seq) throws Exception {
+        return broadcast("boot-1", id, seq);
+    }
+
+    private ClusterFrame broadcast(String epoch, long id, long seq) throws Exception {
+        return ClusterFrame.broadcast("b", epoch, id, "/topic/room/lobby", Map.of("seq", String.valueOf(seq)),
+                objectMapper.writeValueAsBytes(message(seq)));
+    }
+
+    private static Message message(long seq) {
+        return Message.builder().seq(seq).sender("bob").content("message " + seq).build();
+    }
+
+    private static org.springframework.messaging.Message<byte[]> localBroadcast(long seq) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination("/topic/room/lobby");
+        accessor.setNativeHeader("seq", String.valueOf(seq));
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static SessionSubscribeEvent subscribe(String roomId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId("session-1");
+        accessor.setSubscriptionId("sub-1");
+        accessor.setDestination("/topic/room/" + roomId);
+        return new SessionSubscribeEvent(ClusterFanoutTests.class,
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private MessageChannel brokerChannel() {
+        return (message, timeout) -> true;
+    }
+
+    private List<String> deliveredSeqs() {
+        return delivered.stream()
+                .map(message -> SimpMessageHeaderAccessor.wrap(message).getFirstNativeHeader("seq"))
+                .toList();
+    }
+
+    private List<ClusterFrame> sentBroadcasts() {
+        return sent.stream().filter(frame -> frame.type() == ClusterFrame.Type.BROADCAST).toList();
+    }
+}
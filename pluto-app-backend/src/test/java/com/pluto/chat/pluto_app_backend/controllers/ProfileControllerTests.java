@@ -0,0 +1,44 @@
+package com.pluto.chat.pluto_app_backend.controllers;
+
+import com.pluto.chat.pluto_app_backend.dto.ChangePasswordRequest;
+import com.pluto.chat.pluto_app_backend.dto.UpdateProfileRequest;
+import com.pluto.chat.pluto_app_backend.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.security.Principal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class ProfileControllerTests {
+
+    private final UserService userService = mock(UserService.class);
+    private final ProfileController controller = new ProfileController(userService);
+    private final Principal mallory = () -> "mallory";
+
+    @Test
+    void accountsCanOnlyBeChangedByTheirOwner() {
+        assertThat(controller.updateProfile("alice", new UpdateProfileRequest(), mallory).getStatusCode())
+                .isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(controller.changePassword("alice", new ChangePasswordRequest(), mallory).getStatusCode())
+                .isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(controller.deleteAccount("alice", Map.of("password", "x"), mallory).getStatusCode())
+                .isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(controller.deleteAccount("alice", Map.of("password", "x"), null).getStatusCode())
+                .isEqualTo(HttpStatus.FORBIDDEN);
+
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void theOwnerCanDeleteTheirAccount() {
+        assertThat(controller.deleteAccount("alice", Map.of("password", "x"), () -> "alice").getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+
+        verify(userService).deleteAccount("alice", "x");
+    }
+}
@@ -0,0 +1,57 @@
+package com.pluto.chat.pluto_app_backend.controllers;
+
+import com.pluto.chat.pluto_app_backend.dto.ReadRequest;
+import com.pluto.chat.pluto_app_backend.entities.Room;
+import com.pluto.chat.pluto_app_backend.readmarker.ReadMarkers;
+import com.pluto.chat.pluto_app_backend.service.RoomService;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReadMarkerControllerTests {
+
+    private final RoomService roomService = mock(RoomService.class);
+    private final ReadMarkers readMarkers = mock(ReadMarkers.class);
+    private final ReadMarkerController controller = new ReadMarkerController(readMarkers, roomService);
+
+    @Test
+    void reportsPastTheLastMessageAreClamped() {
+        Room room = new Room();
+        room.setRoomId("lobby");
+        room.setMessageCount(12);
+        room.getMembers().add("alice");
+        when(roomService.getRoomByRoomId("lobby")).thenReturn(Optional.of(room));
+
+        controller.read("lobby", read(Long.MAX_VALUE), () -> "alice");
+
+        verify(readMarkers).markRead("alice", "lobby", 12L);
+    }
+
+    @Test
+    void reportsForUnknownRoomsOrFromNonMembersAreDropped() {
+        Room room = new Room();
+        room.setRoomId("lobby");
+        room.setMessageCount(12);
+        room.getMembers().add("alice");
+        when(roomService.getRoomByRoomId("lobby")).thenReturn(Optional.of(room));
+        when(roomService.getRoomByRoomId("nowhere")).thenReturn(Optional.empty());
+
+        controller.read("lobby", read(5), () -> "mallory");
+        controller.read("nowhere", read(5), () -> "alice");
+
+        verify(readMarkers, never()).markRead(anyString(), anyString(), anyLong());
+    }
+
+    private static ReadRequest read(long seq) {
+        ReadRequest request = new ReadRequest();
+        request.setSeq(seq);
+        return request;
+    }
+}
@@ -0,0 +1,132 @@
+package com.pluto.chat.pluto_app_backend.controller;
+
+import com.pluto.chat.pluto_app_backend.archive.RoomHistoryTransfer;
+import com.pluto.chat.pluto_app_backend.dto.CreateRoomRequest;
+import com.pluto.chat.pluto_app_backend.dto.MessageRequest;
+import com.pluto.chat.pluto_app_backend.dto.ReadRequest;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.Room;
+import com.pluto.chat.pluto_app_backend.readmarker.ReadMarkers;
+import com.pluto.chat.pluto_app_backend.service.RoomService;
+import com.pluto.chat.pluto_app_backend.service.RoomSummaryService;
+import com.pluto.chat.pluto_app_backend.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RoomControllerTests {
+
+    private final RoomService roomService = mock(RoomService.class);
+    private final UserService userService = mock(UserService.class);
+    private final ReadMarkers readMarkers = mock(ReadMarkers.class);
+    private final RoomController controller = new RoomController(roomService, userService,
+            mock(RoomSummaryService.class), mock(RoomHistoryTransfer.class), readMarkers, Duration.ofMinutes(30));
+
+    private final Principal alice = () -> "alice";
+
+    @Test
+    void messageIsPostedAsTheCallerWhateverTheBodySays() {
+        when(roomService.addMessage(eq("lobby"), any())).thenAnswer(invocation -> invocation.getArgument(1));
+        MessageRequest request = new MessageRequest();
+        request.setSender("mallory");
+        request.setContent("hi");
+
+        controller.addMessage("lobby", request, alice);
+
+        ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        verify(roomService).addMessage(eq("lobby"), sent.capture());
+        assertThat(sent.getValue().getSender()).isEqualTo("alice");
+    }
+
+    @Test
+    void onlyMembersCanSearchOrRebuild() {
+        Room room = new Room();
+        room.setRoomId("lobby");
+        room.getMembers().add("bob");
+        when(roomService.getRoomByRoomId("lobby")).thenReturn(Optional.of(room));
+
+        assertThat(controller.search("lobby", "secret", 0, 20, alice).getStatusCode())
+                .isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(controller.rebuildSearchIndex("lobby", alice).getStatusCode())
+                .isEqualTo(HttpStatus.FORBIDDEN);
+        verify(roomService, never()).search(anyString(), anyString(), anyInt(), anyInt());
+        verify(roomService, never()).rebuildSearchIndex(anyString());
+    }
+
+    @Test
+    void onlyMembersCanReadTheRoomOrItsHistory() {
+        Room room = new Room();
+        room.setRoomId("lobby");
+        room.getMembers().add("bob");
+        when(roomService.getRoomByRoomId("lobby")).thenReturn(Optional.of(room));
+
+        assertThat(controller.getRoom("lobby", true, alice).getStatusCode())
+                .isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(controller.getMessages("lobby", null, null, 50, alice).getStatusCode())
+                .isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(controller.getMessages("lobby", null, 3L, 50, alice).getStatusCode())
+                .isEqualTo(HttpStatus.FORBIDDEN);
+        verify(roomService, never()).getMessages(anyString());
+        verify(roomService, never()).getMessagePage(anyString(), any(), anyInt());
+        verify(roomService, never()).getMessagesAfter(anyString(), anyLong(), anyInt());
+
+        room.getMembers().add("alice");
+        assertThat(controller.getMessages("lobby", null, null, 50, alice).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void joinAddsTheCallerNotTheUsernameInTheBody() {
+        Room room = new Room();
+        room.setRoomId("lobby");
+        when(roomService.joinRoom("lobby", "alice")).thenReturn(Optional.of(room));
+        CreateRoomRequest request = new CreateRoomRequest();
+        request.setRoomId("lobby");
+        request.setUsername("mallory");
+
+        controller.joinRoom(request, alice);
+
+        verify(roomService).joinRoom("lobby", "alice");
+        verify(userService).addRoomToUser("alice", "lobby");
+        verify(userService, never()).addRoomToUser(eq("mallory"), anyString());
+    }
+
+    @Test
+    void readReportsAreClampedToTheLastMessageAndMembersOnly() {
+        Room room = new Room();
+        room.setRoomId("lobby");
+        room.setMessageCount(40);
+        room.getMembers().add("alice");
+        when(roomService.getRoomByRoomId("lobby")).thenReturn(Optional.of(room));
+        ReadRequest request = new ReadRequest();
+        request.setSeq(Long.MAX_VALUE);
+
+        assertThat(controller.markRead("lobby", request, alice).getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        verify(readMarkers).markRead("alice", "lobby", 40L);
+
+        assertThat(controller.markRead("lobby", request, () -> "mallory").getStatusCode())
+                .isEqualTo(HttpStatus.FORBIDDEN);
+        verify(readMarkers, never()).markRead(eq("mallory"), anyString(), anyLong());
+    }
+
+    @Test
+    void anotherUsersRoomListIsForbidden() {
+        assertThat(controller.getUserRooms("bob", alice).getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+        verify(userService, never()).getUserByUsername(anyString());
+    }
+}
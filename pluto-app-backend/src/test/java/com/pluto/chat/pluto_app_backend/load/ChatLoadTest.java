@@ -0,0 +1,229 @@
+package com.pluto.chat.pluto_app_backend.load;
+
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.service.JwtService;
+import com.pluto.chat.pluto_app_backend.service.RoomService;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// End-to-end load against one in-process backend on localhost with a flapdoodle mongod.
+// Opens `load.clients` STOMP connections to /chat spread over `load.rooms` rooms; every
+// client subscribes to its room and publishes `load.rate` messages per second to
+// /app/chat/{roomId}. Publish-to-receive latency is recorded for every delivery.
+//
+// Excluded from the normal build; run with
+//   mvn -Pload-test test -Dload.clients=5000 -Dload.rooms=100 -Dload.duration=60s
+// Raise the open-files limit (ulimit -n) first for more than a few thousand clients.
+// The full histogram is written to target/load-latency.hgrm.
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ChatLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatLoadTest.class);
+
+    private static final int CLIENTS = Integer.getInteger("load.clients", 2000);
+    private static final int ROOMS = Integer.getInteger("load.rooms", 50);
+    private static final double RATE = Double.parseDouble(System.getProperty("load.rate", "0.5"));
+    private static final Duration WARMUP = Duration.parse("PT" + System.getProperty("load.warmup", "10s"));
+    private static final Duration DURATION = Duration.parse("PT" + System.getProperty("load.duration", "30s"));
+    private static final int CONNECT_CONCURRENCY = 200;
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    // Latency in microseconds, up to one minute
+    private final Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private volatile boolean recording;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        mongod = Mongod.instance().start(Version.Main.V7_0);
+        ServerAddress address = mongod.current().getServerAddress();
+        registry.add("spring.data.mongodb.uri",
+                () -> "mongodb://" + address.getHost() + ":" + address.getPort() + "/pluto-load");
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        mongod.close();
+    }
+
+    @Test
+    void publishToReceiveLatency() throws Exception {
+        for (int room = 0; room < ROOMS; room++) {
+            roomService.createOrJoinRoom(roomId(room), "load-0");
+        }
+
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        stompClient.setMessageConverter(converter);
+        stompClient.setInboundMessageSizeLimit(64 * 1024);
+
+        List<StompSession> sessions = connectAll(stompClient);
+        assertThat(sessions).hasSize(CLIENTS);
+
+        ScheduledExecutorService publishers = Executors.newScheduledThreadPool(
+                Runtime.getRuntime().availableProcessors() * 2);
+        long periodMicros = (long) (1_000_000 / RATE);
+        for (int client = 0; client < CLIENTS; client++) {
+            StompSession session = sessions.get(client);
+            String destination = "/app/chat/" + roomId(client % ROOMS);
+            String sender = "load-" + client;
+            publishers.scheduleAtFixedRate(() -> publish(session, destination, sender),
+                    ThreadLocalRandom.current().nextLong(periodMicros), periodMicros, TimeUnit.MICROSECONDS);
+        }
+
+        Thread.sleep(WARMUP.toMillis());
+        latency.reset();
+        published.reset();
+        received.reset();
+        recording = true;
+        long start = System.nanoTime();
+        Thread.sleep(DURATION.toMillis());
+        recording = false;
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        publishers.shutdownNow();
+        sessions.forEach(StompSession::disconnect);
+        stompClient.stop();
+
+        report(seconds);
+        assertThat(received.sum()).isPositive();
+    }
+
+    private List<StompSession> connectAll(WebSocketStompClient stompClient) throws Exception {
+        String url = "ws://localhost:" + port + "/chat";
+        Semaphore inFlight = new Semaphore(CONNECT_CONCURRENCY);
+        List<CompletableFuture<StompSession>> futures = new ArrayList<>();
+        for (int client = 0; client < CLIENTS; client++) {
+            inFlight.acquire();
+            String room = roomId(client % ROOMS);
+            StompHeaders connectHeaders = new StompHeaders();
+            connectHeaders.add("Authorization", "Bearer " + jwtService.generateToken("load-" + client));
+            CompletableFuture<StompSession> future = stompClient
+                    .connectAsync(url, new WebSocketHttpHeaders(), connectHeaders, new StompSessionHandlerAdapter() {})
+                    .thenApply(session -> {
+                        session.subscribe("/topic/room/" + room, new LatencyRecorder());
+                        return session;
+                    })
+                    .whenComplete((session, error) -> inFlight.release());
+            futures.add(future);
+        }
+        List<StompSession> sessions = new ArrayList<>();
+        for (CompletableFuture<StompSession> future : futures) {
+            sessions.add(future.get(30, TimeUnit.SECONDS));
+        }
+        log.info("Connected {} clients across {} rooms", sessions.size(), ROOMS);
+        return sessions;
+    }
+
+    private void publish(StompSession session, String destination, String sender) {
+        try {
+            // Same JVM, so nanoTime in the body can be compared on receipt
+            session.send(destination, Message.builder()
+                    .sender(sender)
+                    .content(Long.toString(System.nanoTime()))
+                    .build());
+            if (recording) {
+                published.increment();
+            }
+        } catch (RuntimeException e) {
+            log.debug("Publish failed", e);
+        }
+    }
+
+    private class LatencyRecorder implements StompFrameHandler {
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return Message.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            long sentAt = Long.parseLong(((Message) payload).getContent());
+            if (recording) {
+                latency.recordValue(Math.min(latency.getHighestTrackableValue(),
+                        TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentAt)));
+                received.increment();
+            }
+        }
+    }
+
+    private void report(double seconds) throws Exception {
+        log.info("clients={} rooms={} rate={}/s per client, measured {}s", CLIENTS, ROOMS, RATE,
+                String.format("%.1f", seconds));
+        log.info("published {} msg/s, delivered {} msg/s",
+                String.format("%.0f", published.sum() / seconds), String.format("%.0f", received.sum() / seconds));
+        log.info("latency ms p50={} p99={} p999={} max={}",
+                millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(99)),
+                millis(latency.getValueAtPercentile(99.9)), millis(latency.getMaxValue()));
+
+        Path target = Path.of("target");
+        Files.createDirectories(target);
+        try (PrintStream out = new PrintStream(new FileOutputStream(target.resolve("load-latency.hgrm").toFile()))) {
+            latency.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+
+    private static String roomId(int room) {
+        return "load-room-" + room;
+    }
+}
@@ -0,0 +1,139 @@
+package com.pluto.chat.pluto_app_backend.media;
+
+import com.pluto.chat.pluto_app_backend.dto.StartUploadRequest;
+import com.pluto.chat.pluto_app_backend.dto.UploadStatus;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.Room;
+import com.pluto.chat.pluto_app_backend.entities.UploadSession;
+import com.pluto.chat.pluto_app_backend.repository.UploadSessionRepository;
+import com.pluto.chat.pluto_app_backend.service.RoomService;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DataMongoTest
+class ChunkedUploadServiceTests {
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+
+    @Autowired
+    private UploadSessionRepository sessionRepository;
+
+    @TempDir
+    Path stagingDir;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        mongod = Mongod.instance().start(Version.Main.V7_0);
+        ServerAddress address = mongod.current().getServerAddress();
+        registry.add("spring.data.mongodb.uri",
+                () -> "mongodb://" + address.getHost() + ":" + address.getPort() + "/pluto-test");
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        mongod.close();
+    }
+
+    @Test
+    void failedPublishKeepsThePartFileForARetry() throws IOException {
+        RoomService roomService = mock(RoomService.class);
+        when(roomService.getRoomByRoomId("lobby")).thenReturn(Optional.of(new Room()));
+        MediaUploadService mediaUploadService = mock(MediaUploadService.class);
+        List<String> published = new ArrayList<>();
+        when(mediaUploadService.publish(anyString(), anyString(), any(), any()))
+                .thenThrow(new RuntimeException("store unavailable"))
+                .thenAnswer(invocation -> {
+                    // Like a real store, the handed-over file is consumed
+                    Path file = invocation.<MediaStore.MediaUpload>getArgument(2).file();
+                    published.add(Files.readString(file, StandardCharsets.UTF_8));
+                    Files.delete(file);
+                    return Message.builder().seq(7L).build();
+                });
+        ChunkedUploadService service = new ChunkedUploadService(sessionRepository, roomService, mediaUploadService,
+                new SimpleMeterRegistry(), stagingDir, DataSize.ofBytes(4), DataSize.ofKilobytes(1),
+                Duration.ofHours(1), Duration.ofMinutes(10));
+
+        StartUploadRequest request = new StartUploadRequest();
+        request.setFileName("note.ogg");
+        request.setSize(6);
+        String id = service.start("lobby", "alice", request).getUploadId();
+
+        service.writeChunk(id, "alice", 0, sha256("abcd"), stream("abcd"));
+        assertThatThrownBy(() -> service.writeChunk(id, "alice", 1, sha256("ef"), stream("ef")))
+                .hasMessageContaining("store unavailable");
+        assertThat(Files.exists(stagingDir.resolve("chunked").resolve(id + ".part"))).isTrue();
+
+        // Sending a chunk we already have retries the publish
+        UploadStatus status = service.writeChunk(id, "alice", 1, sha256("ef"), stream("ef"));
+
+        assertThat(status.isComplete()).isTrue();
+        assertThat(status.getSeq()).isEqualTo(7L);
+        assertThat(published).containsExactly("abcdef");
+        try (var leftovers = Files.list(stagingDir.resolve("chunked"))) {
+            assertThat(leftovers).isEmpty();
+        }
+    }
+
+    @Test
+    void claimHeldByADeadNodeLapses() {
+        sessionRepository.save(UploadSession.builder()
+                .id("stuck")
+                .roomId("lobby")
+                .sender("alice")
+                .build());
+        LocalDateTime now = LocalDateTime.now();
+
+        assertThat(sessionRepository.claimCompletion("stuck", now, now.plusMinutes(10))).isTrue();
+        assertThat(sessionRepository.claimCompletion("stuck", now.plusMinutes(5), now.plusMinutes(15))).isFalse();
+        assertThat(sessionRepository.claimCompletion("stuck", now.plusMinutes(11), now.plusMinutes(21))).isTrue();
+
+        sessionRepository.markPublished("stuck", 3);
+        assertThat(sessionRepository.claimCompletion("stuck", now.plusHours(1), now.plusHours(2))).isFalse();
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(String content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.pluto.chat.pluto_app_backend.media;
+
+import com.pluto.chat.pluto_app_backend.entities.MediaBlob;
+import com.pluto.chat.pluto_app_backend.repository.MediaBlobRepository;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataMongoTest
+@Import(LocalMediaStore.class)
+class LocalMediaStoreTests {
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+
+    @Autowired
+    private LocalMediaStore mediaStore;
+
+    @Autowired
+    private MediaBlobRepository blobRepository;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        mongod = Mongod.instance().start(Version.Main.V7_0);
+        ServerAddress address = mongod.current().getServerAddress();
+        registry.add("spring.data.mongodb.uri",
+                () -> "mongodb://" + address.getHost() + ":" + address.getPort() + "/pluto-test");
+        registry.add("pluto.media.local.dir", () -> tempDir("pluto-test-media"));
+    }
+
+    private static String tempDir(String prefix) {
+        try {
+            return Files.createTempDirectory(prefix).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        mongod.close();
+    }
+
+    @Test
+    void declaredTypesThatCouldRunScriptAreNotKept() throws IOException {
+        String html = mediaStore.store(upload("<script>alert(1)</script>", "text/html")).url();
+        String svg = mediaStore.store(upload("<svg onload=alert(1)/>", "image/svg+xml")).url();
+        String png = mediaStore.store(upload("not really a png", "image/PNG; charset=x")).url();
+
+        assertThat(blob(html).contentType()).isEqualTo(MediaTypes.OCTET_STREAM);
+        assertThat(blob(svg).contentType()).isEqualTo(MediaTypes.OCTET_STREAM);
+        assertThat(blob(png).contentType()).isEqualTo("image/png");
+    }
+
+    @Test
+    void releasingTheLastReferenceRemovesTheBlob() throws IOException {
+        String url = mediaStore.store(upload("released once", "image/png")).url();
+        String sha256 = url.substring(LocalMediaStore.URL_PREFIX.length());
+        Path file = mediaStore.localFile(url).orElseThrow();
+
+        mediaStore.release(url);
+
+        assertThat(Files.exists(file)).isFalse();
+        assertThat(blobRepository.findById(sha256)).isEmpty();
+        assertThat(mediaStore.reference(sha256)).isEmpty();
+    }
+
+    @Test
+    void blobStaysWhileAnotherMessageReferencesIt() throws IOException {
+        String url = mediaStore.store(upload("forwarded", "image/png")).url();
+        String sha256 = url.substring(LocalMediaStore.URL_PREFIX.length());
+        assertThat(mediaStore.reference(sha256)).isPresent();
+
+        mediaStore.release(url);
+
+        assertThat(mediaStore.localFile(url)).isPresent();
+        assertThat(blobRepository.findById(sha256)).get()
+                .extracting(MediaBlob::getRefCount).isEqualTo(1L);
+
+        mediaStore.release(url);
+        assertThat(mediaStore.localFile(url)).isEmpty();
+    }
+
+    @Test
+    void rememberedVariantsAreReferencedForAForward() throws IOException {
+        String original = mediaStore.store(upload("original image", "image/jpeg")).url();
+        String thumbnail = mediaStore.store(upload("thumbnail image", "image/jpeg")).url();
+        mediaStore.rememberVariants(original, new ImageVariantService.ImageVariants(4000, 3000, thumbnail, null, true));
+
+        assertThat(mediaStore.referenceVariants(original)).get()
+                .isEqualTo(new ImageVariantService.ImageVariants(4000, 3000, thumbnail, null, true));
+        assertThat(blobRepository.findById(key(thumbnail))).get()
+                .extracting(MediaBlob::getRefCount).isEqualTo(2L);
+    }
+
+    @Test
+    void variantsThatAreGoneAreNotReused() throws IOException {
+        String original = mediaStore.store(upload("another original", "image/jpeg")).url();
+        String thumbnail = mediaStore.store(upload("another thumbnail", "image/jpeg")).url();
+        String preview = mediaStore.store(upload("another preview", "image/jpeg")).url();
+        mediaStore.rememberVariants(original, new ImageVariantService.ImageVariants(4000, 3000, thumbnail, preview, true));
+        mediaStore.release(preview);
+
+        assertThat(mediaStore.referenceVariants(original)).isEmpty();
+        // The thumbnail reference taken on the way is given back
+        assertThat(blobRepository.findById(key(thumbnail))).get()
+                .extracting(MediaBlob::getRefCount).isEqualTo(1L);
+    }
+
+    private static String key(String url) {
+        return url.substring(LocalMediaStore.URL_PREFIX.length());
+    }
+
+    private LocalMediaStore.Blob blob(String url) {
+        return mediaStore.open(url.substring(LocalMediaStore.URL_PREFIX.length())).orElseThrow();
+    }
+
+    private static MediaStore.MediaUpload upload(String content, String contentType) throws IOException {
+        Path file = Files.createTempFile("upload-", ".tmp");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return new MediaStore.MediaUpload(file, "file", contentType, Files.size(file));
+    }
+}
@@ -0,0 +1,65 @@
+package com.pluto.chat.pluto_app_backend.media;
+
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.MessageType;
+import com.pluto.chat.pluto_app_backend.entities.Room;
+import com.pluto.chat.pluto_app_backend.service.RoomService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MediaUploadServiceTests {
+
+    @TempDir
+    Path stagingDir;
+
+    private final RoomService roomService = mock(RoomService.class);
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void variantsAreMadeEvenWhenTheStoreConsumesTheUpload() throws IOException {
+        // Like FreeimageMediaStore: sends the file elsewhere and deletes it
+        AtomicInteger uploads = new AtomicInteger();
+        MediaStore remote = upload -> {
+            Files.delete(upload.file());
+            return new MediaStore.StoredMedia("https://images.example/" + uploads.incrementAndGet());
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ImageVariantService variants = new ImageVariantService(remote, registry, stagingDir,
+                320, 1280, 50_000_000, 1, 4);
+        MediaUploadService service = new MediaUploadService(roomService, mock(SimpMessagingTemplate.class),
+                remote, variants, registry, stagingDir, 1, 4);
+        when(roomService.getRoomByRoomId("lobby")).thenReturn(Optional.of(new Room()));
+
+        service.upload("lobby", "alice",
+                new MockMultipartFile("file", "photo.png", "image/png", png(800, 600)), MessageType.IMAGE);
+
+        verify(roomService, timeout(5000)).updateMessage(eq("lobby"), argThat((Message message) ->
+                message.getMediaUrl() != null
+                        && Integer.valueOf(800).equals(message.getWidth())
+                        && message.getThumbnailUrl() != null));
+    }
+}
@@ -0,0 +1,131 @@
+package com.pluto.chat.pluto_app_backend.messaging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutboundBatcherTests {
+
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private volatile Predicate<Message<?>> beforeDelivery = message -> true;
+
+    private final MessageChannel outbound = (message, timeout) -> {
+        beforeDelivery.test(message);
+        delivered.add(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8));
+        return true;
+    };
+
+    private OutboundBatcher batcher;
+
+    private OutboundBatcher newBatcher(int maxMessages) {
+        batcher = new OutboundBatcher(outbound, new SimpleMeterRegistry(), true, Duration.ofMinutes(1), maxMessages);
+        batcher.start();
+        return batcher;
+    }
+
+    @AfterEach
+    void stop() {
+        if (batcher != null && batcher.isRunning()) {
+            batcher.stop();
+        }
+    }
+
+    private static SessionConnectEvent connect(String sessionId, long windowMillis) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        accessor.setNativeHeader(OutboundBatcher.WINDOW_HEADER, String.valueOf(windowMillis));
+        return new SessionConnectEvent(new Object(), MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private static SessionUnsubscribeEvent unsubscribe(String sessionId, String subscriptionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.UNSUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        return new SessionUnsubscribeEvent(new Object(), MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private static Message<byte[]> roomMessage(String sessionId, String subscriptionId, long seq) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination("/topic/room/lobby");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(("{\"seq\":" + seq + "}").getBytes(StandardCharsets.UTF_8),
+                accessor.getMessageHeaders());
+    }
+
+    @Test
+    void fullBatchGoesOutAsOneArray() {
+        newBatcher(3).onConnect(connect("s1", 10_000));
+
+        for (long seq = 1; seq <= 3; seq++) {
+            assertThat(batcher.preSend(roomMessage("s1", "sub-0", seq), outbound)).isNull();
+        }
+
+        assertThat(delivered).containsExactly("[{\"seq\":1},{\"seq\":2},{\"seq\":3}]");
+    }
+
+    @Test
+    void slowDeliveryDoesNotBlockTheNextMessage() throws Exception {
+        newBatcher(1).onConnect(connect("s1", 10_000));
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        beforeDelivery = message -> {
+            // The first frame stalls, as on a full outbound stripe
+            if (sending.getCount() > 0) {
+                sending.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return true;
+        };
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(
+                () -> batcher.preSend(roomMessage("s1", "sub-0", 1), outbound));
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Returns straight away; the stalled sender delivers it next
+        CompletableFuture.runAsync(() -> batcher.preSend(roomMessage("s1", "sub-0", 2), outbound))
+                .get(1, TimeUnit.SECONDS);
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+
+        assertThat(delivered).containsExactly("{\"seq\":1}", "{\"seq\":2}");
+    }
+
+    @Test
+    void unsubscribingDropsWhatIsHeld() {
+        newBatcher(10).onConnect(connect("s1", 10_000));
+        batcher.preSend(roomMessage("s1", "sub-0", 1), outbound);
+        batcher.preSend(roomMessage("s1", "sub-1", 2), outbound);
+
+        batcher.onUnsubscribe(unsubscribe("s1", "sub-0"));
+        batcher.stop();
+
+        assertThat(delivered).containsExactly("{\"seq\":2}");
+    }
+}
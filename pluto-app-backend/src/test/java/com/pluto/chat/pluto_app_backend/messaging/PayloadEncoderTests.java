@@ -0,0 +1,89 @@
+package com.pluto.chat.pluto_app_backend.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PayloadEncoderTests {
+
+    private static final byte[] JSON = "{\"seq\":7,\"sender\":\"alice\",\"content\":\"hi\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final PayloadEncoder encoder = new PayloadEncoder(new SimpleMeterRegistry(), true);
+    private final MessageChannel channel = (message, timeout) -> true;
+
+    @Test
+    void sessionsThatAskForCborGetTheSameStructureAsCbor() throws IOException {
+        encoder.onConnect(connect("binary", PayloadEncoder.CBOR));
+
+        Message<?> sent = encoder.preSend(broadcast("binary", JSON), channel);
+
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(sent);
+        assertThat(headers.getContentType()).isEqualTo(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        assertThat(headers.getFirstNativeHeader(PayloadEncoder.ENCODING_HEADER)).isEqualTo(PayloadEncoder.CBOR);
+        assertThat(new ObjectMapper(new CBORFactory()).readTree((byte[]) sent.getPayload()))
+                .isEqualTo(new ObjectMapper().readTree(JSON));
+    }
+
+    @Test
+    void otherSessionsAndUnknownEncodingsKeepJson() {
+        encoder.onConnect(connect("binary", PayloadEncoder.CBOR));
+        encoder.onConnect(connect("curious", "msgpack"));
+
+        Message<?> plain = broadcast("plain", JSON);
+        Message<?> unknown = broadcast("curious", JSON);
+
+        assertThat(encoder.preSend(plain, channel)).isSameAs(plain);
+        assertThat(encoder.preSend(unknown, channel)).isSameAs(unknown);
+    }
+
+    @Test
+    void aPayloadThatIsNotJsonAfterAllIsSentAsIs() {
+        encoder.onConnect(connect("binary", PayloadEncoder.CBOR));
+        Message<?> broken = broadcast("binary", "{\"seq\":".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(encoder.preSend(broken, channel)).isSameAs(broken);
+    }
+
+    @Test
+    void aBroadcastIsTranscodedOnceForAllBinarySessions() {
+        encoder.onConnect(connect("first", PayloadEncoder.CBOR));
+        encoder.onConnect(connect("second", PayloadEncoder.CBOR));
+
+        Object first = encoder.preSend(broadcast("first", JSON), channel).getPayload();
+        Object second = encoder.preSend(broadcast("second", JSON), channel).getPayload();
+
+        assertThat(second).isSameAs(first);
+    }
+
+    private static SessionConnectEvent connect(String sessionId, String encoding) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        accessor.setNativeHeader(PayloadEncoder.ENCODING_HEADER, encoding);
+        return new SessionConnectEvent(new Object(), MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    // The broker hands every subscriber the same payload array
+    private static Message<?> broadcast(String sessionId, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/topic/room/lobby");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
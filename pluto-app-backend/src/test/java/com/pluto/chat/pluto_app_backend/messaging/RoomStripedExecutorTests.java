@@ -0,0 +1,95 @@
+package com.pluto.chat.pluto_app_backend.messaging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoomStripedExecutorTests {
+
+    private static Message<byte[]> frame(String sessionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static MessageHandlingRunnable task(Message<?> message, Runnable body) {
+        return new MessageHandlingRunnable() {
+            @Override
+            public Message<?> getMessage() {
+                return message;
+            }
+
+            @Override
+            public MessageHandler getMessageHandler() {
+                return m -> {};
+            }
+
+            @Override
+            public void run() {
+                body.run();
+            }
+        };
+    }
+
+    @Test
+    void outboundFramesForOneSessionShareAStripeAcrossRooms() {
+        RoomStripedExecutor outbound = new RoomStripedExecutor("test-out", RoomStripedExecutor.Mode.PLATFORM,
+                RoomStripedExecutor.Affinity.SESSION, 64, 10, new SimpleMeterRegistry());
+        try {
+            int lobby = outbound.keyOf(task(frame("s1", "/topic/room/lobby"), () -> {}));
+            int random = outbound.keyOf(task(frame("s1", "/topic/room/random"), () -> {}));
+            int connected = outbound.keyOf(task(frame("s1", null), () -> {}));
+
+            assertThat(random).isEqualTo(lobby);
+            assertThat(connected).isEqualTo(lobby);
+        } finally {
+            outbound.shutdown();
+        }
+    }
+
+    @Test
+    void inboundFramesStillStripeByRoom() {
+        RoomStripedExecutor inbound = new RoomStripedExecutor("test-in", RoomStripedExecutor.Mode.PLATFORM,
+                RoomStripedExecutor.Affinity.ROOM, 64, 10, new SimpleMeterRegistry());
+        try {
+            assertThat(inbound.keyOf(task(frame("s1", "/app/chat/lobby"), () -> {})))
+                    .isEqualTo(inbound.keyOf(task(frame("s2", "/app/chat/Lobby"), () -> {})));
+        } finally {
+            inbound.shutdown();
+        }
+    }
+
+    @Test
+    void oneSessionReceivesFramesInSubmissionOrder() throws InterruptedException {
+        RoomStripedExecutor outbound = new RoomStripedExecutor("test-order", RoomStripedExecutor.Mode.PLATFORM,
+                RoomStripedExecutor.Affinity.SESSION, 16, 1000, new SimpleMeterRegistry());
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(200);
+        try {
+            for (int i = 0; i < 200; i++) {
+                int n = i;
+                outbound.execute(task(frame("s1", "/topic/room/room-" + (i % 7)), () -> {
+                    received.add(n);
+                    done.countDown();
+                }));
+            }
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(received).isSorted().hasSize(200);
+        } finally {
+            outbound.shutdown();
+        }
+    }
+}
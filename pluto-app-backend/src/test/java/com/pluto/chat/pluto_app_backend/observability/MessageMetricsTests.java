@@ -0,0 +1,27 @@
+package com.pluto.chat.pluto_app_backend.observability;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageMetricsTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MessageMetrics metrics = new MessageMetrics(registry, 10, Duration.ofMinutes(1));
+
+    @Test
+    void roomCountersDoNotExposeTheJoinCode() {
+        metrics.received("Secret-Code-42");
+        metrics.received("secret-code-42 ");
+
+        Counter counter = registry.get("pluto.room.messages").counter();
+        assertThat(counter.getId().getTag("room"))
+                .isEqualTo(MessageMetrics.roomTag("secret-code-42"))
+                .doesNotContainIgnoringCase("secret");
+        assertThat(counter.count()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,130 @@
+package com.pluto.chat.pluto_app_backend.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.observability.MessageMetrics;
+import com.pluto.chat.pluto_app_backend.service.MessageService;
+import com.pluto.chat.pluto_app_backend.service.RoomService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.when;
+
+class MessagePersistencePipelineTests {
+
+    @TempDir
+    Path dir;
+
+    private final RoomService roomService = mock(RoomService.class);
+    private final MessageService messageService = mock(MessageService.class);
+    private final InFlightMessages inFlightMessages = new InFlightMessages();
+    // What reached storeMessages without throwing
+    private final List<Long> stored = new CopyOnWriteArrayList<>();
+
+    private MessagePersistencePipeline newPipeline() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new MessagePersistencePipeline(roomService, messageService, inFlightMessages,
+                new MessageMetrics(registry, 10, Duration.ofMinutes(1)), registry,
+                100, 10, Duration.ofMillis(5), Duration.ofMillis(10), MessagePersistencePipeline.OverflowPolicy.BLOCK,
+                Duration.ofMillis(5), Duration.ofMillis(20), Duration.ofMillis(200),
+                dir.resolve("dead-letter.ndjson"), new ObjectMapper().findAndRegisterModules());
+    }
+
+    private static Message message(long seq) {
+        return Message.builder().seq(seq).sender("alice").content("m" + seq).timestamp(LocalDateTime.now()).build();
+    }
+
+    // Fails the first `failures` writes, then records what it is given
+    private void storeFailing(int failures) {
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (calls.incrementAndGet() <= failures) {
+                throw new IllegalStateException("mongo unavailable");
+            }
+            invocation.<List<Message>>getArgument(1).forEach(message -> stored.add(message.getSeq()));
+            return null;
+        }).when(roomService).storeMessages(eq("lobby"), anyList());
+    }
+
+    @Test
+    void failedBatchIsRetriedUntilItIsWritten() {
+        storeFailing(3);
+        MessagePersistencePipeline pipeline = newPipeline();
+        pipeline.start();
+
+        pipeline.submit("lobby", message(1), System.nanoTime());
+        pipeline.submit("lobby", message(2), System.nanoTime());
+        pipeline.stop();
+
+        assertThat(stored).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(inFlightMessages.between("lobby", null, null)).isEmpty();
+    }
+
+    @Test
+    void inFlightMessagesAreKeptUnderTheNormalizedRoomId() {
+        MessagePersistencePipeline pipeline = newPipeline();
+        // Not started: the write falls back to the caller and fails, so the message stays in flight
+        storeFailing(Integer.MAX_VALUE);
+
+        pipeline.submit(" Lobby", message(3), System.nanoTime());
+
+        assertThat(inFlightMessages.between("lobby", null, null))
+                .extracting(Message::getSeq)
+                .containsExactly(3L);
+    }
+
+    @Test
+    void retryDoesNotRewriteWhatAPartialWriteStored() {
+        storeFailing(1);
+        // The failed write got seq 1 in before it broke
+        when(messageService.getBySeqs(eq("lobby"), any())).thenReturn(Map.of(1L, message(1)));
+        MessagePersistencePipeline pipeline = newPipeline();
+        pipeline.start();
+
+        pipeline.submit("lobby", message(1), System.nanoTime());
+        pipeline.submit("lobby", message(2), System.nanoTime());
+        pipeline.stop();
+
+        assertThat(stored).containsExactly(2L);
+    }
+
+    @Test
+    void unwrittenMessagesSurviveARestart() {
+        storeFailing(Integer.MAX_VALUE);
+        MessagePersistencePipeline first = newPipeline();
+        first.start();
+        first.submit("lobby", message(7), System.nanoTime());
+        first.stop();
+
+        Path deadLetters = dir.resolve("dead-letter.ndjson");
+        assertThat(deadLetters).exists();
+        assertThat(stored).isEmpty();
+
+        // Mongo is back
+        reset(roomService);
+        storeFailing(0);
+        MessagePersistencePipeline second = newPipeline();
+        second.start();
+        second.stop();
+
+        assertThat(stored).containsExactly(7L);
+        assertThat(Files.exists(deadLetters)).isFalse();
+    }
+}
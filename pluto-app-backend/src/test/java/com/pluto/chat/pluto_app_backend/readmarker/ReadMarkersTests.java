@@ -0,0 +1,100 @@
+package com.pluto.chat.pluto_app_backend.readmarker;
+
+import com.pluto.chat.pluto_app_backend.entities.ReadMarker;
+import com.pluto.chat.pluto_app_backend.entities.RoomSummary;
+import com.pluto.chat.pluto_app_backend.repository.ReadMarkerRepository;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataMongoTest
+@Import({ReadMarkers.class, SimpleMeterRegistry.class})
+class ReadMarkersTests {
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+
+    @Autowired
+    private ReadMarkers readMarkers;
+
+    @Autowired
+    private ReadMarkerRepository markerRepository;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        mongod = Mongod.instance().start(Version.Main.V7_0);
+        ServerAddress address = mongod.current().getServerAddress();
+        registry.add("spring.data.mongodb.uri",
+                () -> "mongodb://" + address.getHost() + ":" + address.getPort() + "/pluto-test");
+        // Flushes are run by the test
+        registry.add("pluto.read-markers.flush-interval", () -> "1h");
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        mongod.close();
+    }
+
+    @Test
+    void reportsAreCoalescedAndNeverMoveBack() {
+        readMarkers.markRead("alice", "lobby", 10);
+        readMarkers.markRead("alice", "lobby", 40);
+        readMarkers.markRead("alice", "Lobby", 25);
+        readMarkers.flush();
+
+        assertThat(markerRepository.findById(ReadMarker.id("lobby", "alice")))
+                .get()
+                .extracting(ReadMarker::getLastReadSeq)
+                .isEqualTo(40L);
+
+        // An older position reported from another tab is ignored
+        readMarkers.markRead("alice", "lobby", 30);
+        readMarkers.flush();
+        assertThat(markerRepository.findById(ReadMarker.id("lobby", "alice")).orElseThrow().getLastReadSeq())
+                .isEqualTo(40L);
+        assertThat(markerRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void usernamesDifferingInCaseAreDifferentUsers() {
+        readMarkers.markRead("carol", "lounge", 50);
+        readMarkers.markRead("Carol", "lounge", 5);
+        readMarkers.flush();
+
+        assertThat(markerRepository.findById(ReadMarker.id("lounge", "carol")).orElseThrow().getLastReadSeq())
+                .isEqualTo(50L);
+        assertThat(markerRepository.findById(ReadMarker.id("lounge", "Carol")).orElseThrow().getLastReadSeq())
+                .isEqualTo(5L);
+    }
+
+    @Test
+    void unreadIsTheCounterMinusTheMarker() {
+        readMarkers.markRead("bob", "general", 90);
+        readMarkers.flush();
+        // Not flushed yet, but already counted
+        readMarkers.markRead("bob", "random", 5);
+
+        List<RoomSummary> summaries = List.of(
+                RoomSummary.builder().roomId("general").messageCount(100).build(),
+                RoomSummary.builder().roomId("random").messageCount(5).build(),
+                RoomSummary.builder().roomId("never-read").messageCount(7).build());
+        readMarkers.fillUnread("bob", summaries);
+
+        assertThat(summaries)
+                .extracting(RoomSummary::getUnreadCount)
+                .containsExactly(10L, 0L, 7L);
+    }
+}
@@ -0,0 +1,122 @@
+package com.pluto.chat.pluto_app_backend.search;
+
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.repository.RoomRepository;
+import com.pluto.chat.pluto_app_backend.service.MessageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class SearchIndexTests {
+
+    @TempDir
+    Path dir;
+
+    private SearchIndex newIndex() {
+        SearchIndex index = new SearchIndex(mock(MessageService.class), mock(RoomRepository.class),
+                new SimpleMeterRegistry(), dir, Duration.ofSeconds(1), DataSize.ofMegabytes(64), false);
+        index.start();
+        return index;
+    }
+
+    private static Message message(long seq, String content) {
+        return Message.builder().seq(seq).sender("alice").content(content).build();
+    }
+
+    @Test
+    void ranksMessagesMatchingMoreTermsFirst() {
+        SearchIndex index = newIndex();
+        index.index("room", List.of(
+                message(1, "lunch at the café?"),
+                message(2, "the release is out"),
+                message(3, "Cafe lunch? Lunch!"),
+                message(4, "nothing to see here")));
+
+        SearchIndex.Results results = index.search("room", "cafe LUNCH", 0, 10);
+
+        assertThat(results.total()).isEqualTo(2);
+        assertThat(results.hits()).extracting(SearchIndex.Hit::seq).containsExactly(3L, 1L);
+        assertThat(index.search("other-room", "cafe", 0, 10).total()).isZero();
+        index.stop();
+    }
+
+    @Test
+    void pagesThroughResults() {
+        SearchIndex index = newIndex();
+        for (long seq = 1; seq <= 25; seq++) {
+            index.index("room", List.of(message(seq, "status update")));
+        }
+
+        SearchIndex.Results second = index.search("room", "status", 10, 10);
+
+        assertThat(second.total()).isEqualTo(25);
+        // Equal scores fall back to newest first
+        assertThat(second.hits()).extracting(SearchIndex.Hit::seq).containsExactly(15L, 14L, 13L, 12L, 11L, 10L, 9L, 8L, 7L, 6L);
+        index.stop();
+    }
+
+    @Test
+    void hugeOffsetsAndLimitsDoNotOverflowOrAllocate() {
+        SearchIndex index = newIndex();
+        index.index("room", List.of(message(1, "status update"), message(2, "status report")));
+
+        assertThat(index.search("room", "status", 0, Integer.MAX_VALUE).hits()).hasSize(2);
+        assertThat(index.search("room", "status", 1, Integer.MAX_VALUE).hits())
+                .extracting(SearchIndex.Hit::seq).containsExactly(1L);
+        SearchIndex.Results past = index.search("room", "status", Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertThat(past.total()).isEqualTo(2);
+        assertThat(past.hits()).isEmpty();
+        index.stop();
+    }
+
+    @Test
+    void survivesRestartFromLogAndSnapshot() {
+        SearchIndex first = newIndex();
+        first.index("room", List.of(message(1, "deploy on friday"), message(2, "friday standup")));
+        first.removeBefore("room", 2);
+        first.stop();
+
+        SearchIndex second = newIndex();
+        second.index("room", List.of(message(3, "no deploy friday")));
+        second.stop();
+
+        SearchIndex third = newIndex();
+        assertThat(third.search("room", "friday", 0, 10).hits())
+                .extracting(SearchIndex.Hit::seq)
+                .containsExactlyInAnyOrder(2L, 3L);
+        third.stop();
+    }
+
+    @Test
+    void replayMatchesMemoryWhenRemovalsRaceWithIndexing() {
+        SearchIndex first = newIndex();
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            for (long seq = 1; seq <= 2000; seq++) {
+                first.index("room", List.of(message(seq, "ping")));
+            }
+        });
+        CompletableFuture<Void> trimmer = CompletableFuture.runAsync(() -> {
+            for (long seq = 1; seq <= 2000; seq += 10) {
+                first.removeBefore("room", seq);
+            }
+        });
+        CompletableFuture.allOf(writer, trimmer).join();
+        List<SearchIndex.Hit> live = first.search("room", "ping", 0, Integer.MAX_VALUE).hits();
+        first.stop();
+
+        SearchIndex second = newIndex();
+        assertThat(second.search("room", "ping", 0, Integer.MAX_VALUE).hits())
+                .extracting(SearchIndex.Hit::seq)
+                .containsExactlyElementsOf(live.stream().map(SearchIndex.Hit::seq).toList());
+        second.stop();
+    }
+}
@@ -0,0 +1,88 @@
+package com.pluto.chat.pluto_app_backend.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHasherTests {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch hashing = new CountDownLatch(1);
+
+    // Stands in for bcrypt: holds the only hashing thread until the test lets it go
+    private final PasswordEncoder slowEncoder = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            hashing.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hash:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    };
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PasswordHasher hasher = new PasswordHasher(slowEncoder, meterRegistry, 1, 1);
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        hasher.shutdown();
+    }
+
+    @Test
+    @Timeout(10)
+    void aFullQueueIsTurnedAwayInsteadOfWaiting() throws Exception {
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> hasher.encode("first"));
+        assertThat(hashing.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> hasher.encode("second"));
+        // Wait until the second request sits in the one queue slot
+        while (meterRegistry.get("pluto.password.hash.queue.depth").gauge().value() < 1) {
+            Thread.sleep(5);
+        }
+
+        assertThatThrownBy(() -> hasher.encode("third")).isInstanceOf(PasswordHashingBusyException.class);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("hash:first");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("hash:second");
+    }
+
+    @Test
+    void encoderFailuresReachTheCaller() {
+        PasswordHasher failing = new PasswordHasher(new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                throw new IllegalArgumentException("too long");
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return false;
+            }
+        }, new SimpleMeterRegistry(), 1, 1);
+        try {
+            assertThatThrownBy(() -> failing.encode("x"))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("too long");
+        } finally {
+            failing.shutdown();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.pluto.chat.pluto_app_backend.security;
+
+import com.pluto.chat.pluto_app_backend.service.JwtService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StompAuthChannelInterceptorTests {
+
+    private static final String SECRET = "a-test-secret-that-is-long-enough-for-hs256";
+
+    private final JwtService jwtService = jwtService(SECRET, 60_000L);
+    private final StompAuthChannelInterceptor interceptor = new StompAuthChannelInterceptor(
+            new VerifiedTokenCache(jwtService, new SimpleMeterRegistry(), 100));
+    private final MessageChannel channel = (message, timeout) -> true;
+
+    @Test
+    void connectWithAValidTokenAuthenticatesTheSession() {
+        Message<?> connected = interceptor.preSend(frame(StompCommand.CONNECT, "Bearer " + jwtService.generateToken("alice")), channel);
+
+        assertThat(StompHeaderAccessor.wrap(connected).getUser().getName()).isEqualTo("alice");
+    }
+
+    @Test
+    void connectWithoutATokenIsRefused() {
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.CONNECT, null), channel))
+                .isInstanceOf(MessageDeliveryException.class);
+    }
+
+    @Test
+    void tokensSignedWithAnotherKeyOrExpiredAreRefused() {
+        String forged = jwtService("another-secret-that-is-also-long-enough-to-sign", 60_000L).generateToken("alice");
+        String expired = jwtService(SECRET, -1_000L).generateToken("alice");
+
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.CONNECT, "Bearer " + forged), channel))
+                .isInstanceOf(MessageDeliveryException.class);
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.CONNECT, "Bearer " + expired), channel))
+                .isInstanceOf(MessageDeliveryException.class);
+    }
+
+    @Test
+    void framesAfterConnectAreNotCheckedAgain() {
+        Message<?> send = frame(StompCommand.SEND, null);
+
+        assertThat(interceptor.preSend(send, channel)).isSameAs(send);
+    }
+
+    private static Message<?> frame(StompCommand command, String authorization) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        if (authorization != null) {
+            accessor.setNativeHeader("Authorization", authorization);
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static JwtService jwtService(String secret, long expirationMillis) {
+        JwtService service = new JwtService();
+        ReflectionTestUtils.setField(service, "secretKey", secret);
+        ReflectionTestUtils.setField(service, "jwtExpiration", expirationMillis);
+        ReflectionTestUtils.invokeMethod(service, "init");
+        return service;
+    }
+}
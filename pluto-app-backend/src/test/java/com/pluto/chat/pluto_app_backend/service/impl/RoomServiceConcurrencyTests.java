@@ -0,0 +1,191 @@
+package com.pluto.chat.pluto_app_backend.service.impl;
+
+import com.pluto.chat.pluto_app_backend.archive.LocalArchiveStore;
+import com.pluto.chat.pluto_app_backend.archive.MessageArchive;
+import com.pluto.chat.pluto_app_backend.cache.RecentMessageCache;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.entities.MessageBucket;
+import com.pluto.chat.pluto_app_backend.entities.Room;
+import com.pluto.chat.pluto_app_backend.entities.User;
+import com.pluto.chat.pluto_app_backend.persistence.InFlightMessages;
+import com.pluto.chat.pluto_app_backend.repository.MessageBucketRepository;
+import com.pluto.chat.pluto_app_backend.repository.RoomRepository;
+import com.pluto.chat.pluto_app_backend.repository.UserRepository;
+import com.pluto.chat.pluto_app_backend.search.SearchIndex;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataMongoTest
+@Import({RoomServiceImpl.class, MessageServiceImpl.class, RoomSummaryServiceImpl.class,
+        InFlightMessages.class, RecentMessageCache.class, SearchIndex.class, MessageArchive.class,
+        LocalArchiveStore.class, SimpleMeterRegistry.class})
+class RoomServiceConcurrencyTests {
+
+    private static final int THREADS = 16;
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+
+    @Autowired
+    private RoomServiceImpl roomService;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private MessageBucketRepository bucketRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        mongod = Mongod.instance().start(Version.Main.V7_0);
+        ServerAddress address = mongod.current().getServerAddress();
+        registry.add("spring.data.mongodb.uri",
+                () -> "mongodb://" + address.getHost() + ":" + address.getPort() + "/pluto-test");
+        registry.add("pluto.search.dir", () -> tempDir("pluto-test-search"));
+        registry.add("pluto.search.rebuild-if-missing", () -> "false");
+    }
+
+    private static String tempDir(String prefix) {
+        try {
+            return Files.createTempDirectory(prefix).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        mongod.close();
+    }
+
+    @Test
+    void parallelJoinsKeepEveryMember() throws Exception {
+        int usersPerThread = 50;
+
+        runInParallel(thread -> {
+            for (int i = 0; i < usersPerThread; i++) {
+                // Every thread races on the same room, including its creation
+                roomService.createOrJoinRoom("Busy-Room", "user-" + thread + "-" + i);
+                roomService.createOrJoinRoom("busy-room", "user-" + thread + "-" + i);
+            }
+        });
+
+        Room room = roomRepository.findByRoomId("busy-room").orElseThrow();
+        assertThat(room.getMembers())
+                .hasSize(THREADS * usersPerThread)
+                .doesNotHaveDuplicates();
+    }
+
+    @Test
+    void parallelSendsKeepEveryMessage() throws Exception {
+        int messagesPerThread = 100;
+        roomService.createOrJoinRoom("chatty-room", "owner");
+
+        runInParallel(thread -> {
+            for (int i = 0; i < messagesPerThread; i++) {
+                roomService.addMessage("chatty-room", Message.builder()
+                        .sender("user-" + thread)
+                        .content("message " + i)
+                        .build());
+            }
+        });
+
+        int total = THREADS * messagesPerThread;
+        assertThat(roomRepository.findByRoomId("chatty-room").orElseThrow().getMessageCount())
+                .isEqualTo(total);
+        // Counter and append are separate round trips; every seq still lands exactly once
+        assertThat(roomService.getMessages("chatty-room"))
+                .extracting(Message::getSeq)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, total).boxed().toList());
+
+        List<MessageBucket> buckets = bucketRepository.findByRoomIdOrderByBucketAsc("chatty-room");
+        assertThat(buckets).hasSize(total / MessageBucket.SIZE);
+        assertThat(buckets).allSatisfy(bucket -> {
+            assertThat(bucket.getCount()).isEqualTo(MessageBucket.SIZE);
+            assertThat(bucket.getMessages()).hasSize(MessageBucket.SIZE);
+        });
+    }
+
+    @Test
+    void sendingToAMissingRoomStoresNothing() {
+        assertThatThrownBy(() -> roomService.addMessage("no-such-room",
+                Message.builder().sender("someone").content("hello?").build()))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Room not found");
+
+        assertThat(roomRepository.findByRoomId("no-such-room")).isEmpty();
+        assertThat(bucketRepository.findByRoomIdOrderByBucketAsc("no-such-room")).isEmpty();
+    }
+
+    @Test
+    void parallelRoomAddsKeepEveryJoinedRoom() throws Exception {
+        int roomsPerThread = 25;
+        userRepository.save(User.builder().username("joiner").build());
+
+        runInParallel(thread -> {
+            for (int i = 0; i < roomsPerThread; i++) {
+                // Threads overlap pairwise so duplicates are exercised too
+                userRepository.addJoinedRoom("joiner", "room-" + (thread / 2) + "-" + i);
+            }
+        });
+
+        assertThat(userRepository.findByUsername("joiner").orElseThrow().getJoinedRooms())
+                .hasSize(THREADS / 2 * roomsPerThread)
+                .doesNotHaveDuplicates();
+    }
+
+    private void runInParallel(ThreadBody body) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    body.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadBody {
+        void run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,69 @@
+package com.pluto.chat.pluto_app_backend.service.impl;
+
+import com.pluto.chat.pluto_app_backend.archive.MessageArchive;
+import com.pluto.chat.pluto_app_backend.cache.RecentMessageCache;
+import com.pluto.chat.pluto_app_backend.dto.MessagePage;
+import com.pluto.chat.pluto_app_backend.entities.Message;
+import com.pluto.chat.pluto_app_backend.persistence.InFlightMessages;
+import com.pluto.chat.pluto_app_backend.repository.RoomRepository;
+import com.pluto.chat.pluto_app_backend.search.SearchIndex;
+import com.pluto.chat.pluto_app_backend.service.MessageService;
+import com.pluto.chat.pluto_app_backend.service.RoomSummaryService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RoomServiceHistoryTests {
+
+    private final MessageService messageService = mock(MessageService.class);
+    private final InFlightMessages inFlightMessages = new InFlightMessages();
+    private final RoomServiceImpl roomService = new RoomServiceImpl(mock(RoomRepository.class), messageService,
+            mock(RoomSummaryService.class), inFlightMessages, mock(RecentMessageCache.class),
+            mock(SearchIndex.class), mock(MessageArchive.class));
+
+    private static Message message(long seq) {
+        return Message.builder().seq(seq).sender("alice").content("m" + seq).build();
+    }
+
+    private static List<Message> messages(long from, long to) {
+        return LongStream.rangeClosed(from, to).mapToObj(RoomServiceHistoryTests::message).toList();
+    }
+
+    @Test
+    void messageWrittenDuringTheLatestPageReadIsNotLost() {
+        Message flushed = message(5);
+        inFlightMessages.add("lobby", flushed);
+        // The read misses seq 5, and the pipeline writes it and drops it from in-flight meanwhile
+        when(messageService.getPage(eq("lobby"), any(), anyInt())).thenAnswer(invocation -> {
+            inFlightMessages.remove("lobby", List.of(flushed));
+            return MessagePage.before(messages(1, 4));
+        });
+
+        MessagePage page = roomService.getMessagePage("lobby", null, 50);
+
+        assertThat(page.getMessages()).extracting(Message::getSeq).containsExactly(1L, 2L, 3L, 4L, 5L);
+    }
+
+    @Test
+    void messageWrittenDuringACatchUpReadIsNotLost() {
+        Message flushed = message(5);
+        inFlightMessages.add("lobby", flushed);
+        when(messageService.getPageAfter(eq("lobby"), anyLong(), anyInt())).thenAnswer(invocation -> {
+            inFlightMessages.remove("lobby", List.of(flushed));
+            return MessagePage.after(messages(3, 4), 50);
+        });
+
+        MessagePage page = roomService.getMessagesAfter("lobby", 2, 50);
+
+        assertThat(page.getMessages()).extracting(Message::getSeq).containsExactly(3L, 4L, 5L);
+    }
+}
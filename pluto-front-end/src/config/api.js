@@ -1,4 +1,6 @@
 // src/config/api.js
+import axios from 'axios';
+
 const API_BASE_URL = import.meta.env.VITE_API_URL || 'http://localhost:8080';
 
 export const API_ENDPOINTS = {
@@ -20,9 +22,40 @@ export const API_ENDPOINTS = {
   USER_ROOMS: (username) => `${API_BASE_URL}/api/v1/rooms/user/${username}`,
   ROOM_MESSAGES: (roomId) => `${API_BASE_URL}/api/v1/rooms/${roomId}/messages`,
   UPLOAD_PHOTO: (roomId) => `${API_BASE_URL}/api/v1/rooms/${roomId}/photos`,
+  // Chunked, resumable uploads (voice notes)
+  START_UPLOAD: (roomId) => `${API_BASE_URL}/api/v1/rooms/${roomId}/uploads`,
+  UPLOAD: (uploadId) => `${API_BASE_URL}/api/v1/uploads/${uploadId}`,
+  UPLOAD_CHUNK: (uploadId, index) => `${API_BASE_URL}/api/v1/uploads/${uploadId}/chunks/${index}`,
   
   // WebSocket - Convert http/https to ws/wss
   WS_URL: API_BASE_URL.replace('https://', 'wss://').replace('http://', 'ws://') + '/chat',
 };
 
+// Every REST call carries the JWT from login
+axios.interceptors.request.use((config) => {
+  const token = localStorage.getItem('token');
+  if (token) config.headers.Authorization = `Bearer ${token}`;
+  return config;
+});
+
+// Expired or invalid token: back to the login screen
+axios.interceptors.response.use(
+  (response) => response,
+  (error) => {
+    if (error.response?.status === 401 && !error.config.url.includes('/api/v1/auth/')) {
+      localStorage.clear();
+      window.location.href = '/';
+    }
+    return Promise.reject(error);
+  }
+);
+
+// STOMP CONNECT headers; the server authenticates the WebSocket session once here
+export const stompConnectHeaders = () => ({
+  Authorization: `Bearer ${localStorage.getItem('token')}`,
+  // Ask the server to coalesce busy-room broadcasts into array frames (ms / messages)
+  'batch-window': '20',
+  'batch-max': '50',
+});
+
 export default API_BASE_URL;
\ No newline at end of file
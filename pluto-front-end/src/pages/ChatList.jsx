@@ -136,9 +136,19 @@ const ChatList = () => {
                       {formatRoomName(room.roomId)}
                     </h4>
                     <p className="text-white/30 text-[9px] font-bold uppercase tracking-widest">
-                      Signal Active • {room.members?.length || 0} Units
+                      Signal Active • {room.memberCount || 0} Units
                     </p>
+                    {room.lastMessagePreview && (
+                      <p className="text-white/50 text-xs truncate mt-1">
+                        {room.lastSender ? `${room.lastSender}: ` : ''}{room.lastMessagePreview}
+                      </p>
+                    )}
                   </div>
+                  {room.unreadCount > 0 && (
+                    <span className="min-w-7 h-7 px-2 rounded-full bg-purple-600 text-white text-[10px] font-black flex items-center justify-center">
+                      {room.unreadCount > 99 ? '99+' : room.unreadCount}
+                    </span>
+                  )}
                 </div>
               ))}
             </div>
@@ -3,7 +3,23 @@ import { useNavigate, useParams } from 'react-router-dom';
 import axios from 'axios';
 import { Client } from '@stomp/stompjs';
 import { ChevronLeft, Send, Users, Image as ImageIcon, Check, Copy } from 'lucide-react';
-import { API_ENDPOINTS } from '../config/api';
+import API_BASE_URL, { API_ENDPOINTS, stompConnectHeaders } from '../config/api';
+
+const PAGE_SIZE = 50;
+// Re-announce typing this often while the user keeps typing (the server forgets after 5s)
+const TYPING_REFRESH_MS = 2000;
+// Read position is reported at most this often, and right away when the user leaves
+const READ_REPORT_MS = 1000;
+
+// Every server message carries a per-room seq, so it doubles as the dedup and sort key
+const mergeBySeq = (current, incoming) => {
+  const bySeq = new Map(current.map((m) => [m.seq, m]));
+  incoming.forEach((m) => bySeq.set(m.seq, m));
+  return [...bySeq.values()].sort((a, b) => a.seq - b.seq);
+};
+
+// Media kept by the backend comes back as a path on the API host
+const mediaSrc = (url) => (url && url.startsWith('/') ? `${API_BASE_URL}${url}` : url);
 
 const ChatRoom = () => {
   const { roomId } = useParams();
@@ -16,35 +32,127 @@ const ChatRoom = () => {
   const [uploadLoading, setUploadLoading] = useState(false);
   const [connected, setConnected] = useState(false);
   const [copied, setCopied] = useState(false);
+  const [nextCursor, setNextCursor] = useState(null);
+  const [loadingEarlier, setLoadingEarlier] = useState(false);
+  const [online, setOnline] = useState([]);
+  const [typingUsers, setTypingUsers] = useState([]);
 
   const messagesEndRef = useRef(null);
   const stompClientRef = useRef(null);
+  const skipScrollRef = useRef(false);
+  const lastSeqRef = useRef(0);
+  const hasConnectedRef = useRef(false);
+  const lastTypingSentRef = useRef(0);
+  const reportedSeqRef = useRef(0);
+  const readTimerRef = useRef(null);
   const username = localStorage.getItem('username');
 
   useEffect(() => {
     if (!username) { navigate('/'); return; }
-    axios.get(API_ENDPOINTS.GET_ROOM(roomId))
-      .then((res) => {
-        setRoom(res.data);
-        setMessages(res.data.messages || []);
+    Promise.all([
+      axios.get(API_ENDPOINTS.GET_ROOM(roomId), { params: { includeMessages: false } }),
+      axios.get(API_ENDPOINTS.ROOM_MESSAGES(roomId), { params: { limit: PAGE_SIZE } }),
+    ])
+      .then(([roomRes, pageRes]) => {
+        setRoom(roomRes.data);
+        setMessages(pageRes.data.messages || []);
+        setNextCursor(pageRes.data.nextCursor);
       })
       .finally(() => setLoading(false));
   }, [roomId, username, navigate]);
 
+  const replayMissed = async () => {
+    let after = lastSeqRef.current;
+    if (!after) return;
+    let hasMore = true;
+    while (hasMore) {
+      const res = await axios.get(API_ENDPOINTS.ROOM_MESSAGES(roomId), {
+        params: { after, limit: 100 },
+      });
+      const missed = res.data.messages || [];
+      setMessages((prev) => mergeBySeq(prev, missed));
+      hasMore = res.data.hasMore;
+      after = res.data.nextCursor;
+    }
+  };
+
+  const loadEarlier = async () => {
+    if (!nextCursor || loadingEarlier) return;
+    try {
+      setLoadingEarlier(true);
+      const res = await axios.get(API_ENDPOINTS.ROOM_MESSAGES(roomId), {
+        params: { before: nextCursor, limit: PAGE_SIZE },
+      });
+      skipScrollRef.current = true;
+      setMessages((prev) => mergeBySeq(res.data.messages || [], prev));
+      setNextCursor(res.data.nextCursor);
+    } finally {
+      setLoadingEarlier(false);
+    }
+  };
+
+  // Everything on screen counts as read. Only a newer seq is worth a report, and a busy
+  // room would otherwise send one per incoming message.
+  const reportRead = (room = roomId) => {
+    clearTimeout(readTimerRef.current);
+    readTimerRef.current = null;
+    const seq = lastSeqRef.current;
+    if (!stompClientRef.current?.connected || seq <= reportedSeqRef.current) return;
+    stompClientRef.current.publish({
+      destination: `/app/read/${room}`,
+      body: JSON.stringify({ seq }),
+    });
+    reportedSeqRef.current = seq;
+  };
+  const reportReadRef = useRef(reportRead);
+  reportReadRef.current = reportRead;
+
+  // Declared before the connection effect so leaving flushes before the client goes away
+  useEffect(() => {
+    reportedSeqRef.current = 0;
+    const flush = () => reportReadRef.current(roomId);
+    const onVisibilityChange = () => { if (document.hidden) flush(); };
+    window.addEventListener('blur', flush);
+    document.addEventListener('visibilitychange', onVisibilityChange);
+    return () => {
+      window.removeEventListener('blur', flush);
+      document.removeEventListener('visibilitychange', onVisibilityChange);
+      flush();
+    };
+  }, [roomId]);
+
   useEffect(() => {
     if (!username || !roomId) return;
+    hasConnectedRef.current = false;
     const client = new Client({
       brokerURL: API_ENDPOINTS.WS_URL,
+      connectHeaders: stompConnectHeaders(),
       reconnectDelay: 5000,
       onConnect: () => {
         setConnected(true);
         client.subscribe(`/topic/room/${roomId}`, (msg) => {
-          const receivedMsg = JSON.parse(msg.body);
-          setMessages((prev) => {
-            const isDup = prev.some(m => m.timestamp === receivedMsg.timestamp && m.sender === receivedMsg.sender);
-            return isDup ? prev : [...prev, receivedMsg];
-          });
+          // Coalesced frames carry a "batch" header and an array body
+          const body = JSON.parse(msg.body);
+          const received = msg.headers.batch ? body : [body];
+          // A skipped seq (e.g. a relay gap between nodes) is filled from history
+          const gap = lastSeqRef.current && received[0].seq > lastSeqRef.current + 1;
+          setMessages((prev) => mergeBySeq(prev, received));
+          if (gap) replayMissed();
         });
+        // Presence diffs, plus a one-off snapshot to apply them to
+        client.subscribe(`/topic/room/${roomId}/presence`, (msg) => {
+          const diff = JSON.parse(msg.body);
+          setOnline((prev) => [...new Set([...prev, ...diff.online])].filter((u) => !diff.offline.includes(u)));
+          if (diff.typing) setTypingUsers(diff.typing);
+        });
+        client.subscribe(`/app/room/${roomId}/presence`, (msg) => {
+          const snapshot = JSON.parse(msg.body);
+          setOnline(snapshot.online);
+          setTypingUsers(snapshot.typing);
+        });
+        // After a drop, fetch only what was sent while we were away
+        if (hasConnectedRef.current) replayMissed();
+        hasConnectedRef.current = true;
       },
       onDisconnect: () => setConnected(false),
     });
@@ -54,9 +162,41 @@ const ChatRoom = () => {
   }, [roomId, username]);
 
   useEffect(() => {
+    lastSeqRef.current = messages.length ? messages[messages.length - 1].seq : lastSeqRef.current;
+  }, [messages]);
+
+  // Runs after lastSeqRef has caught up with the new messages
+  useEffect(() => {
+    if (!connected || lastSeqRef.current <= reportedSeqRef.current || readTimerRef.current) return;
+    readTimerRef.current = setTimeout(() => reportReadRef.current(), READ_REPORT_MS);
+  }, [messages, connected]);
+
+  useEffect(() => {
+    // Prepending older history should not jump the view to the bottom
+    if (skipScrollRef.current) { skipScrollRef.current = false; return; }
     messagesEndRef.current?.scrollIntoView({ behavior: 'smooth' });
   }, [messages]);
 
+  const publishTyping = (typing) => {
+    if (!stompClientRef.current?.connected) return;
+    stompClientRef.current.publish({
+      destination: `/app/typing/${roomId}`,
+      body: JSON.stringify({ typing }),
+    });
+  };
+
+  const handleDraftChange = (value) => {
+    setNewMessage(value);
+    const now = Date.now();
+    if (value.trim() && now - lastTypingSentRef.current > TYPING_REFRESH_MS) {
+      lastTypingSentRef.current = now;
+      publishTyping(true);
+    } else if (!value.trim() && lastTypingSentRef.current) {
+      lastTypingSentRef.current = 0;
+      publishTyping(false);
+    }
+  };
+
   const sendMessage = (e) => {
     e.preventDefault();
     if (!newMessage.trim() || !connected) return;
@@ -68,16 +208,38 @@ const ChatRoom = () => {
       }),
     });
     setNewMessage('');
+    if (lastTypingSentRef.current) {
+      lastTypingSentRef.current = 0;
+      publishTyping(false);
+    }
+  };
+
+  // Hex SHA-256 of the file, or null where WebCrypto isn't available (plain http)
+  const sha256Of = async (file) => {
+    if (!window.crypto?.subtle) return null;
+    const digest = await window.crypto.subtle.digest('SHA-256', await file.arrayBuffer());
+    return Array.from(new Uint8Array(digest)).map(b => b.toString(16).padStart(2, '0')).join('');
   };
 
   const handlePhotoUpload = async (e) => {
     const file = e.target.files?.[0];
     if (!file) return;
-    const formData = new FormData();
-    formData.append('file', file);
-    formData.append('sender', username);
     try {
       setUploadLoading(true);
+      // Media the server already has (e.g. a forwarded photo) is posted by hash, no upload
+      const sha256 = await sha256Of(file);
+      if (sha256) {
+        const byHash = new FormData();
+        byHash.append('sha256', sha256);
+        byHash.append('fileName', file.name);
+        byHash.append('contentType', file.type || 'application/octet-stream');
+        byHash.append('fileSize', file.size);
+        const posted = await axios.post(API_ENDPOINTS.UPLOAD_PHOTO(roomId), byHash)
+          .then(() => true, (err) => { if (err.response?.status === 404) return false; throw err; });
+        if (posted) return;
+      }
+      const formData = new FormData();
+      formData.append('file', file);
       await axios.post(API_ENDPOINTS.UPLOAD_PHOTO(roomId), formData);
     } catch (err) { alert("Upload failed"); } 
     finally { setUploadLoading(false); e.target.value = ''; }
@@ -115,7 +277,9 @@ const ChatRoom = () => {
               <h3 className="text-white font-bold text-[15px] truncate">{roomId}</h3>
               <div className="flex items-center gap-1.5">
                 <span className={`w-2 h-2 rounded-full ${connected ? 'bg-green-500 shadow-[0_0_8px_rgba(34,197,94,0.6)]' : 'bg-red-500'}`} />
-                <span className="text-[11px] text-purple-300 font-medium">{connected ? 'Active now' : 'Reconnecting...'}</span>
+                <span className="text-[11px] text-purple-300 font-medium">
+                  {!connected ? 'Reconnecting...' : online.length > 1 ? `${online.length} online` : 'Active now'}
+                </span>
               </div>
             </div>
           </div>
@@ -128,13 +292,26 @@ const ChatRoom = () => {
       {/* MESSAGES WITH IMAGE FIX */}
       <main className="flex-1 overflow-y-auto pt-20 pb-6 px-4 z-10 custom-scrollbar">
         <div className="max-w-2xl mx-auto flex flex-col">
+          {nextCursor && (
+            <button
+              onClick={loadEarlier}
+              disabled={loadingEarlier}
+              className="self-center mb-4 px-4 py-1.5 text-[11px] text-purple-300 border border-purple-500/30 rounded-full hover:bg-purple-500/10 transition-all"
+            >
+              {loadingEarlier ? 'Loading...' : 'Load earlier messages'}
+            </button>
+          )}
           {messages.map((msg, i) => {
             const isMe = msg.sender === username;
             // Check for any possible field name for the image URL
-            const imageUrl = msg.mediaUrl || msg.imageUrl || msg.photoUrl;
+            const isAudio = msg.type === 'AUDIO';
+            const imageUrl = isAudio ? null : mediaSrc(msg.mediaUrl || msg.imageUrl || msg.photoUrl);
+            // The bubble shows the thumbnail; clicking opens the preview (or the original)
+            const bubbleUrl = mediaSrc(msg.thumbnailUrl) || imageUrl;
+            const fullUrl = mediaSrc(msg.previewUrl) || imageUrl;
             
             return (
-              <div key={i} className={`flex w-full mb-2 ${isMe ? 'justify-end' : 'justify-start'}`}>
+              <div key={msg.seq ?? i} className={`flex w-full mb-2 ${isMe ? 'justify-end' : 'justify-start'}`}>
                 {!isMe && (
                    <div className="w-8 h-8 rounded-full bg-purple-900/30 flex-shrink-0 self-end mr-2 text-[11px] flex items-center justify-center text-purple-300 font-bold border border-purple-500/20">
                       {msg.sender.charAt(0).toUpperCase()}
@@ -149,18 +326,34 @@ const ChatRoom = () => {
                   {/* Render Content if it exists */}
                   {msg.content && <p className="text-[14px] leading-relaxed break-words">{msg.content}</p>}
                   
+                  {msg.mediaStatus === 'PENDING' && (
+                    <p className="mt-1 text-[11px] text-purple-300/80 animate-pulse">Uploading...</p>
+                  )}
+                  {msg.mediaStatus === 'FAILED' && (
+                    <p className="mt-1 text-[11px] text-red-400">Upload failed</p>
+                  )}
+
                   {/* Render Image if it exists */}
                   {imageUrl && (
                     <div className="mt-2 -mx-1 mb-1 rounded-xl overflow-hidden border border-white/10 shadow-inner bg-black/20">
-                      <img 
-                        src={imageUrl} 
-                        alt="Shared content" 
-                        className="w-full h-auto max-h-80 object-cover hover:scale-[1.02] transition-transform duration-300" 
-                        loading="lazy"
-                      />
+                      <a href={fullUrl} target="_blank" rel="noreferrer">
+                        <img 
+                          src={bubbleUrl} 
+                          alt="Shared content" 
+                          width={msg.width}
+                          height={msg.height}
+                          className="w-full h-auto max-h-80 object-cover hover:scale-[1.02] transition-transform duration-300" 
+                          loading="lazy"
+                          decoding="async"
+                        />
+                      </a>
                     </div>
                   )}
 
+                  {isAudio && msg.mediaUrl && (
+                    <audio controls preload="none" src={mediaSrc(msg.mediaUrl)} className="mt-2 w-64 max-w-full" />
+                  )}
+
                   <div className={`text-[9px] mt-1 opacity-40 text-right font-mono ${isMe ? 'text-white' : 'text-purple-300'}`}>
                     {new Date(msg.timestamp).toLocaleTimeString([], { hour: '2-digit', minute: '2-digit' })}
                   </div>
@@ -168,6 +361,11 @@ const ChatRoom = () => {
               </div>
             );
           })}
+          {typingUsers.some((u) => u !== username) && (
+            <p className="text-[11px] text-purple-300/70 italic px-2 mb-1">
+              {typingUsers.filter((u) => u !== username).join(', ')} typing...
+            </p>
+          )}
           <div ref={messagesEndRef} />
         </div>
       </main>
@@ -184,7 +382,7 @@ const ChatRoom = () => {
           <input
             type="text"
             value={newMessage}
-            onChange={(e) => setNewMessage(e.target.value)}
+            onChange={(e) => handleDraftChange(e.target.value)}
             placeholder="Type a message..."
             disabled={!connected}
             className="flex-1 bg-transparent py-2 text-white border-none outline-none focus:outline-none focus:ring-0 appearance-none shadow-none text-[16px] placeholder:text-gray-500"